@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that the metrics survive being stored as scaled whole numbers, read either way, and
+ * measures how much smaller ten years of days are than with the REAL columns of version 4.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestCompactWeather {
+
+    private static final String TAG = TestCompactWeather.class.getSimpleName();
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    /* Each test gets an empty database of its own, weather.db is left as it was */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    @Before
+    public void setUp() {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, new ContentValues[]{createDay(mToday)});
+    }
+
+    @Test
+    public void testDefaultQueryReturnsUnits() {
+        Cursor cursor = mResolver.query(WeatherEntry.buildWeatherUriWithDate(mToday),
+                PROJECTION, null, null, null);
+        assertTrue(cursor != null);
+        assertTrue(cursor.moveToFirst());
+
+        assertEquals(-3.5, cursor.getDouble(0), 1e-9);
+        assertEquals(21.7, cursor.getDouble(1), 1e-9);
+        assertEquals(81.25, cursor.getDouble(2), 1e-9);
+        assertEquals(1013.25, cursor.getDouble(3), 1e-9);
+        assertEquals(3.61, cursor.getDouble(4), 1e-9);
+        assertEquals(275.5, cursor.getDouble(5), 1e-9);
+        cursor.close();
+    }
+
+    @Test
+    public void testCompactQueryReturnsStoredNumbers() {
+        Cursor cursor = mResolver.query(
+                WeatherContract.buildCompactUri(WeatherEntry.buildWeatherUriWithDate(mToday)),
+                PROJECTION, null, null, null);
+        assertTrue(cursor != null);
+        assertTrue(cursor.moveToFirst());
+
+        assertEquals(-35, cursor.getLong(0));
+        assertEquals(101325, cursor.getLong(3));
+
+        assertEquals(-3.5, WeatherEntry.getTemperature(cursor, 0), 1e-9);
+        assertEquals(21.7, WeatherEntry.getTemperature(cursor, 1), 1e-9);
+        assertEquals(81.25, WeatherEntry.getHumidity(cursor, 2), 1e-9);
+        assertEquals(1013.25, WeatherEntry.getPressure(cursor, 3), 1e-9);
+        assertEquals(3.61, WeatherEntry.getWindSpeed(cursor, 4), 1e-9);
+        assertEquals(275.5, WeatherEntry.getDegrees(cursor, 5), 1e-9);
+        cursor.close();
+    }
+
+    @Test
+    public void testArchiveReturnsUnits() {
+        mResolver.delete(WeatherEntry.buildArchivingUri(), null, null);
+
+        Cursor cursor = mResolver.query(WeatherContract.ArchiveEntry.CONTENT_URI,
+                PROJECTION, null, null, null);
+        assertTrue(cursor != null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(-3.5, cursor.getDouble(0), 1e-9);
+        assertEquals(1013.25, cursor.getDouble(3), 1e-9);
+        cursor.close();
+    }
+
+    @Test
+    public void testCompactSchemaIsSmaller() {
+        long realPages = measurePages(4);
+        long compactPages = measurePages(5);
+
+        Log.i(TAG, "Ten years of days: " + realPages + " pages with REAL columns, "
+                + compactPages + " pages with scaled whole numbers");
+        assertTrue(compactPages < realPages);
+    }
+
+    /* Fills a database of the given schema version with ten years of days and counts its pages */
+    private long measurePages(int version) {
+        String name = "compact_test.db";
+        mContext.deleteDatabase(name);
+        SQLiteDatabase database = mContext.openOrCreateDatabase(name, Context.MODE_PRIVATE, null);
+        WeatherDbHelper.createSchema(database, version);
+
+        Random random = new Random(42);
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < 3650; i++) {
+                ContentValues values = createRandomDay(random, mToday + i * DAY);
+                database.insert(WeatherEntry.TABLE_NAME, null,
+                        version >= 5 ? CompactWeather.toStored(values) : values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        long pages = DatabaseUtils.longForQuery(database, "PRAGMA page_count", null);
+        database.close();
+        mContext.deleteDatabase(name);
+        return pages;
+    }
+
+    private static ContentValues createDay(long date) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, 800);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, -3.5);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, 21.7);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, 81.25);
+        values.put(WeatherEntry.COLUMN_PRESSURE, 1013.25);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, 3.61);
+        values.put(WeatherEntry.COLUMN_DEGREES, 275.5);
+        return values;
+    }
+
+    /* Values with the precision the weather server gives */
+    private static ContentValues createRandomDay(Random random, long date) {
+        double low = Math.round((random.nextDouble() * 35 - 10) * 100) / 100.0;
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, 500 + random.nextInt(300));
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, low);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, low + random.nextInt(1200) / 100.0);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, random.nextInt(101));
+        values.put(WeatherEntry.COLUMN_PRESSURE, 980 + random.nextInt(6000) / 100.0);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, random.nextInt(2000) / 100.0);
+        values.put(WeatherEntry.COLUMN_DEGREES, random.nextInt(361));
+        return values;
+    }
+}
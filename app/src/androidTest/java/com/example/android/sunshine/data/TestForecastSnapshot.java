@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that the forecast snapshot reads back as the list would have queried it from the
+ * provider, and that a damaged or missing file is ignored rather than shown.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastSnapshot {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    @Before
+    public void setUp() {
+        ForecastSnapshot.getFile(mContext).delete();
+    }
+
+    @After
+    public void tearDown() {
+        ForecastSnapshot.getFile(mContext).delete();
+    }
+
+    @Test
+    public void testSnapshotMatchesFirstPage() {
+        insertDays(mToday - 2 * DAY, ForecastSnapshot.MAX_DAYS + 5);
+        assertTrue(ForecastSnapshot.write(mContext));
+
+        Cursor snapshot = ForecastSnapshot.read(mContext, MainActivity.MAIN_FORECAST_PROJECTION);
+        Cursor page = mContext.getContentResolver().query(
+                WeatherContract.buildPageUri(
+                        WeatherContract.buildCompactUri(WeatherEntry.CONTENT_URI),
+                        ForecastSnapshot.MAX_DAYS),
+                MainActivity.MAIN_FORECAST_PROJECTION,
+                WeatherEntry.SQL_SELECT_FROM_DATE,
+                WeatherEntry.getSelectionArgsForTodayOnwards(),
+                null);
+        assertTrue(snapshot != null);
+        assertTrue(page != null);
+
+        assertEquals(ForecastSnapshot.MAX_DAYS, snapshot.getCount());
+        assertEquals(page.getCount(), snapshot.getCount());
+        while (page.moveToNext()) {
+            assertTrue(snapshot.moveToNext());
+            for (int column = 0; column < page.getColumnCount(); column++) {
+                assertEquals(page.getLong(column), snapshot.getLong(column));
+            }
+        }
+        page.close();
+        snapshot.close();
+    }
+
+    @Test
+    public void testDaysBeforeTodayAreLeftOut() {
+        insertDays(mToday - 3 * DAY, 3);
+        assertTrue(ForecastSnapshot.write(mContext));
+
+        insertDays(mToday + DAY, 1);
+        Cursor snapshot = ForecastSnapshot.read(mContext, MainActivity.MAIN_FORECAST_PROJECTION);
+        assertTrue(snapshot != null);
+        assertEquals("Only today onwards is snapshot, and a later sync isn't in it",
+                0, snapshot.getCount());
+        snapshot.close();
+    }
+
+    @Test
+    public void testMissingOrDamagedSnapshotIsIgnored() throws IOException {
+        assertNull(ForecastSnapshot.read(mContext, MainActivity.MAIN_FORECAST_PROJECTION));
+
+        insertDays(mToday, 5);
+        assertTrue(ForecastSnapshot.write(mContext));
+
+        /* Cut the last row short */
+        int length = (int) ForecastSnapshot.getFile(mContext).length();
+        byte[] bytes = new byte[length - ForecastSnapshot.ROW_BYTES / 2];
+        FileInputStream in = new FileInputStream(ForecastSnapshot.getFile(mContext));
+        assertEquals(bytes.length, in.read(bytes));
+        in.close();
+        FileOutputStream out = new FileOutputStream(ForecastSnapshot.getFile(mContext));
+        out.write(bytes);
+        out.close();
+
+        assertNull(ForecastSnapshot.read(mContext, MainActivity.MAIN_FORECAST_PROJECTION));
+    }
+
+    private void insertDays(long firstDate, int days) {
+        ContentValues[] values = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            values[i] = TestUtilities.createTestWeatherContentValues();
+            values[i].put(WeatherEntry.COLUMN_DATE, firstDate + i * DAY);
+            values[i].put(WeatherEntry.COLUMN_MAX_TEMP, 20 + i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.DetailActivity;
+import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.NotificationUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Asks SQLite how it would run the queries the app makes, so that a schema change that turns
+ * one of them into a table scan or a sort fails here rather than on a user's phone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestQueryPlans {
+
+    private static final String COVERED =
+            "COVERING INDEX " + WeatherDbHelper.FORECAST_INDEX_NAME;
+
+    private static final String SINGLE_DAY = WeatherEntry.COLUMN_DATE + " = ? ";
+
+    /*
+     * The plans are for a database of our own, so that statistics ANALYZE has gathered in
+     * weather.db can't change them from run to run
+     */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mDatabase = mStorage.getDatabase();
+    }
+
+    @Test
+    public void testMainListIsReadFromCoveringIndex() {
+        String plan = explain(MainActivity.MAIN_FORECAST_PROJECTION,
+                WeatherEntry.SQL_SELECT_FROM_DATE,
+                WeatherEntry.COLUMN_DATE + " ASC",
+                null);
+
+        assertCovered(plan);
+    }
+
+    @Test
+    public void testForecastPageIsReadFromCoveringIndex() {
+        /* The selection the provider builds for a page after a given date */
+        String plan = explain(MainActivity.MAIN_FORECAST_PROJECTION,
+                "(" + WeatherEntry.SQL_SELECT_FROM_DATE + ") AND "
+                        + WeatherEntry.COLUMN_DATE + " > ?",
+                WeatherEntry.COLUMN_DATE + " ASC",
+                "20");
+
+        assertCovered(plan);
+    }
+
+    @Test
+    public void testSyncCheckIsReadFromCoveringIndex() {
+        String plan = explain(WeatherProvider.SQL_EXISTS_FROM_DATE, new String[]{"0"});
+
+        assertTrue(plan, plan.contains("COVERING INDEX"));
+        assertNoScanOrSort(plan);
+    }
+
+    @Test
+    public void testDetailSearchesForSingleDay() {
+        String plan = explain(DetailActivity.WEATHER_DETAIL_PROJECTION, SINGLE_DAY, null, null);
+
+        assertTrue(plan, plan.contains("SEARCH"));
+        assertNoScanOrSort(plan);
+    }
+
+    @Test
+    public void testNotificationSearchesForSingleDay() {
+        String plan = explain(NotificationUtils.WEATHER_NOTIFICATION_PROJECTION, SINGLE_DAY,
+                null, null);
+
+        assertTrue(plan, plan.contains("SEARCH"));
+        assertNoScanOrSort(plan);
+    }
+
+    private static void assertCovered(String plan) {
+        assertTrue("Expected " + COVERED + " in: " + plan, plan.contains(COVERED));
+        assertNoScanOrSort(plan);
+    }
+
+    private static void assertNoScanOrSort(String plan) {
+        /* Newer SQLite reports the single row of a SELECT without a FROM as a scan */
+        assertFalse("Table scan in: " + plan,
+                plan.replace("SCAN CONSTANT ROW", "").contains("SCAN"));
+        assertFalse("Sort in: " + plan, plan.contains("TEMP B-TREE"));
+    }
+
+    /* Returns the detail column of every row of the query plan, one per line */
+    private String explain(String[] projection, String selection, String sortOrder,
+                           String limit) {
+        String sql = SQLiteQueryBuilder.buildQueryString(false, WeatherEntry.TABLE_NAME,
+                projection, selection, null, null, sortOrder, limit);
+        String[] args = new String[selection.split("\\?", -1).length - 1];
+        Arrays.fill(args, "0");
+        return explain(sql, args);
+    }
+
+    private String explain(String sql, String[] args) {
+        Cursor cursor = mDatabase.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        int detailColumn = cursor.getColumnIndex("detail");
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(detailColumn)).append('\n');
+        }
+        cursor.close();
+        return plan.toString();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.content.CursorLoader;
+import android.util.Log;
+
+import com.example.android.sunshine.DetailActivity;
+import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.FakeDataUtils;
+import com.example.android.sunshine.utilities.NotificationUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures how long the app's queries take while other queries and a sync, or a steady load of
+ * history from {@link FakeDataUtils}, run at the same time, and checks that the database reads
+ * concurrently where the platform allows it. The timings are logged rather than asserted, as
+ * they depend on the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestReadContention {
+
+    private static final String TAG = TestReadContention.class.getSimpleName();
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private static final int FORECAST_DAYS = 14;
+
+    /* Queries each reader makes */
+    private static final int QUERIES_PER_READER = 50;
+
+    /* The history loaded alongside the readers, and how fast */
+    private static final int HISTORY_DAYS = 3650;
+    private static final int HISTORY_BATCH_SIZE = 30;
+    private static final int HISTORY_BATCHES_PER_SECOND = 10;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    /*
+     * The provider is moved to an empty file of its own, rather than memory, so that its reads
+     * and writes go through the write-ahead log like the app's, but each run starts from the
+     * same state whatever weather.db holds
+     */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_TEMPORARY_FILE);
+
+    @Test
+    public void testDatabaseUsesWriteAheadLog() {
+        Cursor cursor = mStorage.getDatabase().rawQuery("PRAGMA journal_mode", null);
+        assertTrue(cursor.moveToFirst());
+        String journalMode = cursor.getString(0);
+        cursor.close();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            assertEquals("wal", journalMode.toLowerCase());
+        }
+    }
+
+    @Test
+    public void testQueriesDuringSync() throws Exception {
+        sync(0);
+
+        long[] quiet = runReaders(false);
+        long[] contended = runReaders(true);
+
+        Log.i(TAG, "Query milliseconds alone, median " + percentile(quiet, 50)
+                + ", 95th " + percentile(quiet, 95) + ", max " + percentile(quiet, 100));
+        Log.i(TAG, "Query milliseconds during sync, median " + percentile(contended, 50)
+                + ", 95th " + percentile(contended, 95) + ", max " + percentile(contended, 100));
+    }
+
+    @Test
+    public void testQueriesDuringHistoryLoad() throws Exception {
+        sync(0);
+
+        /* Ten years of history, written at a steady rate until the readers are done */
+        final AtomicInteger rowsLoaded = new AtomicInteger();
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rowsLoaded.set(FakeDataUtils.insertSyntheticHistory(mContext, 7, 0,
+                        HISTORY_DAYS, HISTORY_BATCH_SIZE, HISTORY_BATCHES_PER_SECOND));
+            }
+        });
+        loader.start();
+        long[] loading;
+        try {
+            loading = runReaders(false);
+        } finally {
+            loader.interrupt();
+            loader.join();
+        }
+
+        Log.i(TAG, "Query milliseconds during a history load of " + rowsLoaded.get()
+                + " rows, median " + percentile(loading, 50) + ", 95th "
+                + percentile(loading, 95) + ", max " + percentile(loading, 100));
+        assertTrue("The history load should have written something", rowsLoaded.get() > 0);
+    }
+
+    /*
+     * Runs the list, detail and notification loaders at the same time, each on a thread of its
+     * own like LoaderManager does, optionally while syncs run back to back. Returns the time
+     * every query took, in milliseconds.
+     */
+    private long[] runReaders(boolean syncing) throws Exception {
+        final List<CursorLoader> loaders = Arrays.asList(
+                new CursorLoader(mContext,
+                        WeatherContract.buildCompactUri(WeatherEntry.CONTENT_URI),
+                        MainActivity.MAIN_FORECAST_PROJECTION,
+                        WeatherEntry.SQL_SELECT_FROM_DATE,
+                        WeatherEntry.getSelectionArgsForTodayOnwards(),
+                        WeatherEntry.COLUMN_DATE + " ASC"),
+                new CursorLoader(mContext,
+                        WeatherEntry.buildWeatherUriWithDate(mToday + DAY),
+                        DetailActivity.WEATHER_DETAIL_PROJECTION,
+                        null,
+                        null,
+                        null),
+                new CursorLoader(mContext,
+                        WeatherEntry.buildWeatherUriWithDate(mToday),
+                        NotificationUtils.WEATHER_NOTIFICATION_PROJECTION,
+                        null,
+                        null,
+                        null));
+
+        final long[] millis = new long[loaders.size() * QUERIES_PER_READER];
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(loaders.size());
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        for (int i = 0; i < loaders.size(); i++) {
+            final CursorLoader loader = loaders.get(i);
+            final int offset = i * QUERIES_PER_READER;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int q = 0; q < QUERIES_PER_READER; q++) {
+                            long begin = System.nanoTime();
+                            Cursor cursor = loader.loadInBackground();
+                            if (cursor == null || cursor.getCount() == 0) {
+                                failed.set(true);
+                            } else {
+                                cursor.close();
+                            }
+                            millis[offset + q] = TimeUnit.NANOSECONDS
+                                    .toMillis(System.nanoTime() - begin);
+                        }
+                    } catch (InterruptedException e) {
+                        failed.set(true);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        int syncs = 0;
+        if (syncing) {
+            while (done.getCount() > 0) {
+                sync(++syncs);
+            }
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertTrue("A query came back empty", !failed.get());
+        Log.i(TAG, syncs + " syncs ran alongside the queries");
+        return millis;
+    }
+
+    /* Replaces the forecast the way SunshineSyncTask does, with slightly different weather */
+    private void sync(int round) throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.buildArchivingUri())
+                .withSelection(WeatherEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(mToday)})
+                .build());
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            ContentValues values = TestUtilities.createTestWeatherContentValues();
+            values.put(WeatherEntry.COLUMN_DATE, mToday + i * DAY);
+            values.put(WeatherEntry.COLUMN_MAX_TEMP, 20 + round % 10);
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(values)
+                    .build());
+        }
+        mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+    }
+
+    private static long percentile(long[] values, int percent) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentProviderClient;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that the registry follows the statement cache, and that the app's queries, with their
+ * values as arguments, hit it however the values change.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestStatementRegistry {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Test
+    public void testRepeatedSqlHits() {
+        StatementRegistry registry = new StatementRegistry();
+
+        assertFalse(registry.record("test", "SELECT 1"));
+        assertTrue(registry.record("test", "SELECT 1"));
+        assertEquals(0.5, registry.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSqlIsEvicted() {
+        StatementRegistry registry = new StatementRegistry();
+
+        for (int i = 0; i <= StatementRegistry.CACHE_SIZE; i++) {
+            registry.record("test", "SELECT " + i);
+        }
+
+        assertFalse("The first statement should have been evicted",
+                registry.record("test", "SELECT 0"));
+        assertTrue(registry.record("test", "SELECT " + StatementRegistry.CACHE_SIZE));
+    }
+
+    @Test
+    public void testForecastQueriesHitWhateverTheDate() {
+        ContentProviderClient client = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherEntry.CONTENT_URI);
+        assertTrue(client != null);
+        StatementRegistry registry =
+                ((WeatherProvider) client.getLocalContentProvider()).getStatementRegistry();
+
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+        queryForecastFrom(today);
+        long countBefore = registry.getCount();
+        double hitsBefore = registry.getHitRate() * countBefore;
+
+        /* A week of days, as the list would query them at each midnight */
+        for (int i = 1; i <= 7; i++) {
+            queryForecastFrom(today + i * DAY);
+        }
+
+        double hits = registry.getHitRate() * registry.getCount() - hitsBefore;
+        assertEquals(7, registry.getCount() - countBefore);
+        assertEquals("Every query after the first should find its SQL compiled", 7, hits, 1e-6);
+        client.release();
+    }
+
+    private void queryForecastFrom(long date) {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.buildPageUri(WeatherEntry.CONTENT_URI, 20),
+                MainActivity.MAIN_FORECAST_PROJECTION,
+                WeatherEntry.SQL_SELECT_FROM_DATE,
+                new String[]{Long.toString(date)},
+                null);
+        assertTrue(cursor != null);
+        cursor.close();
+    }
+}
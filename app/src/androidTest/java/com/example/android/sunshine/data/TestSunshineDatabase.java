@@ -167,11 +167,15 @@ public class TestSunshineDatabase {
             REFLECTED_DATABASE_VERSION = getStaticIntegerField(
                     weatherDbHelperClass, databaseVersionVariableName);
 
-            Constructor weatherDbHelperCtor = weatherDbHelperClass.getConstructor(Context.class);
+            Constructor weatherDbHelperCtor =
+                    weatherDbHelperClass.getConstructor(Context.class, int.class);
 
-            dbHelper = (SQLiteOpenHelper) weatherDbHelperCtor.newInstance(context);
-
-            context.deleteDatabase(REFLECTED_DATABASE_NAME);
+            /*
+             * Each test gets a new database in memory, rather than deleting weather.db from under
+             * the app and creating it again on disk
+             */
+            dbHelper = (SQLiteOpenHelper) weatherDbHelperCtor.newInstance(
+                    context, WeatherDbHelper.STORAGE_MEMORY);
 
             Method getWritableDatabase = SQLiteOpenHelper.class.getDeclaredMethod("getWritableDatabase");
             database = (SQLiteDatabase) getWritableDatabase.invoke(dbHelper);
@@ -193,7 +197,7 @@ public class TestSunshineDatabase {
 
     @Test
     public void testDatabaseVersionWasIncremented() {
-        int expectedDatabaseVersion = 3;
+        int expectedDatabaseVersion = 6;
         String databaseVersionShouldBe1 = "Database version should be "
                 + expectedDatabaseVersion + " but isn't."
                 + "\n Database version: ";
@@ -382,9 +386,10 @@ public class TestSunshineDatabase {
     }
 
     /**
-     * This method tests the {@link WeatherDbHelper#onUpgrade(SQLiteDatabase, int, int)}. The proper
-     * behavior for this method in our case is to simply DROP (or delete) the weather table from
-     * the database and then have the table recreated.
+     * This method tests the {@link WeatherDbHelper#onUpgrade(SQLiteDatabase, int, int)}. There is
+     * no migration between these versions, so the proper behavior is to DROP (or delete) the
+     * weather table from the database and then have the table recreated. Upgrades that do have
+     * migrations are tested in TestWeatherMigrations.
      */
     @Test
     public void testOnUpgradeBehavesCorrectly() {
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests moving days into the monthly archive tables, reading them back and compacting them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherArchive {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    /* Context used to access various parts of the system */
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    /* Each test gets an empty database of its own, weather.db is left as it was */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    @Test
+    public void testArchivingDeleteMovesPastDays() {
+        long firstDay = mToday - 40 * DAY;
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, createDays(firstDay, 46));
+
+        int deleted = mResolver.delete(WeatherEntry.buildArchivingUri(),
+                WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(mToday)});
+
+        assertEquals(40, deleted);
+        assertEquals("Only today onwards should be left in the weather table",
+                6, count(WeatherEntry.CONTENT_URI));
+        assertEquals("Every past day should be in the archive",
+                40, count(ArchiveEntry.CONTENT_URI));
+
+        /* 40 days always touch two or three months, and each got a table */
+        List<String> tables = WeatherArchive.getTableNames(mStorage.getDatabase());
+        assertTrue(tables.size() >= 2);
+        assertEquals(WeatherArchive.getTableName(firstDay), tables.get(0));
+        assertEquals(WeatherArchive.getTableName(mToday - DAY), tables.get(tables.size() - 1));
+    }
+
+    @Test
+    public void testPlainDeleteDoesNotArchive() {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, createDays(mToday - 3 * DAY, 3));
+
+        mResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+
+        assertEquals(0, count(ArchiveEntry.CONTENT_URI));
+    }
+
+    @Test
+    public void testQueryForRangeInOrder() {
+        archiveDays(mToday - 90 * DAY, 90);
+
+        long from = mToday - 60 * DAY;
+        long to = mToday - 31 * DAY;
+        Cursor cursor = mResolver.query(ArchiveEntry.buildArchiveUriForRange(from, to),
+                new String[]{WeatherEntry.COLUMN_DATE, ArchiveEntry.COLUMN_SAMPLE_DAYS},
+                null,
+                null,
+                null);
+        assertTrue(cursor != null);
+        assertEquals(30, cursor.getCount());
+
+        long expected = from;
+        while (cursor.moveToNext()) {
+            assertEquals("Days should come back oldest first", expected, cursor.getLong(0));
+            assertEquals(1, cursor.getInt(1));
+            expected += DAY;
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testQueryWithoutArchiveIsEmpty() {
+        Cursor cursor = mResolver.query(ArchiveEntry.CONTENT_URI, null, null, null, null);
+        assertTrue(cursor != null);
+        assertEquals(0, cursor.getCount());
+        assertTrue(cursor.getColumnIndex(ArchiveEntry.COLUMN_SAMPLE_DAYS) != -1);
+        cursor.close();
+    }
+
+    @Test
+    public void testCompactionDownSamplesAndDrops() {
+        long recentMonth = monthStart(-1);
+        long olderMonth = monthStart(-5);
+        long expiredMonth = monthStart(-30);
+        archiveDays(expiredMonth, 28);
+        archiveDays(olderMonth, 28);
+        archiveDays(recentMonth, 28);
+
+        int removed = mResolver.delete(ArchiveEntry.buildCompactionUri(24, 3), null, null);
+
+        assertEquals("The expired month should be gone",
+                0, countBetween(expiredMonth, expiredMonth + 27 * DAY));
+        assertEquals("Last month should still have a row per day",
+                28, countBetween(recentMonth, recentMonth + 27 * DAY));
+
+        Cursor cursor = mResolver.query(
+                ArchiveEntry.buildArchiveUriForRange(olderMonth, olderMonth + 27 * DAY),
+                new String[]{ArchiveEntry.COLUMN_SAMPLE_DAYS,
+                        WeatherEntry.COLUMN_MIN_TEMP,
+                        WeatherEntry.COLUMN_MAX_TEMP},
+                null,
+                null,
+                null);
+        assertTrue(cursor != null);
+        int rows = cursor.getCount();
+        assertTrue("28 days should fit in 4 or 5 weeks", rows == 4 || rows == 5);
+        int days = 0;
+        while (cursor.moveToNext()) {
+            days += cursor.getInt(0);
+            assertTrue(cursor.getDouble(1) <= cursor.getDouble(2));
+        }
+        cursor.close();
+        assertEquals("Down-sampled rows should account for every day", 28, days);
+
+        assertEquals(28 + 28 - rows, removed);
+
+        /* Nothing left to do the second time */
+        assertEquals(0, mResolver.delete(ArchiveEntry.buildCompactionUri(24, 3), null, null));
+    }
+
+    @Test
+    public void testTodayOnwardsIgnoresArchive() {
+        archiveDays(mToday - 400 * DAY, 400);
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, createDays(mToday, 14));
+
+        Cursor cursor = mResolver.query(WeatherEntry.CONTENT_URI,
+                null,
+                WeatherEntry.SQL_SELECT_FROM_DATE,
+                WeatherEntry.getSelectionArgsForTodayOnwards(),
+                null);
+        assertTrue(cursor != null);
+        assertEquals(14, cursor.getCount());
+        cursor.close();
+
+        assertFalse(count(ArchiveEntry.CONTENT_URI) == 0);
+    }
+
+    /* Inserts the days into the weather table, then moves them into the archive */
+    private void archiveDays(long firstDay, int dayCount) {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, createDays(firstDay, dayCount));
+        mResolver.delete(WeatherEntry.buildArchivingUri(),
+                WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(firstDay + dayCount * DAY)});
+    }
+
+    private static ContentValues[] createDays(long firstDay, int dayCount) {
+        ContentValues[] days = new ContentValues[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            ContentValues values = TestUtilities.createTestWeatherContentValues();
+            values.put(WeatherEntry.COLUMN_DATE, firstDay + i * DAY);
+            values.put(WeatherEntry.COLUMN_MIN_TEMP, 5 + i % 7);
+            values.put(WeatherEntry.COLUMN_MAX_TEMP, 15 + i % 7);
+            values.put(WeatherEntry.COLUMN_WEATHER_ID, i % 3 == 0 ? 500 : 800);
+            days[i] = values;
+        }
+        return days;
+    }
+
+    /* Midnight UTC on the first of a month relative to this one */
+    private long monthStart(int monthsFromNow) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(mToday);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.add(Calendar.MONTH, monthsFromNow);
+        return calendar.getTimeInMillis();
+    }
+
+    private int countBetween(long from, long to) {
+        return count(ArchiveEntry.buildArchiveUriForRange(from, to));
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = mResolver.query(uri, null, null, null, null);
+        assertTrue(cursor != null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Applies batches of operations through the ContentResolver, the way a sync does, and checks
+ * that each is applied whole or not at all, and makes one change notification.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherBatch {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    /* How long to wait for notifications that shouldn't come */
+    private static final long QUIET_MILLIS = 500;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    private HandlerThread mObserverThread;
+
+    /* Each test gets an empty database of its own, weather.db is left as it was */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    @Before
+    public void setUp() {
+        mObserverThread = new HandlerThread("BatchObserverThread");
+        mObserverThread.start();
+    }
+
+    @After
+    public void tearDown() {
+        mObserverThread.quit();
+    }
+
+    @Test
+    public void testMixedBatchIsApplied() throws Exception {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, new ContentValues[]{
+                createDay(mToday - DAY), createDay(mToday)});
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.buildArchivingUri())
+                .withSelection(WeatherEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(mToday)})
+                .build());
+        operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                .withValues(createDay(mToday + DAY))
+                .build());
+        /* Raise the high of the day just inserted, found through the insert's result */
+        operations.add(ContentProviderOperation.newUpdate(WeatherEntry.CONTENT_URI)
+                .withValue(WeatherEntry.COLUMN_MAX_TEMP, 30.5)
+                .withSelection(WeatherEntry.COLUMN_DATE + " = ?", new String[1])
+                .withSelectionBackReference(0, 1)
+                .build());
+
+        ContentProviderResult[] results =
+                mResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+
+        assertEquals(3, results.length);
+        assertEquals(1, results[0].count.intValue());
+        assertEquals(WeatherEntry.buildWeatherUriWithDate(mToday + DAY), results[1].uri);
+        assertEquals(1, results[2].count.intValue());
+
+        Cursor cursor = mResolver.query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry.COLUMN_DATE, WeatherEntry.COLUMN_MAX_TEMP},
+                null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        assertTrue(cursor != null);
+        assertEquals(2, cursor.getCount());
+        assertTrue(cursor.moveToLast());
+        assertEquals(mToday + DAY, cursor.getLong(0));
+        assertEquals(30.5, cursor.getDouble(1), 1e-9);
+        cursor.close();
+    }
+
+    @Test
+    public void testFailedBatchIsRolledBack() throws Exception {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, new ContentValues[]{createDay(mToday)});
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.CONTENT_URI).build());
+        ContentValues notNormalized = createDay(mToday + 1);
+        operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                .withValues(notNormalized)
+                .build());
+
+        try {
+            mResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            fail("A day with a date that isn't normalized should fail the batch");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        Cursor cursor = mResolver.query(WeatherEntry.CONTENT_URI, null, null, null, null);
+        assertTrue(cursor != null);
+        assertEquals("The delete before the failed insert should be rolled back",
+                1, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void testBatchNotifiesOnce() throws Exception {
+        final AtomicInteger notifications = new AtomicInteger();
+        ContentObserver observer = new ContentObserver(new Handler(mObserverThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                notifications.incrementAndGet();
+            }
+        };
+        mResolver.registerContentObserver(WeatherEntry.CONTENT_URI, true, observer);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.buildArchivingUri())
+                .withSelection(WeatherEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(mToday)})
+                .build());
+        for (int i = 0; i < 14; i++) {
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(createDay(mToday + i * DAY))
+                    .build());
+        }
+        mResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+
+        Thread.sleep(QUIET_MILLIS);
+        mResolver.unregisterContentObserver(observer);
+        assertEquals(1, notifications.get());
+    }
+
+    private static ContentValues createDay(long date) {
+        ContentValues values = TestUtilities.createTestWeatherContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        return values;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.ChangeEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Writes to the weather table and checks that the change log, read through
+ * {@link ChangeEntry#buildChangesUri(long)}, has each changed day once, after the sequence asked
+ * for and with its latest weather.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherChanges {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP
+    };
+
+    private static final int INDEX_SEQUENCE = 0;
+    private static final int INDEX_DATE = 1;
+    private static final int INDEX_CHANGE = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    private long mStart;
+
+    /* Each test gets an empty database of its own, weather.db is left as it was */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    @Before
+    public void setUp() {
+        /* Every test reads the changes after clearing the table */
+        mStart = getLastSequence(0);
+    }
+
+    @Test
+    public void testInsertLogsEachDay() {
+        insertDays(mToday, 3, 10);
+
+        Cursor cursor = queryChanges(mStart);
+        assertEquals(3, cursor.getCount());
+        long sequence = mStart;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(cursor.moveToNext());
+            assertTrue(cursor.getLong(INDEX_SEQUENCE) > sequence);
+            sequence = cursor.getLong(INDEX_SEQUENCE);
+            assertEquals(mToday + i * DAY, cursor.getLong(INDEX_DATE));
+            assertEquals(ChangeEntry.CHANGE_UPDATED, cursor.getInt(INDEX_CHANGE));
+            assertEquals(10.0, cursor.getDouble(INDEX_MIN_TEMP), 1e-9);
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testSameWeatherIsNotLogged() {
+        insertDays(mToday, 3, 10);
+        long checkpoint = getLastSequence(mStart);
+
+        insertDays(mToday, 3, 10);
+
+        Cursor cursor = queryChanges(checkpoint);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void testChangedDayMovesToEndOfLog() {
+        insertDays(mToday, 3, 10);
+        long checkpoint = getLastSequence(mStart);
+
+        insertDays(mToday, 1, 12.5);
+
+        Cursor cursor = queryChanges(mStart);
+        assertEquals("A day is logged once however often it changes", 3, cursor.getCount());
+        assertTrue(cursor.moveToLast());
+        assertTrue(cursor.getLong(INDEX_SEQUENCE) > checkpoint);
+        assertEquals(mToday, cursor.getLong(INDEX_DATE));
+        assertEquals(12.5, cursor.getDouble(INDEX_MIN_TEMP), 1e-9);
+        cursor.close();
+
+        cursor = queryChanges(checkpoint);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void testArchivedDaysAreLoggedAsRemoved() {
+        insertDays(mToday - 2 * DAY, 2, 10);
+        long checkpoint = getLastSequence(mStart);
+
+        mResolver.delete(WeatherEntry.buildArchivingUri(),
+                WeatherEntry.COLUMN_DATE + " < ?", new String[]{Long.toString(mToday)});
+
+        Cursor cursor = queryChanges(checkpoint);
+        assertEquals(2, cursor.getCount());
+        while (cursor.moveToNext()) {
+            assertEquals(ChangeEntry.CHANGE_REMOVED, cursor.getInt(INDEX_CHANGE));
+            assertTrue(cursor.isNull(INDEX_MIN_TEMP));
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testCompactChangesAreStored() {
+        insertDays(mToday, 1, 10);
+
+        Cursor cursor = mResolver.query(
+                WeatherContract.buildCompactUri(ChangeEntry.buildChangesUri(mStart)),
+                PROJECTION, null, null, null);
+        assertTrue(cursor != null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(100, cursor.getLong(INDEX_MIN_TEMP));
+        assertFalse(cursor.moveToNext());
+        cursor.close();
+    }
+
+    private Cursor queryChanges(long sequence) {
+        Cursor cursor = mResolver.query(ChangeEntry.buildChangesUri(sequence),
+                PROJECTION, null, null, null);
+        assertTrue(cursor != null);
+        return cursor;
+    }
+
+    private long getLastSequence(long sequence) {
+        Cursor cursor = queryChanges(sequence);
+        if (cursor.moveToLast()) {
+            sequence = cursor.getLong(INDEX_SEQUENCE);
+        }
+        cursor.close();
+        return sequence;
+    }
+
+    private void insertDays(long firstDay, int dayCount, double minTemp) {
+        ContentValues[] days = new ContentValues[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            days[i] = TestUtilities.createTestWeatherContentValues();
+            days[i].put(WeatherEntry.COLUMN_DATE, firstDay + i * DAY);
+            days[i].put(WeatherEntry.COLUMN_MIN_TEMP, minTemp);
+        }
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, days);
+    }
+}
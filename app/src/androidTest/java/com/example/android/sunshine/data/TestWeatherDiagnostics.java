@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.DiagnosticsEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks the figures {@link DiagnosticsEntry} reports, and that maintenance refreshes the
+ * planner's statistics and gives free pages back once enough rows have come and gone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherDiagnostics {
+
+    /* Enough days for their pages to pass the vacuum threshold once they are deleted */
+    private static final int DAYS = 8000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    /*
+     * Each test gets an empty file of its own, rather than memory, so the figures are those of
+     * a file with a write-ahead log like weather.db, which is left as it was
+     */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_TEMPORARY_FILE);
+
+    @Test
+    public void testFiguresAreReported() {
+        ContentValues[] days = new ContentValues[3];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = TestUtilities.createTestWeatherContentValues();
+            days[i].put(WeatherEntry.COLUMN_DATE,
+                    TestUtilities.DATE_NORMALIZED + i * SunshineDateUtils.DAY_IN_MILLIS);
+        }
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, days);
+
+        Map<String, String> figures = queryFigures();
+
+        assertTrue(Long.parseLong(figures.get(DiagnosticsEntry.PAGE_SIZE)) > 0);
+        assertTrue(Long.parseLong(figures.get(DiagnosticsEntry.PAGE_COUNT)) > 0);
+        assertTrue(figures.containsKey(DiagnosticsEntry.FREELIST_COUNT));
+        assertTrue(figures.containsKey(DiagnosticsEntry.WAL_BYTES));
+        assertTrue(figures.containsKey(DiagnosticsEntry.STATEMENT_CACHE_HIT_RATE));
+        assertEquals("3", figures.get(DiagnosticsEntry.ROWS_PREFIX + WeatherEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void testMaintenanceAnalyzesAndVacuums() {
+        SQLiteDatabase database = mStorage.getDatabase();
+
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < DAYS; i++) {
+                ContentValues day = TestUtilities.createTestWeatherContentValues();
+                day.put(WeatherEntry.COLUMN_DATE, i * SunshineDateUtils.DAY_IN_MILLIS);
+                database.insert(WeatherEntry.TABLE_NAME, null, day);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        assertTrue("A table that grew from nothing should be analyzed", maintain() > 0);
+        assertEquals(1, DatabaseUtils.longForQuery(database,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = 'sqlite_stat1'", null));
+        assertEquals("2", queryFigures().get(DiagnosticsEntry.AUTO_VACUUM));
+
+        database.delete(WeatherEntry.TABLE_NAME, null, null);
+        long freePagesBefore = Long.parseLong(
+                queryFigures().get(DiagnosticsEntry.FREELIST_COUNT));
+        assertTrue(freePagesBefore > 0);
+
+        assertTrue(maintain() > 0);
+        long freePagesAfter = Long.parseLong(
+                queryFigures().get(DiagnosticsEntry.FREELIST_COUNT));
+        assertTrue("Free pages should have been given back, " + freePagesAfter + " are left",
+                freePagesAfter < freePagesBefore);
+    }
+
+    private int maintain() {
+        return mResolver.update(DiagnosticsEntry.MAINTENANCE_URI, new ContentValues(), null, null);
+    }
+
+    private Map<String, String> queryFigures() {
+        Cursor cursor = mResolver.query(DiagnosticsEntry.CONTENT_URI, null, null, null, null);
+        assertTrue(cursor != null);
+        Map<String, String> figures = new HashMap<>();
+        while (cursor.moveToNext()) {
+            figures.put(cursor.getString(0), cursor.getString(1));
+        }
+        cursor.close();
+        return figures;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks the single row {@link WeatherEntry#EXISTS_URI} answers with, for an empty table, for
+ * days that are all before the date asked about, and for a day after it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherExists {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    /* Each test gets an empty database of its own, weather.db is left as it was */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    @Test
+    public void testEmptyTableHasNoWeather() {
+        assertFalse(exists(WeatherEntry.EXISTS_URI));
+        assertFalse(exists(WeatherEntry.buildExistsUriForTodayOnwards()));
+    }
+
+    @Test
+    public void testOnlyDaysFromDateCount() {
+        insertDay(mToday - 2 * DAY);
+
+        assertTrue(exists(WeatherEntry.EXISTS_URI));
+        assertFalse(exists(WeatherEntry.buildExistsUri(mToday)));
+
+        insertDay(mToday + 3 * DAY);
+
+        assertTrue(exists(WeatherEntry.buildExistsUri(mToday)));
+        assertFalse(exists(WeatherEntry.buildExistsUri(mToday + 4 * DAY)));
+    }
+
+    private boolean exists(Uri uri) {
+        Cursor cursor = mResolver.query(uri, null, null, null, null);
+        assertTrue(cursor != null);
+        assertEquals(1, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        boolean exists = cursor.getInt(
+                cursor.getColumnIndexOrThrow(WeatherEntry.COLUMN_EXISTS)) == 1;
+        cursor.close();
+        return exists;
+    }
+
+    private void insertDay(long date) {
+        ContentValues values = TestUtilities.createTestWeatherContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, new ContentValues[]{values});
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+/**
+ * Upgrades a database from every version there is a migration for, and checks that the days
+ * survive and that the schema ends up exactly as a new install's. Databases are built in a file
+ * of their own, so the app's database is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherMigrations {
+
+    private static final String TEST_DATABASE_NAME = "migration_test.db";
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final WeatherDbHelper mHelper = new WeatherDbHelper(mContext);
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mDatabase = openEmptyDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @Test
+    public void testEveryUpgradeKeepsDays() {
+        int latest = WeatherMigrations.getLatestVersion();
+        String expectedSchema = getNewInstallSchema();
+
+        for (int version = WeatherMigrations.BASE_VERSION; version < latest; version++) {
+            mDatabase.close();
+            mDatabase = openEmptyDatabase();
+            WeatherDbHelper.createSchema(mDatabase, version);
+            insertDays(mDatabase, mToday, 10);
+
+            mHelper.onUpgrade(mDatabase, version, latest);
+
+            assertEquals("Days lost upgrading from version " + version,
+                    10, countDays(mDatabase));
+            assertEquals("Schema upgraded from version " + version + " differs from new install",
+                    expectedSchema, getSchema(mDatabase));
+        }
+    }
+
+    @Test
+    public void testUpgradeKeepsArchive() {
+        WeatherDbHelper.createSchema(mDatabase, WeatherMigrations.BASE_VERSION);
+        insertDays(mDatabase, mToday - 40 * DAY, 40);
+        WeatherArchive.archive(mDatabase, null, null);
+
+        mHelper.onUpgrade(mDatabase, WeatherMigrations.BASE_VERSION,
+                WeatherMigrations.getLatestVersion());
+
+        assertFalse(WeatherArchive.getTableNames(mDatabase).isEmpty());
+        Cursor archived = WeatherArchive.query(mDatabase, null, null, null, null, null, null);
+        assertEquals(40, archived.getCount());
+        archived.close();
+    }
+
+    @Test
+    public void testVersionWithoutMigrationIsRecreated() {
+        /* Older Sunshines kept weather by location, in a schema there are no steps from */
+        mDatabase.execSQL("CREATE TABLE " + WeatherEntry.TABLE_NAME
+                + " (_id INTEGER PRIMARY KEY, location_id INTEGER)");
+        mDatabase.execSQL("INSERT INTO " + WeatherEntry.TABLE_NAME + " VALUES (1, 1)");
+
+        mHelper.onUpgrade(mDatabase, WeatherMigrations.BASE_VERSION - 1,
+                WeatherMigrations.getLatestVersion());
+
+        assertEquals(0, countDays(mDatabase));
+        assertEquals(getNewInstallSchema(), getSchema(mDatabase));
+    }
+
+    @Test
+    public void testDowngradeIsRecreated() {
+        int latest = WeatherMigrations.getLatestVersion();
+        WeatherDbHelper.createSchema(mDatabase, latest);
+        insertDays(mDatabase, mToday, 10);
+
+        mHelper.onDowngrade(mDatabase, latest + 1, latest);
+
+        assertEquals(0, countDays(mDatabase));
+        assertEquals(getNewInstallSchema(), getSchema(mDatabase));
+    }
+
+    @Test
+    public void testDatabaseVersionHasMigration() {
+        SQLiteDatabase database = mHelper.getReadableDatabase();
+        assertEquals("Each database version needs a step in WeatherMigrations",
+                WeatherMigrations.getLatestVersion(), database.getVersion());
+        database.close();
+    }
+
+    private SQLiteDatabase openEmptyDatabase() {
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+        return mContext.openOrCreateDatabase(TEST_DATABASE_NAME, Context.MODE_PRIVATE, null);
+    }
+
+    private String getNewInstallSchema() {
+        String name = "migration_expected.db";
+        mContext.deleteDatabase(name);
+        SQLiteDatabase database = mContext.openOrCreateDatabase(name, Context.MODE_PRIVATE, null);
+        WeatherDbHelper.createSchema(database, WeatherMigrations.getLatestVersion());
+        String schema = getSchema(database);
+        database.close();
+        mContext.deleteDatabase(name);
+        return schema;
+    }
+
+    /* The SQL of every table and index in the weather table's schema, in name order */
+    private static String getSchema(SQLiteDatabase database) {
+        Cursor cursor = database.rawQuery("SELECT type, name, sql FROM sqlite_master"
+                + " WHERE tbl_name = ? AND sql IS NOT NULL ORDER BY name",
+                new String[]{WeatherEntry.TABLE_NAME});
+        StringBuilder schema = new StringBuilder();
+        while (cursor.moveToNext()) {
+            schema.append(cursor.getString(0)).append(' ')
+                    .append(cursor.getString(1)).append(": ")
+                    .append(cursor.getString(2)).append('\n');
+        }
+        cursor.close();
+        return schema.toString();
+    }
+
+    private static int countDays(SQLiteDatabase database) {
+        Cursor cursor = database.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    private static void insertDays(SQLiteDatabase database, long firstDay, int dayCount) {
+        for (int i = 0; i < dayCount; i++) {
+            ContentValues values = TestUtilities.createTestWeatherContentValues();
+            values.put(WeatherEntry.COLUMN_DATE, firstDay + i * DAY);
+            database.insert(WeatherEntry.TABLE_NAME, null, values);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Pages through the weather table and the archive with the after-date and limit parameters.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherPaging {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    private static final String[] PROJECTION = {WeatherEntry.COLUMN_DATE};
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    /* Each test gets an empty database of its own, weather.db is left as it was */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    @Test
+    public void testPagesThroughWeather() {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, createDays(mToday, 50));
+
+        assertPages(WeatherEntry.CONTENT_URI, mToday, 50, 20);
+    }
+
+    @Test
+    public void testPagesThroughArchiveAcrossMonths() {
+        long firstDay = mToday - 100 * DAY;
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, createDays(firstDay, 100));
+        mResolver.delete(WeatherEntry.buildArchivingUri(), null, null);
+
+        assertPages(ArchiveEntry.CONTENT_URI, firstDay, 100, 25);
+    }
+
+    @Test
+    public void testPageKeepsSelection() {
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, createDays(mToday - 10 * DAY, 30));
+
+        Cursor cursor = mResolver.query(
+                WeatherContract.buildPageUri(WeatherEntry.CONTENT_URI, mToday + 5 * DAY, 100),
+                PROJECTION,
+                WeatherEntry.SQL_SELECT_FROM_DATE,
+                WeatherEntry.getSelectionArgsForTodayOnwards(),
+                null);
+        assertTrue(cursor != null);
+        assertEquals("Days after the key and from today onwards", 14, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(mToday + 6 * DAY, cursor.getLong(0));
+        cursor.close();
+    }
+
+    /* Reads every page and checks that together they are each day exactly once, in order */
+    private void assertPages(Uri contentUri, long firstDay, int dayCount, int pageSize) {
+        Cursor cursor = mResolver.query(WeatherContract.buildPageUri(contentUri, pageSize),
+                PROJECTION, null, null, null);
+        long expected = firstDay;
+        int days = 0;
+        while (true) {
+            assertTrue(cursor != null);
+            int count = cursor.getCount();
+            assertTrue("Pages must not be larger than the limit", count <= pageSize);
+            long lastDate = 0;
+            while (cursor.moveToNext()) {
+                lastDate = cursor.getLong(0);
+                assertEquals(expected, lastDate);
+                expected += DAY;
+                days++;
+            }
+            cursor.close();
+            if (count < pageSize) {
+                break;
+            }
+            cursor = mResolver.query(WeatherContract.buildPageUri(contentUri, lastDate, pageSize),
+                    PROJECTION, null, null, null);
+        }
+        assertEquals(dayCount, days);
+    }
+
+    private static ContentValues[] createDays(long firstDay, int dayCount) {
+        ContentValues[] days = new ContentValues[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            ContentValues values = TestUtilities.createTestWeatherContentValues();
+            values.put(WeatherEntry.COLUMN_DATE, firstDay + i * DAY);
+            days[i] = values;
+        }
+        return days;
+    }
+}
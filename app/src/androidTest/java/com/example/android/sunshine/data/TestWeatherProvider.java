@@ -27,7 +27,7 @@ import android.net.Uri;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
-import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -60,10 +60,10 @@ import static junit.framework.Assert.fail;
  * If any of these tests fail, you should see useful error messages in the testing console's
  * output window.
  * <p>
- * Finally, we have a method annotated with the @Before annotation, which tells the test runner
- * that the {@link #setUp()} method should be called before every method annotated with a @Test
- * annotation. In our setUp method, all we do is delete all records from the database to start our
- * tests with a clean slate each time.
+ * Finally, we have a field annotated with the @Rule annotation, which tells the test runner to
+ * wrap every method annotated with a @Test annotation in it. Our {@link WeatherStorageRule}
+ * moves the provider to a new, empty database in memory, so each test starts with a clean slate
+ * without deleting anything from weather.db or waiting on the disk.
  */
 @RunWith(AndroidJUnit4.class)
 public class TestWeatherProvider {
@@ -71,15 +71,14 @@ public class TestWeatherProvider {
     /* Context used to access various parts of the system */
     private final Context mContext = InstrumentationRegistry.getTargetContext();
 
-    /**
-     * Because we annotate this method with the @Before annotation, this method will be called
-     * before every single method with an @Test annotation. We want to start each test clean, so we
-     * delete all entries in the weather table to do so.
+    /*
+     * We want to start each test clean, so this rule gives the provider a new database in memory,
+     * with an empty weather table, before every single method with an @Test annotation, and puts
+     * it back on weather.db afterwards for the tests that follow.
      */
-    @Before
-    public void setUp() {
-        deleteAllRecordsFromWeatherTable();
-    }
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
 
     /**
      * This test checks to make sure that the content provider is registered correctly in the
@@ -164,26 +163,31 @@ public class TestWeatherProvider {
     @Test
     public void testBasicWeatherQuery() {
 
-        /* Use WeatherDbHelper to get access to a writable database */
-        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
-        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        /* Use the provider's WeatherDbHelper to get access to its writable database */
+        SQLiteDatabase database = mStorage.getDatabase();
 
         /* Obtain weather values from TestUtilities */
         ContentValues testWeatherValues = TestUtilities.createTestWeatherContentValues();
 
-        /* Insert ContentValues into database and get a row ID back */
+        /*
+         * Insert ContentValues into database and get a row ID back. The table stores each metric
+         * as a scaled whole number, which the provider converts back when it's read, so the
+         * values are scaled the same way the provider's own inserts scale them.
+         */
         long weatherRowId = database.insert(
                 /* Table to insert values into */
                 WeatherContract.WeatherEntry.TABLE_NAME,
                 null,
                 /* Values to insert into table */
-                testWeatherValues);
+                CompactWeather.toStored(testWeatherValues));
 
         String insertFailed = "Unable to insert into the database";
         assertTrue(insertFailed, weatherRowId != -1);
 
-        /* We are done with the database, close it now. */
-        database.close();
+        /*
+         * We leave the database open, as it belongs to the provider, and an in-memory database
+         * is gone once it's closed.
+         */
 
         /*
          * Perform our ContentProvider query. We expect the cursor that is returned will contain
@@ -349,7 +353,7 @@ public class TestWeatherProvider {
     public void testDeleteAllRecordsFromProvider() {
 
         /*
-         * Ensure there are records to delete from the database. Due to our setUp method, the
+         * Ensure there are records to delete from the database. Due to our storage rule, the
          * database will not have any records in it prior to this method being run.
          */
         testBulkInsert();
@@ -422,28 +426,4 @@ public class TestWeatherProvider {
         /* Always close your cursor */
         shouldBeEmptyCursor.close();
     }
-
-    /**
-     * This method will clear all rows from the weather table in our database.
-     * <p>
-     * Please note:
-     * <p>
-     * - This does NOT delete the table itself. We call this method from our @Before annotated
-     * method to clear all records from the database before each test on the ContentProvider.
-     * <p>
-     * - We don't use the ContentProvider's delete functionality to perform this row deletion
-     * because in this class, we are attempting to test the ContentProvider. We can't assume
-     * that our ContentProvider's delete method works in our ContentProvider's test class.
-     */
-    private void deleteAllRecordsFromWeatherTable() {
-        /* Access writable database through WeatherDbHelper */
-        WeatherDbHelper helper = new WeatherDbHelper(InstrumentationRegistry.getTargetContext());
-        SQLiteDatabase database = helper.getWritableDatabase();
-
-        /* The delete method deletes all of the desired rows from the table, not the table itself */
-        database.delete(WeatherContract.WeatherEntry.TABLE_NAME, null, null);
-
-        /* Always close the database when you're through with it */
-        database.close();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.StatsEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks the statistics URIs against days whose aggregates are easy to work out by hand. Half of
+ * the days are archived, so both the weather table and the archive are covered.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherStatistics {
+
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+
+    /* Rain, rain, clear, clouds, snow, repeated */
+    private static final int[] WEATHER_IDS = {500, 501, 800, 803, 600};
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    /* Each test gets an empty database of its own, weather.db is left as it was */
+    @Rule
+    public final WeatherStorageRule mStorage =
+            new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+
+    @Before
+    public void setUp() {
+        /* Ten days, the first five archived. Day i has a low of i and a high of i + 10. */
+        ContentValues[] days = new ContentValues[10];
+        for (int i = 0; i < days.length; i++) {
+            ContentValues values = TestUtilities.createTestWeatherContentValues();
+            values.put(WeatherEntry.COLUMN_DATE, mToday + (i - 5) * DAY);
+            values.put(WeatherEntry.COLUMN_MIN_TEMP, i);
+            values.put(WeatherEntry.COLUMN_MAX_TEMP, i + 10);
+            values.put(WeatherEntry.COLUMN_WEATHER_ID, WEATHER_IDS[i % WEATHER_IDS.length]);
+            days[i] = values;
+        }
+        mResolver.bulkInsert(WeatherEntry.CONTENT_URI, days);
+        mResolver.delete(WeatherEntry.buildArchivingUri(),
+                WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(mToday)});
+    }
+
+    @Test
+    public void testSummaryOverForecastAndArchive() {
+        Cursor cursor = mResolver.query(
+                StatsEntry.buildStatsUri(mToday - 5 * DAY, mToday + 4 * DAY),
+                null, null, null, null);
+        assertTrue(cursor != null);
+        assertEquals(1, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+
+        assertEquals(10, getInt(cursor, StatsEntry.COLUMN_DAYS));
+        assertEquals(0, getDouble(cursor, StatsEntry.COLUMN_MIN_TEMP), 0);
+        assertEquals(19, getDouble(cursor, StatsEntry.COLUMN_MAX_TEMP), 0);
+        /* Midpoints are i + 5 for i from 0 to 9 */
+        assertEquals(9.5, getDouble(cursor, StatsEntry.COLUMN_AVERAGE_TEMP), 1e-9);
+        /* Rain, rain and snow in each group of five */
+        assertEquals(6, getInt(cursor, StatsEntry.COLUMN_PRECIPITATION_DAYS));
+        cursor.close();
+    }
+
+    @Test
+    public void testSummaryOfPartOfRange() {
+        Cursor cursor = mResolver.query(
+                StatsEntry.buildStatsUri(mToday - 2 * DAY, mToday + DAY),
+                null, null, null, null);
+        assertTrue(cursor != null);
+        assertTrue(cursor.moveToFirst());
+
+        /* Days 3 to 6 */
+        assertEquals(4, getInt(cursor, StatsEntry.COLUMN_DAYS));
+        assertEquals(3, getDouble(cursor, StatsEntry.COLUMN_MIN_TEMP), 0);
+        assertEquals(16, getDouble(cursor, StatsEntry.COLUMN_MAX_TEMP), 0);
+        /* Clouds, snow, rain, rain */
+        assertEquals(3, getInt(cursor, StatsEntry.COLUMN_PRECIPITATION_DAYS));
+        cursor.close();
+    }
+
+    @Test
+    public void testSummaryOfEmptyRange() {
+        Cursor cursor = mResolver.query(
+                StatsEntry.buildStatsUri(mToday + 100 * DAY, mToday + 200 * DAY),
+                null, null, null, null);
+        assertTrue(cursor != null);
+        assertTrue(cursor.moveToFirst());
+
+        assertEquals(0, getInt(cursor, StatsEntry.COLUMN_DAYS));
+        assertTrue(cursor.isNull(cursor.getColumnIndex(StatsEntry.COLUMN_AVERAGE_TEMP)));
+        cursor.close();
+    }
+
+    @Test
+    public void testConditionHistogram() {
+        Cursor cursor = mResolver.query(
+                StatsEntry.buildConditionsUri(mToday - 5 * DAY, mToday + 4 * DAY),
+                null, null, null, null);
+        assertTrue(cursor != null);
+        assertEquals("One row per distinct weather id", WEATHER_IDS.length, cursor.getCount());
+
+        int totalDays = 0;
+        int previousDays = Integer.MAX_VALUE;
+        while (cursor.moveToNext()) {
+            int days = getInt(cursor, StatsEntry.COLUMN_DAYS);
+            assertEquals("Each id is seen on two of the ten days", 2, days);
+            assertFalse("Most frequent first", days > previousDays);
+            previousDays = days;
+            totalDays += days;
+        }
+        cursor.close();
+        assertEquals(10, totalDays);
+    }
+
+    @Test
+    public void testDownSampledDaysAreWeighted() {
+        /*
+         * Fold every archived day into weekly rows, this month's included, and keep them all.
+         * The number of days and the extremes must not change.
+         */
+        mResolver.delete(WeatherContract.ArchiveEntry.buildCompactionUri(1200, -1), null, null);
+
+        Cursor cursor = mResolver.query(
+                StatsEntry.buildStatsUri(mToday - 5 * DAY, mToday + 4 * DAY),
+                null, null, null, null);
+        assertTrue(cursor != null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(10, getInt(cursor, StatsEntry.COLUMN_DAYS));
+        assertEquals(0, getDouble(cursor, StatsEntry.COLUMN_MIN_TEMP), 0);
+        cursor.close();
+    }
+
+    private static int getInt(Cursor cursor, String column) {
+        return cursor.getInt(cursor.getColumnIndex(column));
+    }
+
+    private static double getDouble(Cursor cursor, String column) {
+        return cursor.getDouble(cursor.getColumnIndex(column));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+/**
+ * Checks that the temporary file and in-memory databases start out empty, and that moving the
+ * provider to one leaves weather.db as it was.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherStorage {
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Test
+    public void testTemporaryFileStartsEmpty() {
+        WeatherDbHelper helper =
+                new WeatherDbHelper(mContext, WeatherDbHelper.STORAGE_TEMPORARY_FILE);
+        helper.getWritableDatabase().insert(WeatherEntry.TABLE_NAME, null,
+                TestUtilities.createTestWeatherContentValues());
+        helper.close();
+
+        helper = new WeatherDbHelper(mContext, WeatherDbHelper.STORAGE_TEMPORARY_FILE);
+        assertEquals(0, countDays(helper.getReadableDatabase()));
+        helper.close();
+        mContext.deleteDatabase(WeatherDbHelper.TEMPORARY_DATABASE_NAME);
+    }
+
+    @Test
+    public void testMemoryLeavesNoFile() {
+        mContext.deleteDatabase(WeatherDbHelper.TEMPORARY_DATABASE_NAME);
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, WeatherDbHelper.STORAGE_MEMORY);
+        SQLiteDatabase database = helper.getWritableDatabase();
+        database.insert(WeatherEntry.TABLE_NAME, null,
+                TestUtilities.createTestWeatherContentValues());
+
+        assertEquals(1, countDays(database));
+        assertFalse(mContext.getDatabasePath(WeatherDbHelper.TEMPORARY_DATABASE_NAME).exists());
+        helper.close();
+    }
+
+    @Test
+    public void testProviderInMemoryLeavesDiskAlone() {
+        /* Only counted, as weather.db may hold the user's forecast */
+        WeatherDbHelper diskHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase disk = diskHelper.getReadableDatabase();
+        long diskDays = countDays(disk);
+
+        WeatherStorageRule storage = new WeatherStorageRule(WeatherDbHelper.STORAGE_MEMORY);
+        storage.before();
+        try {
+            ContentValues otherDay = TestUtilities.createTestWeatherContentValues();
+            otherDay.put(WeatherEntry.COLUMN_DATE,
+                    TestUtilities.DATE_NORMALIZED + SunshineDateUtils.DAY_IN_MILLIS);
+            mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                    new ContentValues[]{otherDay, TestUtilities.createTestWeatherContentValues()});
+
+            assertEquals(2, countDays(storage.getDatabase()));
+            assertEquals(diskDays, countDays(disk));
+        } finally {
+            storage.after();
+            diskHelper.close();
+        }
+    }
+
+    private static long countDays(SQLiteDatabase database) {
+        return DatabaseUtils.longForQuery(database,
+                "SELECT COUNT(*) FROM " + WeatherEntry.TABLE_NAME, null);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentProviderClient;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import org.junit.rules.ExternalResource;
+
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Moves the provider running in this process to a new, empty database before each test, and
+ * back to weather.db after it, so that tests start from a clean slate without deleting anything
+ * the user has. Use it as a public @Rule field.
+ */
+class WeatherStorageRule extends ExternalResource {
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final int mStorage;
+
+    private ContentProviderClient mClient;
+    private WeatherProvider mProvider;
+
+    /**
+     * @param storage {@link WeatherDbHelper#STORAGE_MEMORY}, or
+     *                {@link WeatherDbHelper#STORAGE_TEMPORARY_FILE} for tests that need a file
+     *                and its write-ahead log, as the app has
+     */
+    WeatherStorageRule(int storage) {
+        mStorage = storage;
+    }
+
+    @Override
+    protected void before() {
+        mClient = mContext.getContentResolver()
+                .acquireContentProviderClient(WeatherEntry.CONTENT_URI);
+        assertTrue(mClient != null);
+        mProvider = (WeatherProvider) mClient.getLocalContentProvider();
+        mProvider.setStorage(mStorage);
+    }
+
+    @Override
+    protected void after() {
+        mProvider.setStorage(WeatherDbHelper.STORAGE_DISK);
+        mClient.release();
+        if (mStorage == WeatherDbHelper.STORAGE_TEMPORARY_FILE) {
+            mContext.deleteDatabase(WeatherDbHelper.TEMPORARY_DATABASE_NAME);
+        }
+    }
+
+    WeatherProvider getProvider() {
+        return mProvider;
+    }
+
+    /**
+     * @return The database the provider is using, to read and write directly. It must not be
+     * closed, as an in-memory one would be lost.
+     */
+    SQLiteDatabase getDatabase() {
+        return mProvider.getDbHelper().getWritableDatabase();
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.testing.StandInWeatherServer;
+import com.example.android.sunshine.utilities.NetworkUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Runs complete syncs against a {@link StandInWeatherServer} on the device, so the whole path
+ * from HTTP request to ContentProvider is exercised without a network. The server generates the
+ * same weather on every run, so results are repeatable.
+ * <p>
+ * {@link #testSyncDurations()} doubles as a benchmark: it logs how long syncs take over a slow,
+ * narrow connection under the tag "SyncBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestSunshineSyncTask {
+
+    private static final String TAG = "SyncBenchmark";
+
+    /* Tests fetch the full forecast unless they say otherwise, whatever the device's network */
+    private static final int EXPECTED_DAYS = NetworkUtils.FULL_FORECAST_DAYS;
+
+    private static final int BENCHMARK_SYNCS = 10;
+
+    /* Context used to access various parts of the system */
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private StandInWeatherServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        SunshinePreferences.resetCircuitBreaker(mContext);
+        mServer = new StandInWeatherServer(32);
+        NetworkUtils.setForecastBaseUrls(mServer.getBaseUrl());
+        NetworkUtils.setForecastDayCountOverride(EXPECTED_DAYS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        NetworkUtils.setForecastBaseUrls();
+        NetworkUtils.setForecastDayCountOverride(0);
+        SunshinePreferences.resetCircuitBreaker(mContext);
+        mServer.close();
+    }
+
+    @Test
+    public void testSyncStoresServedForecast() {
+        SunshineSyncTask.syncWeather(mContext);
+
+        assertEquals("Sync should make exactly one request",
+                1, mServer.getRequestCount());
+        assertEquals("Every served day should have been stored",
+                EXPECTED_DAYS, countWeatherRows());
+    }
+
+    @Test
+    public void testServerErrorKeepsExistingWeather() {
+        SunshineSyncTask.syncWeather(mContext);
+
+        mServer.enqueueStatusCode(500);
+        SunshineSyncTask.syncWeather(mContext);
+        assertEquals("A failed sync must not delete the weather we already have",
+                EXPECTED_DAYS, countWeatherRows());
+
+        /* Error codes inside a 200 response are handled by the parser instead */
+        mServer.setPayload("{\"cod\":\"404\",\"message\":\"city not found\"}");
+        SunshineSyncTask.syncWeather(mContext);
+        assertEquals("An error response must not delete the weather we already have",
+                EXPECTED_DAYS, countWeatherRows());
+
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void testShortForecastKeepsLaterDays() {
+        SunshineSyncTask.syncWeather(mContext);
+
+        NetworkUtils.setForecastDayCountOverride(NetworkUtils.SHORT_FORECAST_DAYS);
+        SunshineSyncTask.syncWeather(mContext);
+
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals("A short forecast must not discard the days after it",
+                EXPECTED_DAYS, countWeatherRows());
+    }
+
+    @Test
+    public void testPastDaysAreArchived() {
+        SunshineSyncTask.syncWeather(mContext);
+
+        /* Pretend the three days before today were synced earlier */
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+        long firstPastDay = today - 3 * SunshineDateUtils.DAY_IN_MILLIS;
+        ContentValues[] pastDays = new ContentValues[3];
+        for (int i = 0; i < pastDays.length; i++) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    firstPastDay + i * SunshineDateUtils.DAY_IN_MILLIS);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, 800);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, 10);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 20);
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 50);
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1000);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 3);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 90);
+            pastDays[i] = values;
+        }
+        mContext.getContentResolver().bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI, pastDays);
+
+        SunshineSyncTask.syncWeather(mContext);
+
+        assertEquals("Only the forecast should be left in the weather table",
+                EXPECTED_DAYS, countWeatherRows());
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.ArchiveEntry.buildArchiveUriForRange(firstPastDay, today),
+                null,
+                null,
+                null,
+                null);
+        assertTrue(cursor != null);
+        assertEquals("The days before today should have been archived", 3, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void testTodaySyncOnlyTouchesToday() {
+        SunshineSyncTask.syncWeather(mContext);
+
+        SunshineSyncTask.syncToday(mContext);
+
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals("Refreshing today must leave the other days alone",
+                EXPECTED_DAYS, countWeatherRows());
+    }
+
+    @Test
+    public void testTodaySyncForNewLocationDoesFullSync() {
+        SunshinePreferences.setForecastLocation(mContext, "Somewhere else");
+
+        SunshineSyncTask.syncToday(mContext);
+
+        assertEquals(EXPECTED_DAYS, countWeatherRows());
+    }
+
+    @Test
+    public void testNewLocationReplacesAllDays() {
+        NetworkUtils.setForecastDayCountOverride(NetworkUtils.SHORT_FORECAST_DAYS);
+        SunshineSyncTask.syncWeather(mContext);
+        assertEquals(NetworkUtils.SHORT_FORECAST_DAYS, countWeatherRows());
+
+        NetworkUtils.setForecastDayCountOverride(EXPECTED_DAYS);
+        SunshineSyncTask.syncWeather(mContext);
+        assertEquals(EXPECTED_DAYS, countWeatherRows());
+
+        /* Pretend the last sync was for somewhere else */
+        SunshinePreferences.setForecastLocation(mContext, "Somewhere else");
+        NetworkUtils.setForecastDayCountOverride(NetworkUtils.SHORT_FORECAST_DAYS);
+        SunshineSyncTask.syncWeather(mContext);
+        assertEquals("Another location's days must not be kept",
+                NetworkUtils.SHORT_FORECAST_DAYS, countWeatherRows());
+    }
+
+    @Test
+    public void testCircuitBreakerStopsRequestsToFailingServer() {
+        SunshineSyncTask.syncWeather(mContext);
+
+        mServer.setStatusCode(500);
+        for (int i = 0; i < 5; i++) {
+            SunshineSyncTask.syncWeather(mContext);
+        }
+
+        assertEquals("Once open, the breaker should keep syncs off the network",
+                1 + 3, mServer.getRequestCount());
+        assertEquals("Cached weather should still be there",
+                EXPECTED_DAYS, countWeatherRows());
+
+        String[] transitions = SunshinePreferences.getCircuitBreakerTransitions(mContext);
+        assertTrue("The breaker opening should have been recorded",
+                transitions[transitions.length - 1].contains("closed -> open"));
+    }
+
+    @Test
+    public void testUserSyncGoesThroughOpenBreaker() {
+        mServer.setStatusCode(500);
+        for (int i = 0; i < 3; i++) {
+            SunshineSyncTask.syncWeather(mContext);
+        }
+        SunshineSyncTask.syncWeather(mContext);
+        assertEquals("The breaker should be open", 3, mServer.getRequestCount());
+
+        mServer.setStatusCode(200);
+        SunshineSyncTask.syncWeather(mContext, true);
+        assertEquals("The user's sync should have been made", 4, mServer.getRequestCount());
+        assertEquals(EXPECTED_DAYS, countWeatherRows());
+
+        SunshineSyncTask.syncWeather(mContext);
+        assertEquals("Its success should have closed the breaker", 5, mServer.getRequestCount());
+    }
+
+    @Test
+    public void testWatchSyncKeepsOffOpenBreaker() {
+        mServer.setStatusCode(500);
+        for (int i = 0; i < 3; i++) {
+            SunshineSyncTask.syncWeather(mContext);
+        }
+        mServer.setStatusCode(200);
+
+        /* What the service does for the watch's requests and the startup check */
+        Intent watchSync = SunshineSyncUtils.buildImmediateSyncIntent(mContext, false);
+        for (int i = 0; i < 3; i++) {
+            SunshineSyncIntentService.syncWeather(mContext, watchSync);
+        }
+        assertEquals("Retries from the watch must not reach the failing server",
+                3, mServer.getRequestCount());
+        assertEquals(0, countWeatherRows());
+
+        /* What it does after the user picks a new location */
+        Intent locationSync = SunshineSyncUtils.buildImmediateSyncIntent(mContext, true);
+        SunshineSyncIntentService.syncWeather(mContext, locationSync);
+        assertEquals(4, mServer.getRequestCount());
+        assertEquals(EXPECTED_DAYS, countWeatherRows());
+    }
+
+    @Test
+    public void testFallsBackToSecondServer() throws IOException {
+        StandInWeatherServer fallback = new StandInWeatherServer(32);
+        try {
+            NetworkUtils.setForecastBaseUrls(mServer.getBaseUrl(), fallback.getBaseUrl());
+
+            mServer.setStatusCode(503);
+            SunshineSyncTask.syncWeather(mContext);
+
+            assertEquals(1, mServer.getRequestCount());
+            assertEquals(1, fallback.getRequestCount());
+            assertEquals("The fallback server's forecast should have been stored",
+                    EXPECTED_DAYS, countWeatherRows());
+        } finally {
+            fallback.close();
+        }
+    }
+
+    @Test
+    public void testSyncDurations() {
+        /* A poor mobile connection: 300ms round trip, 8kB/s */
+        mServer.setLatencyMillis(300);
+        mServer.setBytesPerSecond(8 * 1024);
+
+        long[] durations = new long[BENCHMARK_SYNCS];
+        for (int i = 0; i < BENCHMARK_SYNCS; i++) {
+            long start = SystemClock.elapsedRealtime();
+            SunshineSyncTask.syncWeather(mContext);
+            durations[i] = SystemClock.elapsedRealtime() - start;
+        }
+
+        Arrays.sort(durations);
+        Log.i(TAG, "syncWeather over " + BENCHMARK_SYNCS + " runs: min " + durations[0]
+                + "ms, median " + durations[BENCHMARK_SYNCS / 2]
+                + "ms, max " + durations[BENCHMARK_SYNCS - 1] + "ms");
+
+        assertEquals(BENCHMARK_SYNCS, mServer.getRequestCount());
+        assertTrue("Syncs can't be faster than the injected latency", durations[0] >= 300);
+        assertEquals(EXPECTED_DAYS, countWeatherRows());
+    }
+
+    private int countWeatherRows() {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null);
+        assertTrue(cursor != null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.core.WeatherConditions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * WeatherConditions (in weather-core) decides which art and description a condition id gets, and
+ * SunshineWeatherUtils turns those into drawable and string resources. These tests make sure the
+ * two stay in step, since one is an index into the other.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherConditionResources {
+
+    /* The art each WeatherConditions.ART_* stands for, in that order */
+    private static final String[] SMALL_ART_NAMES = {
+            "ic_storm", "ic_light_rain", "ic_rain", "ic_snow",
+            "ic_fog", "ic_clear", "ic_light_clouds", "ic_cloudy",
+    };
+    private static final String[] LARGE_ART_NAMES = {
+            "art_storm", "art_light_rain", "art_rain", "art_snow",
+            "art_fog", "art_clear", "art_light_clouds", "art_clouds",
+    };
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Test
+    public void testArtIsInArtOrder() {
+        assertEquals(WeatherConditions.ART_COUNT, SMALL_ART_NAMES.length);
+        assertEquals(WeatherConditions.ART_COUNT, SunshineWeatherUtils.SMALL_ART_IDS.length);
+        assertEquals(WeatherConditions.ART_COUNT, SunshineWeatherUtils.LARGE_ART_IDS.length);
+
+        for (int art = 0; art < WeatherConditions.ART_COUNT; art++) {
+            assertEquals(SMALL_ART_NAMES[art], getName(SunshineWeatherUtils.SMALL_ART_IDS[art]));
+            assertEquals(LARGE_ART_NAMES[art], getName(SunshineWeatherUtils.LARGE_ART_IDS[art]));
+        }
+    }
+
+    /*
+     * The wearable's UtilitiesTest walks the same ids against the same icon names, so the two
+     * modules resolve every id alike
+     */
+    @Test
+    public void testEveryConditionGetsItsArt() {
+        for (int weatherId = 0; weatherId <= 999; weatherId++) {
+            int art = WeatherConditions.getArt(weatherId);
+            if (art == WeatherConditions.UNKNOWN) {
+                art = WeatherConditions.FALLBACK_ART;
+            }
+            assertTrue(art < WeatherConditions.ART_COUNT);
+
+            assertEquals("Wrong icon for condition " + weatherId, SMALL_ART_NAMES[art], getName(
+                    SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(weatherId)));
+            assertEquals("Wrong art for condition " + weatherId, LARGE_ART_NAMES[art], getName(
+                    SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId)));
+        }
+    }
+
+    @Test
+    public void testOneStringPerDescribedCondition() {
+        assertEquals("Each described condition needs exactly one string resource",
+                WeatherConditions.DESCRIPTION_COUNT,
+                SunshineWeatherUtils.CONDITION_STRING_IDS.length);
+    }
+
+    @Test
+    public void testStringsAreInDescriptionOrder() {
+        for (int i = 0; i < WeatherConditions.DESCRIPTION_COUNT; i++) {
+            int weatherId = WeatherConditions.DESCRIBED_CONDITION_IDS[i];
+
+            String expectedName;
+            if (weatherId == 200) {
+                expectedName = "condition_2xx";
+            } else if (weatherId == 300) {
+                expectedName = "condition_3xx";
+            } else {
+                expectedName = "condition_" + weatherId;
+            }
+
+            String actualName = mContext.getResources()
+                    .getResourceEntryName(SunshineWeatherUtils.CONDITION_STRING_IDS[i]);
+
+            assertEquals("Wrong string for condition " + weatherId, expectedName, actualName);
+        }
+    }
+
+    private String getName(int resourceId) {
+        return mContext.getResources().getResourceEntryName(resourceId);
+    }
+}
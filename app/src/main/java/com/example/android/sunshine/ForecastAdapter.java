@@ -25,14 +25,17 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.example.android.sunshine.utilities.SunshineWeatherUtils;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
  * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * The rows are read a page at a time by a {@link ForecastPageSource}.
  */
-class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
+class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder>
+        implements ForecastPageSource.Listener {
 
     private static final int VIEW_TYPE_TODAY = 0;
     private static final int VIEW_TYPE_FUTURE_DAY = 1;
@@ -63,17 +66,21 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     private boolean mUseTodayLayout;
 
-    private Cursor mCursor;
+    private final ForecastPageSource mPages;
 
     /**
      * Creates a ForecastAdapter.
      *
      * @param context      Used to talk to the UI and app resources
+     * @param pages        Reads the rows to show, a page at a time
      * @param clickHandler The on-click handler for this adapter. This single handler is called
      *                     when an item is clicked.
      */
-    public ForecastAdapter(@NonNull Context context, ForecastAdapterOnClickHandler clickHandler) {
+    public ForecastAdapter(@NonNull Context context, @NonNull ForecastPageSource pages,
+                           ForecastAdapterOnClickHandler clickHandler) {
         mContext = context;
+        mPages = pages;
+        mPages.setListener(this);
         mClickHandler = clickHandler;
         mUseTodayLayout = mContext.getResources().getBoolean(R.bool.use_today_layout);
     }
@@ -129,12 +136,17 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
+        Cursor cursor = mPages.getRow(position);
+        if (cursor == null) {
+            /* This row's page is being read again; it is bound once it has been */
+            forecastAdapterViewHolder.clear();
+            return;
+        }
 
         /****************
          * Weather Icon *
          ****************/
-        int weatherId = mCursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
+        int weatherId = cursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
         int weatherImageId;
 
         int viewType = getItemViewType(position);
@@ -161,7 +173,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          * Weather Date *
          ****************/
          /* Read date from the cursor */
-        long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+        long dateInMillis = cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
          /* Get human readable string using our utility method */
         String dateString = SunshineDateUtils.getFriendlyDateString(mContext, dateInMillis, false);
 
@@ -183,7 +195,8 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          * High (max) temperature *
          **************************/
          /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
+        double highInCelsius = WeatherContract.WeatherEntry.getTemperature(cursor,
+                MainActivity.INDEX_WEATHER_MAX_TEMP);
          /*
           * If the user's preference for weather is fahrenheit, formatTemperature will convert
           * the temperature. This method will also append either °C or °F to the temperature
@@ -201,7 +214,8 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
          * Low (min) temperature *
          *************************/
          /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
+        double lowInCelsius = WeatherContract.WeatherEntry.getTemperature(cursor,
+                MainActivity.INDEX_WEATHER_MIN_TEMP);
          /*
           * If the user's preference for weather is fahrenheit, formatTemperature will convert
           * the temperature. This method will also append either °C or °F to the temperature
@@ -223,8 +237,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public int getItemCount() {
-        if (null == mCursor) return 0;
-        return mCursor.getCount();
+        return mPages.getCount();
     }
 
     /**
@@ -252,13 +265,25 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      * the weather data is reset. When this method is called, we assume we have a completely new
      * set of data, so we call notifyDataSetChanged to tell the RecyclerView to update.
      *
-     * @param newCursor the new cursor to use as ForecastAdapter's data source
+     * @param newCursor     the first page of weather data, or null
+     * @param selection     the selection the page was read with, repeated for later pages
+     * @param selectionArgs the arguments for the selection
      */
-    void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
+    void swapCursor(Cursor newCursor, String selection, String[] selectionArgs) {
+        mPages.swapFirstPage(newCursor, selection, selectionArgs);
         notifyDataSetChanged();
     }
 
+    @Override
+    public void onRowsAppended(int positionStart, int itemCount) {
+        notifyItemRangeInserted(positionStart, itemCount);
+    }
+
+    @Override
+    public void onRowsReloaded(int positionStart, int itemCount) {
+        notifyItemRangeChanged(positionStart, itemCount);
+    }
+
     /**
      * A ViewHolder is a required part of the pattern for RecyclerViews. It mostly behaves as
      * a cache of the child views for a forecast item. It's also a convenient place to set an
@@ -284,6 +309,15 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
             view.setOnClickListener(this);
         }
 
+        /* Blanks the row while its page is being read */
+        void clear() {
+            iconView.setImageDrawable(null);
+            dateView.setText(null);
+            descriptionView.setText(null);
+            highTempView.setText(null);
+            lowTempView.setText(null);
+        }
+
         /**
          * This gets called by the child views during a click. We fetch the date that has been
          * selected, and then call the onClick handler registered with this adapter, passing that
@@ -294,8 +328,11 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+            Cursor cursor = mPages.getRow(adapterPosition);
+            if (cursor == null) {
+                return;
+            }
+            long dateInMillis = cursor.getLong(MainActivity.INDEX_WEATHER_DATE);
             mClickHandler.onClick(dateInMillis);
         }
     }
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineExecutors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads days of weather for a list a page at a time, using the keyset pages described in
+ * {@link WeatherContract#buildPageUri(Uri, long, int)}. The first page comes from the Activity's
+ * Loader; the following ones are loaded in the background as the list is scrolled towards the
+ * end of what has been read.
+ * <p>
+ * Only the pages around the row being shown are kept in memory, so a long list costs no more
+ * than a short one. A page that was dropped is read again, after the same date as before, if the
+ * list is scrolled back to it. Positions never move, as every page but the last is full.
+ * <p>
+ * Everything but the queries themselves happens on the main thread.
+ */
+class ForecastPageSource {
+
+    /**
+     * Told when rows become available, so the adapter can update the list.
+     */
+    interface Listener {
+
+        /* New rows were read at the end of the list */
+        void onRowsAppended(int positionStart, int itemCount);
+
+        /* Rows that had been dropped from memory were read again */
+        void onRowsReloaded(int positionStart, int itemCount);
+    }
+
+    private final ContentResolver mResolver;
+    private final Uri mContentUri;
+    private final String[] mProjection;
+    private final int mDateColumn;
+    private final int mPageSize;
+    private final int mMaxResidentPages;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private Listener mListener;
+
+    /* The query the first page was read with, which the following pages repeat */
+    private String mSelection;
+    private String[] mSelectionArgs;
+
+    /* Pages by number, null where a page has been dropped, and the date each starts after */
+    private final List<Cursor> mPages = new ArrayList<>();
+    private final List<Long> mPageStarts = new ArrayList<>();
+
+    /* The Loader owns the first page it read, so it is never closed here */
+    private Cursor mLoaderPage;
+
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+    private int mCount;
+    private boolean mExhausted = true;
+
+    /* Incremented whenever the pages are replaced, so that late results are thrown away */
+    private int mGeneration;
+
+    /**
+     * @param resolver         Used to read the pages
+     * @param contentUri       The weather or archive content URI
+     * @param projection       The columns to read. Must include the date.
+     * @param pageSize         Rows per page. The first page must be read with the same size.
+     * @param maxResidentPages The most pages to keep in memory
+     */
+    ForecastPageSource(ContentResolver resolver, Uri contentUri, String[] projection,
+                       int pageSize, int maxResidentPages) {
+        mResolver = resolver;
+        mContentUri = contentUri;
+        mProjection = projection;
+        mDateColumn = indexOf(projection, WeatherContract.WeatherEntry.COLUMN_DATE);
+        mPageSize = pageSize;
+        mMaxResidentPages = Math.max(3, maxResidentPages);
+    }
+
+    private static int indexOf(String[] projection, String column) {
+        for (int i = 0; i < projection.length; i++) {
+            if (projection[i].equals(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("The projection must include " + column);
+    }
+
+    void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Starts again from a newly loaded first page, dropping every page read so far.
+     *
+     * @param firstPage     The first page, read with a limit of the page size, or null
+     * @param selection     The selection it was read with
+     * @param selectionArgs The selection arguments it was read with
+     */
+    void swapFirstPage(Cursor firstPage, String selection, String[] selectionArgs) {
+        mGeneration++;
+        for (int page = 0; page < mPages.size(); page++) {
+            dropPage(page);
+        }
+        mPages.clear();
+        mPageStarts.clear();
+        mLoadingPages.clear();
+
+        mLoaderPage = firstPage;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+
+        if (firstPage == null) {
+            mCount = 0;
+            mExhausted = true;
+            return;
+        }
+        mPages.add(firstPage);
+        mPageStarts.add(null);
+        mCount = firstPage.getCount();
+        mExhausted = mCount < mPageSize;
+    }
+
+    /**
+     * @return The number of rows read so far. Grows as more pages are read.
+     */
+    int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns a cursor moved to the row at the given position, and makes sure the pages around
+     * it are loaded or being loaded.
+     *
+     * @param position Position of the row in the list
+     * @return The cursor, or null if the row's page is being read again
+     */
+    Cursor getRow(int position) {
+        int page = position / mPageSize;
+        if (position < 0 || page >= mPages.size()) {
+            return null;
+        }
+        keepAround(page);
+
+        Cursor cursor = mPages.get(page);
+        if (cursor == null || !cursor.moveToPosition(position % mPageSize)) {
+            return null;
+        }
+        return cursor;
+    }
+
+    /* Drops pages far from the given one, reloads dropped neighbours and reads ahead */
+    private void keepAround(int page) {
+        int reach = mMaxResidentPages / 2;
+        for (int other = 0; other < mPages.size(); other++) {
+            if (Math.abs(other - page) > reach) {
+                dropPage(other);
+            } else if (mPages.get(other) == null) {
+                load(other, mPageStarts.get(other));
+            }
+        }
+
+        /* Read the next page while the last one is being shown */
+        int lastPage = mPages.size() - 1;
+        if (page == lastPage && !mExhausted) {
+            Cursor last = mPages.get(lastPage);
+            if (last != null && last.moveToLast()) {
+                load(lastPage + 1, last.getLong(mDateColumn));
+            }
+        }
+    }
+
+    private void dropPage(int page) {
+        Cursor cursor = mPages.get(page);
+        if (cursor == null) {
+            return;
+        }
+        mPages.set(page, null);
+        if (cursor != mLoaderPage) {
+            cursor.close();
+        }
+    }
+
+    private void load(final int page, final Long afterDate) {
+        if (!mLoadingPages.add(page)) {
+            return;
+        }
+
+        final int generation = mGeneration;
+        final Uri pageUri = afterDate == null
+                ? WeatherContract.buildPageUri(mContentUri, mPageSize)
+                : WeatherContract.buildPageUri(mContentUri, afterDate, mPageSize);
+        final String selection = mSelection;
+        final String[] selectionArgs = mSelectionArgs;
+
+        /* Pages are read one at a time, away from the AsyncTasks that syncs run on */
+        SunshineExecutors.getDiskExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Cursor cursor = mResolver.query(pageUri, mProjection, selection,
+                        selectionArgs, null);
+                if (cursor != null) {
+                    /* Fills the CursorWindow here rather than on the main thread */
+                    cursor.getCount();
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(page, afterDate, generation, cursor);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int page, Long afterDate, int generation, Cursor cursor) {
+        if (generation != mGeneration) {
+            /* The pages were replaced while this one was being read */
+            if (cursor != null) {
+                cursor.close();
+            }
+            return;
+        }
+        mLoadingPages.remove(page);
+        if (cursor == null) {
+            return;
+        }
+
+        if (page < mPages.size()) {
+            if (mPages.get(page) != null) {
+                cursor.close();
+                return;
+            }
+            mPages.set(page, cursor);
+            if (mListener != null) {
+                mListener.onRowsReloaded(page * mPageSize, cursor.getCount());
+            }
+        } else if (page == mPages.size()) {
+            mPages.add(cursor);
+            mPageStarts.add(afterDate);
+
+            int added = cursor.getCount();
+            int positionStart = mCount;
+            mCount += added;
+            mExhausted = added < mPageSize;
+            if (mListener != null && added > 0) {
+                mListener.onRowsAppended(positionStart, added);
+            }
+        } else {
+            cursor.close();
+        }
+    }
+}
@@ -32,6 +32,7 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
@@ -73,6 +74,21 @@ public class MainActivity extends AppCompatActivity implements
      */
     private static final int ID_FORECAST_LOADER = 44;
 
+    /*
+     * The list reads this many days at a time, so the first page takes as long to load however
+     * much weather is stored; a full forecast fits in it. Only a few pages around the days on
+     * screen are kept in memory.
+     */
+    private static final int FORECAST_PAGE_SIZE = 20;
+    private static final int FORECAST_RESIDENT_PAGES = 5;
+
+    /*
+     * The list reads temperatures as they are stored, in tenths of a degree, and converts them
+     * with the WeatherEntry accessors rather than having SQLite do it for every row.
+     */
+    private static final Uri FORECAST_URI =
+            WeatherContract.buildCompactUri(WeatherContract.WeatherEntry.CONTENT_URI);
+
     private ForecastAdapter mForecastAdapter;
     private RecyclerView mRecyclerView;
     private int mPosition = RecyclerView.NO_POSITION;
@@ -137,7 +153,10 @@ public class MainActivity extends AppCompatActivity implements
          * MainActivity implements the ForecastAdapter ForecastOnClickHandler interface, "this"
          * is also an instance of that type of handler.
          */
-        mForecastAdapter = new ForecastAdapter(this, this);
+        ForecastPageSource forecastPages = new ForecastPageSource(getContentResolver(),
+                FORECAST_URI, MAIN_FORECAST_PROJECTION,
+                FORECAST_PAGE_SIZE, FORECAST_RESIDENT_PAGES);
+        mForecastAdapter = new ForecastAdapter(this, forecastPages, this);
 
         /* Setting the adapter attaches it to the RecyclerView in our layout. */
         mRecyclerView.setAdapter(mForecastAdapter);
@@ -145,6 +164,21 @@ public class MainActivity extends AppCompatActivity implements
 
         showLoading();
 
+        /*
+         * Until the Loader has opened the database and read the first page, show the days saved
+         * by the last sync. The snapshot is a few hundred bytes read through a memory map, so it
+         * is quick enough for the main thread. Its rows are in the same columns and units as the
+         * first page, and it is given the same selection, so the list pages on from it as usual
+         * until the Loader's page replaces it.
+         */
+        Cursor snapshot = ForecastSnapshot.read(this, MAIN_FORECAST_PROJECTION);
+        if (snapshot != null && snapshot.getCount() != 0) {
+            mForecastAdapter.swapCursor(snapshot,
+                    WeatherContract.WeatherEntry.SQL_SELECT_FROM_DATE,
+                    WeatherContract.WeatherEntry.getSelectionArgsForTodayOnwards());
+            showWeatherDataView();
+        }
+
         /*
          * Ensures a loader is initialized and active. If the loader doesn't already exist, one is
          * created and (if the activity/fragment is currently started) starts the loader. Otherwise
@@ -198,23 +232,27 @@ public class MainActivity extends AppCompatActivity implements
         switch (loaderId) {
 
             case ID_FORECAST_LOADER:
-                /* URI for all rows of weather data in our weather table */
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-                /* Sort order: Ascending by date */
-                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+                /*
+                 * URI for the first page of weather data in our weather table. Pages are always
+                 * in ascending order by date, so there is no sort order to give.
+                 */
+                Uri forecastQueryUri = WeatherContract.buildPageUri(
+                        FORECAST_URI, FORECAST_PAGE_SIZE);
                 /*
                  * A SELECTION in SQL declares which rows you'd like to return. In our case, we
                  * want all weather data from today onwards that is stored in our weather table.
-                 * We created a handy method to do that in our WeatherEntry class.
+                 * Today's date is passed as an argument, so the SQL never changes.
                  */
-                String selection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
+                String selection = WeatherContract.WeatherEntry.SQL_SELECT_FROM_DATE;
+                String[] selectionArgs =
+                        WeatherContract.WeatherEntry.getSelectionArgsForTodayOnwards();
 
                 return new CursorLoader(this,
                         forecastQueryUri,
                         MAIN_FORECAST_PROJECTION,
                         selection,
-                        null,
-                        sortOrder);
+                        selectionArgs,
+                        null);
 
             default:
                 throw new RuntimeException("Loader Not Implemented: " + loaderId);
@@ -236,7 +274,9 @@ public class MainActivity extends AppCompatActivity implements
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
 
 
-        mForecastAdapter.swapCursor(data);
+        CursorLoader cursorLoader = (CursorLoader) loader;
+        mForecastAdapter.swapCursor(data,
+                cursorLoader.getSelection(), cursorLoader.getSelectionArgs());
         if (mPosition == RecyclerView.NO_POSITION) mPosition = 0;
         mRecyclerView.smoothScrollToPosition(mPosition);
         if (data.getCount() != 0) showWeatherDataView();
@@ -254,7 +294,7 @@ public class MainActivity extends AppCompatActivity implements
          * Since this Loader's data is now invalid, we need to clear the Adapter that is
          * displaying the data.
          */
-        mForecastAdapter.swapCursor(null);
+        mForecastAdapter.swapCursor(null, null, null);
     }
 
     /**
@@ -98,7 +98,10 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
             // we've changed the location
             // Wipe out any potential PlacePicker latlng values so that we can use this text entry.
             SunshinePreferences.resetLocationCoordinates(activity);
-            SunshineSyncUtils.startImmediateSync(activity);
+            // failures for the old location, such as a name the server didn't know, shouldn't
+            // hold up the weather for the new one
+            SunshinePreferences.resetCircuitBreaker(activity);
+            SunshineSyncUtils.startImmediateSync(activity, true);
         } else if (key.equals(getString(R.string.pref_units_key))) {
             // units have changed. update lists of weather entries accordingly
             activity.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
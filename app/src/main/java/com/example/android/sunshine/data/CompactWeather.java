@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts between the units the contract uses and the scaled whole numbers the weather and
+ * archive tables store, see {@link WeatherEntry#TEMPERATURE_SCALE}. A whole number of tenths of a
+ * degree takes one to three bytes in a SQLite record, where a REAL always takes eight, so more
+ * days fit in each page of the database file.
+ */
+final class CompactWeather {
+
+    /* Every column of the weather table, for queries without a projection */
+    static final String[] WEATHER_COLUMNS = {
+            WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    /* The columns stored scaled, and what they are multiplied by */
+    private static final Map<String, Integer> SCALES = new LinkedHashMap<>();
+
+    static {
+        SCALES.put(WeatherEntry.COLUMN_MIN_TEMP, WeatherEntry.TEMPERATURE_SCALE);
+        SCALES.put(WeatherEntry.COLUMN_MAX_TEMP, WeatherEntry.TEMPERATURE_SCALE);
+        SCALES.put(WeatherEntry.COLUMN_HUMIDITY, WeatherEntry.HUMIDITY_SCALE);
+        SCALES.put(WeatherEntry.COLUMN_PRESSURE, WeatherEntry.PRESSURE_SCALE);
+        SCALES.put(WeatherEntry.COLUMN_WIND_SPEED, WeatherEntry.WIND_SPEED_SCALE);
+        SCALES.put(WeatherEntry.COLUMN_DEGREES, WeatherEntry.DEGREES_SCALE);
+    }
+
+    private CompactWeather() {
+    }
+
+    /**
+     * @param values A day of weather in the contract's units
+     * @return A copy of the values, scaled to be stored. The original is left alone.
+     */
+    static ContentValues toStored(ContentValues values) {
+        ContentValues stored = new ContentValues(values);
+        for (Map.Entry<String, Integer> scale : SCALES.entrySet()) {
+            Object value = values.get(scale.getKey());
+            if (value instanceof Number) {
+                stored.put(scale.getKey(),
+                        Math.round(((Number) value).doubleValue() * scale.getValue()));
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * @param column A column of the weather table
+     * @return SQL for the column's value in its stored, scaled form
+     */
+    static String toStoredSql(String column) {
+        Integer scale = SCALES.get(column);
+        return scale == null
+                ? column
+                : "CAST(ROUND(" + column + " * " + scale + ") AS INTEGER)";
+    }
+
+    /**
+     * Rewrites a projection so that scaled columns come back in the contract's units, under their
+     * own names. Other columns and expressions are left as they are.
+     *
+     * @param projection The projection asked for, or null for every column
+     * @param allColumns Every column of the table, used when the projection is null
+     * @return The projection to query the table with
+     */
+    static String[] toReadProjection(String[] projection, String[] allColumns) {
+        String[] columns = projection == null ? allColumns : projection;
+        String[] read = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Integer scale = SCALES.get(columns[i]);
+            read[i] = scale == null
+                    ? columns[i]
+                    : columns[i] + " / " + scale + ".0 AS " + columns[i];
+        }
+        return read;
+    }
+
+    /**
+     * @param projection A projection that may contain "expression AS name" columns
+     * @return The names of the columns a query with the projection returns
+     */
+    static String[] getColumnNames(String[] projection) {
+        String[] names = new String[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            int as = projection[i].lastIndexOf(" AS ");
+            names[i] = as == -1 ? projection[i] : projection[i].substring(as + 4);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A copy of the first days of the forecast in a small file of fixed layout, so the list can be
+ * shown at startup without waiting for the database to open and the first page to be queried.
+ * It is written after each sync and only read before the list's Loader has finished; the
+ * database stays the source of truth.
+ * <p>
+ * The file is a header of a magic number, a layout version and a row count, followed by a row
+ * of {@link #ROW_BYTES} for each day: the date, the high and low in tenths of a degree as
+ * {@link WeatherContract#buildCompactUri(android.net.Uri)} gives them, and the weather id.
+ */
+public final class ForecastSnapshot {
+
+    private static final String TAG = ForecastSnapshot.class.getSimpleName();
+
+    static final String FILE_NAME = "forecast.snapshot";
+
+    /* "SUNS", so that a file that isn't a snapshot is never taken for one */
+    private static final int MAGIC = 0x53554e53;
+
+    /* Increment whenever the layout changes; a file with any other version is ignored */
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 3 * 4;
+    static final int ROW_BYTES = 8 + 3 * 4;
+
+    /* More than a screenful, and no more than the list's first page */
+    static final int MAX_DAYS = 20;
+
+    /* The columns kept for each day, in the order they are written */
+    private static final String[] SNAPSHOT_PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID,
+    };
+
+    private ForecastSnapshot() {
+    }
+
+    /**
+     * Replaces the snapshot with the forecast from today onwards, as the provider has it now.
+     * The new file is written next to the old one and renamed over it, so a reader sees either
+     * the old snapshot or the new one, never part of one.
+     *
+     * @param context Used to query the provider and find the file
+     * @return Whether the snapshot was written
+     */
+    public static boolean write(Context context) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.buildPageUri(
+                        WeatherContract.buildCompactUri(WeatherEntry.CONTENT_URI), MAX_DAYS),
+                SNAPSHOT_PROJECTION,
+                WeatherEntry.SQL_SELECT_FROM_DATE,
+                WeatherEntry.getSelectionArgsForTodayOnwards(),
+                null);
+        if (cursor == null) {
+            return false;
+        }
+
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.allocate(HEADER_BYTES + cursor.getCount() * ROW_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(cursor.getCount());
+            while (cursor.moveToNext()) {
+                buffer.putLong(cursor.getLong(0))
+                        .putInt(cursor.getInt(1))
+                        .putInt(cursor.getInt(2))
+                        .putInt(cursor.getInt(3));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        File file = getFile(context);
+        File temporary = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temporary);
+            out.write(buffer.array());
+            /* On disk before it's renamed, or a crash could leave an empty file in its place */
+            out.getFD().sync();
+            out.close();
+            out = null;
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Couldn't rename " + temporary + " to " + file);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't write the forecast snapshot", e);
+            temporary.delete();
+            return false;
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Reads the snapshot through a memory map, leaving out days before today.
+     *
+     * @param context    Used to find the file
+     * @param projection The columns to return, any of the date, high, low and weather id. The
+     *                   temperatures are in tenths of a degree, as from a compact URI.
+     * @return The days in the snapshot from today onwards, or null if there is no snapshot or
+     * it can't be read
+     */
+    public static Cursor read(Context context, String[] projection) {
+        int[] columns = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            columns[i] = indexOf(projection[i]);
+        }
+
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            ByteBuffer buffer = input.getChannel()
+                    .map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+
+            if (buffer.remaining() < HEADER_BYTES
+                    || buffer.getInt() != MAGIC
+                    || buffer.getInt() != VERSION) {
+                return null;
+            }
+            int count = buffer.getInt();
+            if (count < 0 || count > MAX_DAYS || buffer.remaining() != count * ROW_BYTES) {
+                return null;
+            }
+
+            long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+            MatrixCursor cursor = new MatrixCursor(projection, count);
+            Object[] day = new Object[SNAPSHOT_PROJECTION.length];
+            for (int i = 0; i < count; i++) {
+                day[0] = buffer.getLong();
+                day[1] = buffer.getInt();
+                day[2] = buffer.getInt();
+                day[3] = buffer.getInt();
+                if ((Long) day[0] < today) {
+                    continue;
+                }
+
+                Object[] row = new Object[projection.length];
+                for (int column = 0; column < columns.length; column++) {
+                    row[column] = day[columns[column]];
+                }
+                cursor.addRow(row);
+            }
+            return cursor;
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't read the forecast snapshot", e);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    private static int indexOf(String column) {
+        for (int i = 0; i < SNAPSHOT_PROJECTION.length; i++) {
+            if (SNAPSHOT_PROJECTION[i].equals(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("The forecast snapshot doesn't keep " + column);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't close the forecast snapshot", e);
+        }
+    }
+}
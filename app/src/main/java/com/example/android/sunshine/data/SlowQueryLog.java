@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps the slowest of the provider's recent queries, for
+ * {@link WeatherContract.DiagnosticsEntry}. Only queries over a threshold are kept, and only the
+ * last few of those, so this costs nothing for a fast query and little memory for a slow one.
+ */
+final class SlowQueryLog {
+
+    /* Queries that take at least this long are kept */
+    static final long THRESHOLD_MILLIS = 50;
+
+    /* The most queries to keep; the oldest is forgotten first */
+    static final int CAPACITY = 10;
+
+    private final List<String> mSamples = new ArrayList<>(CAPACITY);
+
+    /**
+     * Keeps the query if it was slow.
+     *
+     * @param uri    The URI queried
+     * @param millis How long the query took, in milliseconds
+     * @return Whether the query was kept
+     */
+    synchronized boolean record(Uri uri, long millis) {
+        if (millis < THRESHOLD_MILLIS) {
+            return false;
+        }
+        if (mSamples.size() == CAPACITY) {
+            mSamples.remove(0);
+        }
+        mSamples.add(String.format(Locale.US, "%d ms %s", millis, uri));
+        return true;
+    }
+
+    /**
+     * @return The slow queries kept, oldest first, each as its time and URI
+     */
+    synchronized List<String> getSamples() {
+        return new ArrayList<>(mSamples);
+    }
+}
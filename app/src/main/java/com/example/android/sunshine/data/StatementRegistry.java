@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the provider's queries for its known shapes, such as a single day or the forecast, and
+ * counts how often each would find its SQL already compiled.
+ * <p>
+ * SQLiteDatabase keeps the statements it has compiled in a small cache on each connection, keyed
+ * by their SQL text, and compiling is often the most expensive part of a short query. A query
+ * only hits the cache if its SQL is exactly the same as an earlier one, so values must be passed
+ * as selection arguments rather than written into the SQL. The cache can't be read, so this keeps
+ * a copy of it: the most recently used SQL, as many statements as the cache holds. With write
+ * ahead logging each reader has a cache of its own, so the real hit rate can be a little lower.
+ */
+final class StatementRegistry {
+
+    private static final String TAG = StatementRegistry.class.getSimpleName();
+
+    /* The number of statements SQLiteDatabase caches on each connection by default */
+    static final int CACHE_SIZE = 25;
+
+    /* The summary is logged every this many statements */
+    private static final int REPORT_INTERVAL = 100;
+
+    /* The most recently run SQL, least recently used first */
+    private final Map<String, Boolean> mCachedSql =
+            new LinkedHashMap<String, Boolean>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /* Hits and misses by shape name, in the order the shapes were first used */
+    private final Map<String, long[]> mCounts = new LinkedHashMap<>();
+
+    private long mHits;
+    private long mMisses;
+
+    /**
+     * Builds the SQL for a query the way {@link SQLiteDatabase#query} does, counts whether it
+     * would be found compiled, and runs it.
+     *
+     * @param shape         The name of the kind of query, for the report
+     * @param db            The database to query
+     * @param table         The table to query
+     * @param columns       The columns to return, or null for all of them
+     * @param selection     The selection, with a "?" for each value
+     * @param selectionArgs The values
+     * @param orderBy       The sort order, or null
+     * @param limit         The most rows to return, or null
+     * @return The rows
+     */
+    Cursor query(String shape, SQLiteDatabase db, String table, String[] columns,
+                 String selection, String[] selectionArgs, String orderBy, String limit) {
+        String sql = SQLiteQueryBuilder.buildQueryString(false, table, columns, selection,
+                null, null, orderBy, limit);
+        record(shape, sql);
+        return db.rawQuery(sql, selectionArgs);
+    }
+
+    /**
+     * Counts a statement that is about to be run.
+     *
+     * @param shape The name of the kind of query, for the report
+     * @param sql   The statement's SQL
+     * @return Whether the statement would be found compiled
+     */
+    synchronized boolean record(String shape, String sql) {
+        boolean hit = mCachedSql.put(sql, Boolean.TRUE) != null;
+
+        long[] counts = mCounts.get(shape);
+        if (counts == null) {
+            counts = new long[2];
+            mCounts.put(shape, counts);
+        }
+        if (hit) {
+            counts[0]++;
+            mHits++;
+        } else {
+            counts[1]++;
+            mMisses++;
+        }
+
+        if ((mHits + mMisses) % REPORT_INTERVAL == 0) {
+            Log.d(TAG, getSummary());
+        }
+        return hit;
+    }
+
+    /**
+     * @return The number of statements run so far
+     */
+    synchronized long getCount() {
+        return mHits + mMisses;
+    }
+
+    /**
+     * @return The share of statements that were found compiled, from 0 to 1, or 0 if none ran
+     */
+    synchronized double getHitRate() {
+        long count = mHits + mMisses;
+        return count == 0 ? 0 : (double) mHits / count;
+    }
+
+    /**
+     * @return A one line summary of the hit rate, such as "statement cache: 97.5% of 200 hit"
+     */
+    synchronized String getSummary() {
+        return String.format(Locale.US, "statement cache: %.1f%% of %d hit",
+                getHitRate() * 100, getCount());
+    }
+
+    /**
+     * Prints the summary and the hits and misses of each shape.
+     *
+     * @param writer Where to print
+     */
+    synchronized void dump(PrintWriter writer) {
+        writer.println(getSummary());
+        for (Map.Entry<String, long[]> shape : mCounts.entrySet()) {
+            long[] counts = shape.getValue();
+            writer.println(String.format(Locale.US, "  %s: %d hits, %d misses",
+                    shape.getKey(), counts[0], counts[1]));
+        }
+    }
+}
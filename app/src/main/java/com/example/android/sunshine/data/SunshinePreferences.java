@@ -20,6 +20,9 @@ import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.core.CircuitBreaker;
+import com.example.android.sunshine.core.EndpointSelector;
+import com.example.android.sunshine.core.EndpointStats;
 
 public final class SunshinePreferences {
 
@@ -31,6 +34,48 @@ public final class SunshinePreferences {
     public static final String PREF_COORD_LAT = "coord_lat";
     public static final String PREF_COORD_LONG = "coord_long";
 
+    /* The location the stored forecast is for, to tell whether it still applies */
+    private static final String PREF_FORECAST_LOCATION = "forecast_location";
+
+    /*
+     * The weather server's circuit breaker is saved here so that it stays open across process
+     * restarts; otherwise every restart would hit a server we already know is down.
+     */
+    private static final String PREF_BREAKER_STATE = "breaker_state";
+    private static final String PREF_BREAKER_FAILURES = "breaker_failures";
+    private static final String PREF_BREAKER_OPENED_AT = "breaker_opened_at";
+    private static final String PREF_BREAKER_OPEN_MILLIS = "breaker_open_millis";
+    private static final String PREF_BREAKER_TRANSITIONS = "breaker_transitions";
+
+    /* How many circuit breaker transitions to keep */
+    private static final int MAX_BREAKER_TRANSITIONS = 20;
+
+    /*
+     * Each weather server's recent latencies and failures, followed by its URL. Saved for the same
+     * reason as the breaker: most syncs start a new process, and one sync alone never has enough
+     * samples to decide when to hedge.
+     */
+    private static final String PREF_ENDPOINT_STATS_PREFIX = "endpoint_stats_";
+
+    /*
+     * The weather archive's retention policy. By default two years of history are kept, and the
+     * last three months of it with a row per day; see WeatherContract.ArchiveEntry.
+     */
+    private static final String PREF_ARCHIVE_RETENTION_MONTHS = "archive_retention_months";
+    private static final String PREF_ARCHIVE_FULL_RESOLUTION_MONTHS =
+            "archive_full_resolution_months";
+    private static final int DEFAULT_ARCHIVE_RETENTION_MONTHS = 24;
+    private static final int DEFAULT_ARCHIVE_FULL_RESOLUTION_MONTHS = 3;
+
+    /*
+     * Followed by a consumer's name, the highest change log sequence the consumer has seen; see
+     * WeatherContract.ChangeEntry.
+     */
+    private static final String PREF_CHANGE_CHECKPOINT_PREFIX = "change_checkpoint_";
+
+    /* Followed by a consumer's name, the date of the day it was last sent */
+    private static final String PREF_CHANGE_SENT_DATE_PREFIX = "change_sent_date_";
+
     /**
      * Helper method to handle setting location details in Preferences (city name, latitude,
      * longitude)
@@ -242,4 +287,238 @@ public final class SunshinePreferences {
         editor.putLong(lastNotificationKey, timeOfNotification);
         editor.apply();
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the location, as returned by {@link #getPreferredWeatherLocation(Context)}, that
+     * the weather in the database was last synced for.
+     *
+     * @param context Used to access SharedPreferences
+     * @return The location, or null if the weather has never been synced
+     */
+    public static String getForecastLocation(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getString(PREF_FORECAST_LOCATION, null);
+    }
+
+    /**
+     * Saves the location that the weather in the database has just been synced for.
+     *
+     * @param context  Used to access SharedPreferences
+     * @param location The location, as returned by {@link #getPreferredWeatherLocation(Context)}
+     */
+    public static void setForecastLocation(Context context, String location) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putString(PREF_FORECAST_LOCATION, location);
+        editor.apply();
+    }
+
+    /**
+     * Restores the weather server's circuit breaker to the state it was last saved in. A breaker
+     * that was never saved is left as it is.
+     *
+     * @param context Used to access SharedPreferences
+     * @param breaker The breaker to restore
+     */
+    public static void restoreCircuitBreaker(Context context, CircuitBreaker breaker) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        if (!sp.contains(PREF_BREAKER_STATE)) {
+            return;
+        }
+        breaker.restore(
+                sp.getInt(PREF_BREAKER_STATE, CircuitBreaker.STATE_CLOSED),
+                sp.getInt(PREF_BREAKER_FAILURES, 0),
+                sp.getLong(PREF_BREAKER_OPENED_AT, 0),
+                sp.getLong(PREF_BREAKER_OPEN_MILLIS, 0));
+    }
+
+    /**
+     * Saves the weather server's circuit breaker, to be restored by
+     * {@link #restoreCircuitBreaker(Context, CircuitBreaker)}.
+     *
+     * @param context Used to access SharedPreferences
+     * @param breaker The breaker to save
+     */
+    public static void saveCircuitBreaker(Context context, CircuitBreaker breaker) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putInt(PREF_BREAKER_STATE, breaker.getState());
+        editor.putInt(PREF_BREAKER_FAILURES, breaker.getConsecutiveFailures());
+        editor.putLong(PREF_BREAKER_OPENED_AT, breaker.getOpenedAtMillis());
+        editor.putLong(PREF_BREAKER_OPEN_MILLIS, breaker.getOpenMillis());
+        editor.apply();
+    }
+
+    /**
+     * Forgets the saved circuit breaker, so the next sync starts with it closed.
+     *
+     * @param context Used to access SharedPreferences
+     */
+    public static void resetCircuitBreaker(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.remove(PREF_BREAKER_STATE);
+        editor.remove(PREF_BREAKER_FAILURES);
+        editor.remove(PREF_BREAKER_OPENED_AT);
+        editor.remove(PREF_BREAKER_OPEN_MILLIS);
+        editor.apply();
+    }
+
+    /**
+     * Records a change of state of the weather server's circuit breaker. Only the most recent
+     * transitions are kept.
+     *
+     * @param context    Used to access SharedPreferences
+     * @param transition A one line description of the transition
+     */
+    public static void addCircuitBreakerTransition(Context context, String transition) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        String[] transitions = getCircuitBreakerTransitions(context);
+
+        StringBuilder kept = new StringBuilder();
+        int first = Math.max(0, transitions.length - (MAX_BREAKER_TRANSITIONS - 1));
+        for (int i = first; i < transitions.length; i++) {
+            kept.append(transitions[i]).append('\n');
+        }
+        kept.append(transition);
+
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putString(PREF_BREAKER_TRANSITIONS, kept.toString());
+        editor.apply();
+    }
+
+    /**
+     * @param context Used to access SharedPreferences
+     * @return The most recent circuit breaker transitions, oldest first
+     */
+    public static String[] getCircuitBreakerTransitions(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        String transitions = sp.getString(PREF_BREAKER_TRANSITIONS, "");
+        return transitions.isEmpty() ? new String[0] : transitions.split("\n");
+    }
+
+    /**
+     * Restores the recent outcomes of each of the selector's endpoints, as last saved. Endpoints
+     * that were never saved are left as they are.
+     *
+     * @param context  Used to access SharedPreferences
+     * @param selector The selector whose endpoints to restore
+     */
+    public static void restoreEndpointStats(Context context, EndpointSelector selector) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        for (EndpointStats stats : selector.getStats()) {
+            String key = PREF_ENDPOINT_STATS_PREFIX + stats.getEndpoint();
+            if (sp.contains(key)) {
+                stats.restoreWindow(sp.getString(key, null));
+            }
+        }
+    }
+
+    /**
+     * Saves the recent outcomes of each of the selector's endpoints, to be restored by
+     * {@link #restoreEndpointStats(Context, EndpointSelector)}.
+     *
+     * @param context  Used to access SharedPreferences
+     * @param selector The selector whose endpoints to save
+     */
+    public static void saveEndpointStats(Context context, EndpointSelector selector) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        for (EndpointStats stats : selector.getStats()) {
+            editor.putString(PREF_ENDPOINT_STATS_PREFIX + stats.getEndpoint(), stats.saveWindow());
+        }
+        editor.apply();
+    }
+
+    /**
+     * @param context Used to access SharedPreferences
+     * @return Months of weather history to keep, not counting the current one
+     */
+    public static int getArchiveRetentionMonths(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getInt(PREF_ARCHIVE_RETENTION_MONTHS, DEFAULT_ARCHIVE_RETENTION_MONTHS);
+    }
+
+    /**
+     * @param context Used to access SharedPreferences
+     * @return Months of weather history, not counting the current one, to keep a row per day for.
+     * Older history is kept as a row per week.
+     */
+    public static int getArchiveFullResolutionMonths(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getInt(PREF_ARCHIVE_FULL_RESOLUTION_MONTHS,
+                DEFAULT_ARCHIVE_FULL_RESOLUTION_MONTHS);
+    }
+
+    /**
+     * Sets the weather archive's retention policy, applied the next time the archive is
+     * compacted. The full resolution period is cut down to the retention period if it's longer.
+     *
+     * @param context              Used to access SharedPreferences
+     * @param retentionMonths      Months of history to keep, not counting the current one
+     * @param fullResolutionMonths Months of history to keep a row per day for
+     */
+    public static void setArchiveRetention(Context context, int retentionMonths,
+                                           int fullResolutionMonths) {
+        if (retentionMonths < 0 || fullResolutionMonths < 0) {
+            throw new IllegalArgumentException("Retention periods can't be negative");
+        }
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putInt(PREF_ARCHIVE_RETENTION_MONTHS, retentionMonths);
+        editor.putInt(PREF_ARCHIVE_FULL_RESOLUTION_MONTHS,
+                Math.min(retentionMonths, fullResolutionMonths));
+        editor.apply();
+    }
+
+    /**
+     * @param context  Used to access SharedPreferences
+     * @param consumer The name of a consumer of the change log
+     * @return The highest sequence the consumer has seen, or 0 if it never looked
+     */
+    public static long getChangeCheckpoint(Context context, String consumer) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(PREF_CHANGE_CHECKPOINT_PREFIX + consumer, 0);
+    }
+
+    /**
+     * Saves how far a consumer has read the change log, so that it next reads only the days that
+     * changed after it.
+     *
+     * @param context  Used to access SharedPreferences
+     * @param consumer The name of a consumer of the change log
+     * @param sequence The highest sequence the consumer has seen
+     */
+    public static void setChangeCheckpoint(Context context, String consumer, long sequence) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putLong(PREF_CHANGE_CHECKPOINT_PREFIX + consumer, sequence);
+        editor.apply();
+    }
+
+    /**
+     * @param context  Used to access SharedPreferences
+     * @param consumer The name of a consumer of the change log
+     * @return The normalized date of the day last sent to the consumer, or 0 if none was
+     */
+    public static long getChangeSentDate(Context context, String consumer) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(PREF_CHANGE_SENT_DATE_PREFIX + consumer, 0);
+    }
+
+    /**
+     * Saves which day was last sent to a consumer. A new day can bring no change to the log, if
+     * its weather is what was stored for it the day before, so the consumer's checkpoint alone
+     * can't tell that the day it shows is out of date.
+     *
+     * @param context  Used to access SharedPreferences
+     * @param consumer The name of a consumer of the change log
+     * @param date     The normalized date of the day sent
+     */
+    public static void setChangeSentDate(Context context, String consumer, long date) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putLong(PREF_CHANGE_SENT_DATE_PREFIX + consumer, date);
+        editor.apply();
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.MergeCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * The monthly archive tables described in {@link ArchiveEntry}. Tables are created the first time
+ * a day from their month is archived, so a database without history has none of them.
+ * <p>
+ * Everything here works on a database handed in by {@link WeatherProvider}, which decides on
+ * transactions and notifications.
+ */
+final class WeatherArchive {
+
+    private static final String TAG = WeatherArchive.class.getSimpleName();
+
+    /* A down-sampled row covers at most this many days */
+    static final int DAYS_PER_SAMPLE = 7;
+
+    /* The weather table's columns that are copied into the archive */
+    private static final String[] WEATHER_COLUMNS = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    /* Every column of an archive table, for queries without a projection */
+    static final String[] ARCHIVE_COLUMNS = {
+            ArchiveEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES,
+            ArchiveEntry.COLUMN_SAMPLE_DAYS
+    };
+
+    private WeatherArchive() {
+    }
+
+    /**
+     * @param normalizedDate Normalized date of a day
+     * @return The name of the archive table for that day's month
+     */
+    static String getTableName(long normalizedDate) {
+        Calendar calendar = getUtcCalendar();
+        calendar.setTimeInMillis(normalizedDate);
+        return String.format(Locale.US, "%s%04d%02d", ArchiveEntry.TABLE_PREFIX,
+                calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    /**
+     * Counts months from year 0, so that months can be compared and subtracted.
+     *
+     * @param tableName The name of an archive table
+     * @return Its month, as year * 12 + the zero based month
+     */
+    static int getMonthIndex(String tableName) {
+        String yearMonth = tableName.substring(ArchiveEntry.TABLE_PREFIX.length());
+        int year = Integer.parseInt(yearMonth.substring(0, 4));
+        int month = Integer.parseInt(yearMonth.substring(4)) - 1;
+        return year * 12 + month;
+    }
+
+    /**
+     * @param dateMillis Any time
+     * @return Its month in UTC, as year * 12 + the zero based month
+     */
+    static int getMonthIndex(long dateMillis) {
+        Calendar calendar = getUtcCalendar();
+        calendar.setTimeInMillis(dateMillis);
+        return calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+    }
+
+    /* Midnight UTC at the start of the month, as year * 12 + the zero based month */
+    private static long getMonthStart(int monthIndex) {
+        Calendar calendar = getUtcCalendar();
+        calendar.clear();
+        calendar.set(monthIndex / 12, monthIndex % 12, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    private static Calendar getUtcCalendar() {
+        return Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+    }
+
+    /**
+     * @param db The weather database
+     * @return The names of all archive tables, oldest month first
+     */
+    static List<String> getTableNames(SQLiteDatabase db) {
+        List<String> tableNames = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table'"
+                        + " AND name LIKE ? ORDER BY name",
+                new String[]{ArchiveEntry.TABLE_PREFIX + "%"});
+        try {
+            while (cursor.moveToNext()) {
+                tableNames.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return tableNames;
+    }
+
+    /**
+     * @param db       The weather database
+     * @param fromDate Normalized date of the first day of interest, or null for no limit
+     * @param toDate   Normalized date of the last day of interest, or null for no limit
+     * @return The names of the archive tables for the months in that range, oldest first
+     */
+    static List<String> getTableNames(SQLiteDatabase db, Long fromDate, Long toDate) {
+        int fromMonth = fromDate == null ? Integer.MIN_VALUE : getMonthIndex(fromDate);
+        int toMonth = toDate == null ? Integer.MAX_VALUE : getMonthIndex(toDate);
+
+        List<String> tableNames = new ArrayList<>();
+        for (String tableName : getTableNames(db)) {
+            int month = getMonthIndex(tableName);
+            if (month >= fromMonth && month <= toMonth) {
+                tableNames.add(tableName);
+            }
+        }
+        return tableNames;
+    }
+
+    private static void createTable(SQLiteDatabase db, String tableName) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + tableName + " (" +
+                ArchiveEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_MIN_TEMP + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_MAX_TEMP + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_HUMIDITY + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_PRESSURE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_WIND_SPEED + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_DEGREES + " INTEGER NOT NULL, " +
+                ArchiveEntry.COLUMN_SAMPLE_DAYS + " INTEGER NOT NULL DEFAULT 1, " +
+                /* A day archived twice keeps the later copy, as in the weather table */
+                " UNIQUE (" + WeatherEntry.COLUMN_DATE + ") ON CONFLICT REPLACE);");
+    }
+
+    /**
+     * Drops every archive table.
+     *
+     * @param db The weather database
+     */
+    static void dropTables(SQLiteDatabase db) {
+        for (String tableName : getTableNames(db)) {
+            db.execSQL("DROP TABLE IF EXISTS " + tableName);
+        }
+    }
+
+    /**
+     * Copies the rows of the weather table that match the selection into the archive tables of
+     * their months. The caller deletes them from the weather table afterwards, in the same
+     * transaction.
+     *
+     * @param db            The weather database
+     * @param selection     Which rows of the weather table to archive, or null for all of them
+     * @param selectionArgs Arguments for the selection
+     */
+    static void archive(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        String where = TextUtils.isEmpty(selection) ? "1" : selection;
+
+        /* Find out which months the rows are in, so each is copied with a single statement */
+        long firstDate;
+        long lastDate;
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME,
+                new String[]{"MIN(" + WeatherEntry.COLUMN_DATE + ")",
+                        "MAX(" + WeatherEntry.COLUMN_DATE + ")"},
+                where, selectionArgs, null, null, null);
+        try {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                return;
+            }
+            firstDate = cursor.getLong(0);
+            lastDate = cursor.getLong(1);
+        } finally {
+            cursor.close();
+        }
+
+        String columns = TextUtils.join(", ", WEATHER_COLUMNS);
+        int lastMonth = getMonthIndex(lastDate);
+        for (int month = getMonthIndex(firstDate); month <= lastMonth; month++) {
+            long monthStart = getMonthStart(month);
+            String tableName = getTableName(monthStart);
+            createTable(db, tableName);
+
+            Object[] bindArgs = new Object[2 + (selectionArgs == null ? 0 : selectionArgs.length)];
+            bindArgs[0] = monthStart;
+            bindArgs[1] = getMonthStart(month + 1);
+            if (selectionArgs != null) {
+                System.arraycopy(selectionArgs, 0, bindArgs, 2, selectionArgs.length);
+            }
+            db.execSQL("INSERT INTO " + tableName + " (" + columns + ") SELECT " + columns
+                    + " FROM " + WeatherEntry.TABLE_NAME + " WHERE "
+                    + WeatherEntry.COLUMN_DATE + " >= ? AND " + WeatherEntry.COLUMN_DATE + " < ?"
+                    + " AND (" + where + ")", bindArgs);
+        }
+    }
+
+    /**
+     * Queries the archive tables of the months between two dates, as if they were one table.
+     *
+     * @param db            The weather database
+     * @param projection    Columns to return, or null for all of them. Columns may be
+     *                      expressions named with AS.
+     * @param selection     Extra restriction on the rows, or null
+     * @param selectionArgs Arguments for the selection
+     * @param sortOrder     Must only name columns in the projection. Defaults to oldest first.
+     * @param fromDate      Normalized date of the first day to include, or null for no limit
+     * @param toDate        Normalized date of the last day to include, or null for no limit
+     * @return A cursor over the matching rows
+     */
+    static Cursor query(SQLiteDatabase db, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder, Long fromDate, Long toDate) {
+        StringBuilder where = new StringBuilder("1");
+        List<String> args = new ArrayList<>();
+        if (fromDate != null) {
+            where.append(" AND ").append(WeatherEntry.COLUMN_DATE).append(" >= ?");
+            args.add(Long.toString(fromDate));
+        }
+        if (toDate != null) {
+            where.append(" AND ").append(WeatherEntry.COLUMN_DATE).append(" <= ?");
+            args.add(Long.toString(toDate));
+        }
+        if (!TextUtils.isEmpty(selection)) {
+            where.append(" AND (").append(selection).append(")");
+            if (selectionArgs != null) {
+                for (String arg : selectionArgs) {
+                    args.add(arg);
+                }
+            }
+        }
+
+        String columns = projection == null ? "*" : TextUtils.join(", ", projection);
+        StringBuilder sql = new StringBuilder();
+        List<String> bindArgs = new ArrayList<>();
+        for (String tableName : getTableNames(db, fromDate, toDate)) {
+            if (sql.length() > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT ").append(columns).append(" FROM ").append(tableName)
+                    .append(" WHERE ").append(where);
+            bindArgs.addAll(args);
+        }
+
+        if (sql.length() == 0) {
+            return new MatrixCursor(projection == null
+                    ? ARCHIVE_COLUMNS
+                    : CompactWeather.getColumnNames(projection), 0);
+        }
+
+        if (!TextUtils.isEmpty(sortOrder)) {
+            sql.append(" ORDER BY ").append(sortOrder);
+        } else if (projection == null || contains(projection, WeatherEntry.COLUMN_DATE)) {
+            sql.append(" ORDER BY ").append(WeatherEntry.COLUMN_DATE);
+        }
+
+        return db.rawQuery(sql.toString(), bindArgs.toArray(new String[bindArgs.size()]));
+    }
+
+    /**
+     * Queries a page of the archive: the first days after a date, oldest first. The monthly
+     * tables are read in order, each through its date index, only until the page is full, so a
+     * page costs the same wherever in the history it starts.
+     *
+     * @param db            The weather database
+     * @param projection    Columns to return, or null for all of them. Columns may be
+     *                      expressions named with AS.
+     * @param selection     Extra restriction on the rows, or null
+     * @param selectionArgs Arguments for the selection
+     * @param afterDate     Normalized date the page starts after, or null to start at the
+     *                      beginning
+     * @param limit         The most rows to return
+     * @return A cursor over the page
+     */
+    static Cursor queryPage(SQLiteDatabase db, String[] projection, String selection,
+                            String[] selectionArgs, Long afterDate, int limit) {
+        StringBuilder where = new StringBuilder("1");
+        List<String> args = new ArrayList<>();
+        if (afterDate != null) {
+            where.append(" AND ").append(WeatherEntry.COLUMN_DATE).append(" > ?");
+            args.add(Long.toString(afterDate));
+        }
+        if (!TextUtils.isEmpty(selection)) {
+            where.append(" AND (").append(selection).append(")");
+            if (selectionArgs != null) {
+                for (String arg : selectionArgs) {
+                    args.add(arg);
+                }
+            }
+        }
+        String[] whereArgs = args.toArray(new String[args.size()]);
+
+        List<Cursor> cursors = new ArrayList<>();
+        int remaining = limit;
+        for (String tableName : getTableNames(db, afterDate, null)) {
+            Cursor cursor = db.query(tableName, projection, where.toString(), whereArgs,
+                    null, null, WeatherEntry.COLUMN_DATE + " ASC", Integer.toString(remaining));
+            remaining -= cursor.getCount();
+            cursors.add(cursor);
+            if (remaining <= 0) {
+                break;
+            }
+        }
+
+        if (cursors.isEmpty()) {
+            return new MatrixCursor(projection == null
+                    ? ARCHIVE_COLUMNS
+                    : CompactWeather.getColumnNames(projection), 0);
+        }
+        /* The tables hold separate months, so putting them end to end keeps date order */
+        return cursors.size() == 1
+                ? cursors.get(0)
+                : new MergeCursor(cursors.toArray(new Cursor[cursors.size()]));
+    }
+
+    private static boolean contains(String[] columns, String column) {
+        for (String candidate : columns) {
+            if (candidate.equals(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the retention policy: drops the archive tables of months older than the retention
+     * period and down-samples those older than the full resolution period. Months are counted
+     * back from the current one, which is never touched. Compacting twice does nothing the
+     * second time.
+     *
+     * @param db                   The weather database
+     * @param retentionMonths      Months of history to keep, not counting this one
+     * @param fullResolutionMonths Months, not counting this one, that keep a row per day
+     * @param nowMillis            The current time
+     * @return The number of rows removed
+     */
+    static int compact(SQLiteDatabase db, int retentionMonths, int fullResolutionMonths,
+                       long nowMillis) {
+        int thisMonth = getMonthIndex(nowMillis);
+        int rowsRemoved = 0;
+
+        db.beginTransaction();
+        try {
+            for (String tableName : getTableNames(db)) {
+                int month = getMonthIndex(tableName);
+                if (month < thisMonth - retentionMonths) {
+                    rowsRemoved += (int) DatabaseUtils.queryNumEntries(db, tableName);
+                    db.execSQL("DROP TABLE " + tableName);
+                } else if (month < thisMonth - fullResolutionMonths) {
+                    rowsRemoved += downSample(db, tableName);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Compaction removed " + rowsRemoved + " archived rows");
+        return rowsRemoved;
+    }
+
+    /**
+     * Replaces the rows of an archive table with a row per week. Weeks are counted from the
+     * epoch, so rows that were already down-sampled fall into the same week again.
+     *
+     * @return The number of rows removed
+     */
+    private static int downSample(SQLiteDatabase db, String tableName) {
+        Map<Long, Sample> weeks = new LinkedHashMap<>();
+        int rowsBefore = 0;
+
+        Cursor cursor = db.query(tableName, ARCHIVE_COLUMNS, null, null, null, null,
+                WeatherEntry.COLUMN_DATE);
+        try {
+            while (cursor.moveToNext()) {
+                rowsBefore++;
+                long date = cursor.getLong(1);
+                long week = date / SunshineDateUtils.DAY_IN_MILLIS / DAYS_PER_SAMPLE;
+                Sample sample = weeks.get(week);
+                if (sample == null) {
+                    sample = new Sample(date);
+                    weeks.put(week, sample);
+                }
+                sample.add(cursor);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (weeks.size() == rowsBefore) {
+            /* Already a row per week at most */
+            return 0;
+        }
+
+        db.delete(tableName, null, null);
+        for (Sample sample : weeks.values()) {
+            db.insert(tableName, null, sample.toContentValues());
+        }
+        return rowsBefore - weeks.size();
+    }
+
+    /* Several days folded into one row, each weighted by the days it already stood for */
+    private static final class Sample {
+
+        private final long mDate;
+        private final Map<Integer, Integer> mWeatherIdDays = new LinkedHashMap<>();
+        private double mMin = Double.MAX_VALUE;
+        private double mMax = -Double.MAX_VALUE;
+        private double mHumidity;
+        private double mPressure;
+        private double mWindSpeed;
+        private double mDegrees;
+        private int mDays;
+
+        Sample(long date) {
+            mDate = date;
+        }
+
+        /* Adds the cursor's current row, which has ARCHIVE_COLUMNS */
+        void add(Cursor cursor) {
+            int days = cursor.getInt(9);
+            int weatherId = cursor.getInt(2);
+            Integer weatherIdDays = mWeatherIdDays.get(weatherId);
+            mWeatherIdDays.put(weatherId, (weatherIdDays == null ? 0 : weatherIdDays) + days);
+
+            mMin = Math.min(mMin, cursor.getDouble(3));
+            mMax = Math.max(mMax, cursor.getDouble(4));
+            mHumidity += cursor.getDouble(5) * days;
+            mPressure += cursor.getDouble(6) * days;
+            mWindSpeed += cursor.getDouble(7) * days;
+            mDegrees += cursor.getDouble(8) * days;
+            mDays += days;
+        }
+
+        ContentValues toContentValues() {
+            /* The condition seen on the most days; the earliest one wins a tie */
+            int weatherId = 0;
+            int mostDays = 0;
+            for (Map.Entry<Integer, Integer> entry : mWeatherIdDays.entrySet()) {
+                if (entry.getValue() > mostDays) {
+                    weatherId = entry.getKey();
+                    mostDays = entry.getValue();
+                }
+            }
+
+            ContentValues values = new ContentValues();
+            values.put(WeatherEntry.COLUMN_DATE, mDate);
+            values.put(WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+            /* Values are stored scaled, see CompactWeather, so averages are rounded to match */
+            values.put(WeatherEntry.COLUMN_MIN_TEMP, Math.round(mMin));
+            values.put(WeatherEntry.COLUMN_MAX_TEMP, Math.round(mMax));
+            values.put(WeatherEntry.COLUMN_HUMIDITY, Math.round(mHumidity / mDays));
+            values.put(WeatherEntry.COLUMN_PRESSURE, Math.round(mPressure / mDays));
+            values.put(WeatherEntry.COLUMN_WIND_SPEED, Math.round(mWindSpeed / mDays));
+            /* Wind directions wrap around, but a week's average is only a rough guide anyway */
+            values.put(WeatherEntry.COLUMN_DEGREES, Math.round(mDegrees / mDays));
+            values.put(ArchiveEntry.COLUMN_SAMPLE_DAYS, mDays);
+            return values;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.data.WeatherContract.ChangeEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and trims the change log behind {@link ChangeEntry}. The log itself is written by
+ * triggers on the weather table, created in {@link WeatherMigrations}, so every write counts
+ * whichever way it reaches the database, and inside the same transaction.
+ */
+final class WeatherChanges {
+
+    /* Removed days older than this are dropped from the log when the archive is compacted */
+    private static final long REMOVED_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    /* The weather columns returned for a changed day when the query has no projection */
+    private static final String[] DEFAULT_WEATHER_COLUMNS = {
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private WeatherChanges() {
+    }
+
+    /**
+     * Returns the days that changed after a sequence, joined with their weather. The log is
+     * searched through its primary key, and each day through the weather table's date index.
+     *
+     * @param db         The weather database
+     * @param projection Weather columns to return with each change, or null for all of them. The
+     *                   log's own columns are always returned first.
+     * @param sequence   The highest sequence the consumer has seen
+     * @param compact    Whether to return the metrics as stored rather than in their units
+     * @return A row per changed day, in sequence order
+     */
+    static Cursor query(SQLiteDatabase db, String[] projection, long sequence, boolean compact) {
+        String[] weatherColumns = projection == null ? DEFAULT_WEATHER_COLUMNS : projection;
+        if (!compact) {
+            weatherColumns = CompactWeather.toReadProjection(weatherColumns, null);
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append("c.").append(ChangeEntry.COLUMN_SEQUENCE)
+                .append(" AS ").append(ChangeEntry.COLUMN_SEQUENCE).append(", ")
+                .append("c.").append(ChangeEntry.COLUMN_DATE)
+                .append(" AS ").append(ChangeEntry.COLUMN_DATE).append(", ")
+                .append("c.").append(ChangeEntry.COLUMN_CHANGE)
+                .append(" AS ").append(ChangeEntry.COLUMN_CHANGE);
+        for (String column : weatherColumns) {
+            /* The log's columns come from the log, which also knows removed days */
+            String name = CompactWeather.getColumnNames(new String[]{column})[0];
+            if (ChangeEntry.COLUMN_SEQUENCE.equals(name)
+                    || ChangeEntry.COLUMN_DATE.equals(name)
+                    || ChangeEntry.COLUMN_CHANGE.equals(name)) {
+                continue;
+            }
+            sql.append(", ").append(column);
+        }
+        sql.append(" FROM ").append(ChangeEntry.TABLE_NAME).append(" c")
+                .append(" LEFT JOIN ").append(WeatherEntry.TABLE_NAME).append(" w")
+                .append(" ON w.").append(WeatherEntry.COLUMN_DATE)
+                .append(" = c.").append(ChangeEntry.COLUMN_DATE)
+                .append(" WHERE c.").append(ChangeEntry.COLUMN_SEQUENCE).append(" > ?")
+                .append(" ORDER BY c.").append(ChangeEntry.COLUMN_SEQUENCE);
+
+        return db.rawQuery(sql.toString(), new String[]{Long.toString(sequence)});
+    }
+
+    /**
+     * Drops removed days that are long past from the log. Days leave the forecast as they are
+     * archived, one a day, and would otherwise stay in the log for good. A consumer that hasn't
+     * looked for longer than the retention misses only their removal.
+     *
+     * @param db  The weather database
+     * @param now The current time, in milliseconds
+     * @return The number of changes dropped
+     */
+    static int prune(SQLiteDatabase db, long now) {
+        return db.delete(ChangeEntry.TABLE_NAME,
+                ChangeEntry.COLUMN_CHANGE + " = " + ChangeEntry.CHANGE_REMOVED
+                        + " AND " + ChangeEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(now - REMOVED_RETENTION_MILLIS)});
+    }
+}
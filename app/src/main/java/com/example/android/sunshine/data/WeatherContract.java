@@ -15,6 +15,7 @@
  */
 package com.example.android.sunshine.data;
 
+import android.database.Cursor;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -56,6 +57,81 @@ public class WeatherContract {
      */
     public static final String PATH_WEATHER = "weather";
 
+    /* Past days, under the weather path: content://com.example.android.sunshine/weather/archive */
+    public static final String PATH_ARCHIVE = "archive";
+
+    /* Aggregates over a range of days: content://com.example.android.sunshine/weather/stats */
+    public static final String PATH_STATS = "stats";
+    public static final String PATH_CONDITIONS = "conditions";
+
+    /* The log of changed days: content://com.example.android.sunshine/weather/changes */
+    public static final String PATH_CHANGES = "changes";
+
+    /* Whether there is any weather: content://com.example.android.sunshine/weather/exists */
+    public static final String PATH_EXISTS = "exists";
+
+    /* The state of the database file: content://com.example.android.sunshine/weather/diagnostics */
+    public static final String PATH_DIAGNOSTICS = "diagnostics";
+    public static final String PATH_MAINTENANCE = "maintenance";
+
+    /*
+     * Query parameters for reading the weather table or the archive a page at a time. A page is
+     * the first "limit" days after the "after" date, in date order, so each page is found through
+     * the date index however many days come before it. The next page starts after the last date
+     * of this one.
+     */
+    public static final String PARAM_AFTER = "after";
+    public static final String PARAM_LIMIT = "limit";
+
+    /**
+     * Builds a URI for the first page of days from the weather table or the archive.
+     *
+     * @param contentUri {@link WeatherEntry#CONTENT_URI} or {@link ArchiveEntry#CONTENT_URI}
+     * @param pageSize   The most days to return
+     * @return Uri to query the first page through
+     */
+    public static Uri buildPageUri(Uri contentUri, int pageSize) {
+        return contentUri.buildUpon()
+                .appendQueryParameter(PARAM_LIMIT, Integer.toString(pageSize))
+                .build();
+    }
+
+    /**
+     * Builds a URI for the page of days that follows the given date.
+     *
+     * @param contentUri {@link WeatherEntry#CONTENT_URI} or {@link ArchiveEntry#CONTENT_URI}
+     * @param afterDate  Normalized date of the last day of the previous page
+     * @param pageSize   The most days to return
+     * @return Uri to query the next page through
+     */
+    public static Uri buildPageUri(Uri contentUri, long afterDate, int pageSize) {
+        return contentUri.buildUpon()
+                .appendQueryParameter(PARAM_AFTER, Long.toString(afterDate))
+                .appendQueryParameter(PARAM_LIMIT, Integer.toString(pageSize))
+                .build();
+    }
+
+    /*
+     * Query parameter for reading the weather table or the archive in its stored form. The
+     * metrics then come back as the scaled whole numbers described at
+     * {@link WeatherEntry#TEMPERATURE_SCALE}, and must be read with the WeatherEntry accessors.
+     * Without it they come back in their units, as a double.
+     */
+    public static final String PARAM_COMPACT = "compact";
+
+    /**
+     * Builds a URI that reads the metrics of days in their stored, scaled form.
+     *
+     * @param contentUri {@link WeatherEntry#CONTENT_URI} or {@link ArchiveEntry#CONTENT_URI}, or
+     *                   a URI built from either
+     * @return Uri to query through with the WeatherEntry accessors
+     */
+    public static Uri buildCompactUri(Uri contentUri) {
+        return contentUri.buildUpon()
+                .appendQueryParameter(PARAM_COMPACT, "true")
+                .build();
+    }
+
     /* Inner class that defines the table contents of the weather table */
     public static final class WeatherEntry implements BaseColumns {
 
@@ -88,27 +164,95 @@ public class WeatherContract {
         /* Weather ID as returned by API, used to identify the icon to be used */
         public static final String COLUMN_WEATHER_ID = "weather_id";
 
-        /* Min and max temperatures in °C for the day (stored as floats in the database) */
+        /* Min and max temperatures in °C for the day (stored in tenths of a degree) */
         public static final String COLUMN_MIN_TEMP = "min";
         public static final String COLUMN_MAX_TEMP = "max";
 
-        /* Humidity is stored as a float representing percentage */
+        /* Humidity is a percentage (stored in hundredths of a percent) */
         public static final String COLUMN_HUMIDITY = "humidity";
 
-        /* Pressure is stored as a float representing percentage */
+        /* Pressure is in hPa (stored in hundredths of a hPa) */
         public static final String COLUMN_PRESSURE = "pressure";
 
-        /* Wind speed is stored as a float representing wind speed in mph */
+        /* Wind speed is stored as wind speed in mph (stored in hundredths) */
         public static final String COLUMN_WIND_SPEED = "wind";
 
         /*
          * Degrees are meteorological degrees (e.g, 0 is north, 180 is south).
-         * Stored as floats in the database.
+         * Stored in tenths of a degree.
          *
          * Note: These degrees are not to be confused with temperature degrees of the weather.
          */
         public static final String COLUMN_DEGREES = "degrees";
 
+        /*
+         * The metrics are stored as whole numbers, multiplied by these scales. This keeps more
+         * precision than the server gives or the UI shows, and each value takes a few bytes where
+         * a REAL takes eight. Queries return the metrics in their units unless they are made
+         * through buildCompactUri, in which case the accessors below undo the scaling. Selections
+         * on these columns compare against the stored, scaled numbers.
+         */
+        public static final int TEMPERATURE_SCALE = 10;
+        public static final int HUMIDITY_SCALE = 100;
+        public static final int PRESSURE_SCALE = 100;
+        public static final int WIND_SPEED_SCALE = 100;
+        public static final int DEGREES_SCALE = 10;
+
+        /**
+         * Reads {@link #COLUMN_MIN_TEMP} or {@link #COLUMN_MAX_TEMP} from a compact cursor.
+         *
+         * @param cursor      A cursor queried through {@link WeatherContract#buildCompactUri(Uri)}
+         * @param columnIndex Index of the column in the cursor
+         * @return The temperature in °C
+         */
+        public static double getTemperature(Cursor cursor, int columnIndex) {
+            return cursor.getLong(columnIndex) / (double) TEMPERATURE_SCALE;
+        }
+
+        /**
+         * Reads {@link #COLUMN_HUMIDITY} from a compact cursor.
+         *
+         * @param cursor      A cursor queried through {@link WeatherContract#buildCompactUri(Uri)}
+         * @param columnIndex Index of the column in the cursor
+         * @return The humidity as a percentage
+         */
+        public static double getHumidity(Cursor cursor, int columnIndex) {
+            return cursor.getLong(columnIndex) / (double) HUMIDITY_SCALE;
+        }
+
+        /**
+         * Reads {@link #COLUMN_PRESSURE} from a compact cursor.
+         *
+         * @param cursor      A cursor queried through {@link WeatherContract#buildCompactUri(Uri)}
+         * @param columnIndex Index of the column in the cursor
+         * @return The pressure in hPa
+         */
+        public static double getPressure(Cursor cursor, int columnIndex) {
+            return cursor.getLong(columnIndex) / (double) PRESSURE_SCALE;
+        }
+
+        /**
+         * Reads {@link #COLUMN_WIND_SPEED} from a compact cursor.
+         *
+         * @param cursor      A cursor queried through {@link WeatherContract#buildCompactUri(Uri)}
+         * @param columnIndex Index of the column in the cursor
+         * @return The wind speed
+         */
+        public static double getWindSpeed(Cursor cursor, int columnIndex) {
+            return cursor.getLong(columnIndex) / (double) WIND_SPEED_SCALE;
+        }
+
+        /**
+         * Reads {@link #COLUMN_DEGREES} from a compact cursor.
+         *
+         * @param cursor      A cursor queried through {@link WeatherContract#buildCompactUri(Uri)}
+         * @param columnIndex Index of the column in the cursor
+         * @return The wind direction in meteorological degrees
+         */
+        public static double getDegrees(Cursor cursor, int columnIndex) {
+            return cursor.getLong(columnIndex) / (double) DEGREES_SCALE;
+        }
+
         /**
          * Builds a URI that adds the weather date to the end of the forecast content URI path.
          * This is used to query details about a single weather entry by date. This is what we
@@ -123,16 +267,326 @@ public class WeatherContract {
                     .build();
         }
 
+        /*
+         * Query parameter that makes a delete from the weather table move the deleted days into
+         * the archive first, instead of discarding them.
+         */
+        public static final String PARAM_ARCHIVE = "archive";
+
         /**
-         * Returns just the selection part of the weather query from a normalized today value.
-         * This is used to get a weather forecast from today's date. To make this easy to use
-         * in compound selection, we embed today's date as an argument in the query.
+         * Builds a URI to delete rows from the weather table through, keeping them in the
+         * archive. See {@link ArchiveEntry}.
          *
-         * @return The selection part of the weather query for today onwards
+         * @return Uri to delete weather through when the deleted days should be kept
          */
-        public static String getSqlSelectForTodayOnwards() {
-            long normalizedUtcNow = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-            return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcNow;
+        public static Uri buildArchivingUri() {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PARAM_ARCHIVE, "true")
+                    .build();
         }
+
+        /*
+         * Selection for the days from a date onwards, to query with the arguments from
+         * getSelectionArgsForTodayOnwards. The date is an argument rather than part of the SQL,
+         * so the SQL is the same every time and SQLite compiles it only once per connection.
+         */
+        public static final String SQL_SELECT_FROM_DATE = COLUMN_DATE + " >= ?";
+
+        /*
+         * Answers whether the weather table has any days, from the date in PARAM_FROM onwards if
+         * given, with a single row holding COLUMN_EXISTS. The database stops at the first day it
+         * finds, so this is much cheaper than counting the rows of a query for the days.
+         */
+        public static final Uri EXISTS_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_EXISTS)
+                .build();
+
+        /* Query parameter of EXISTS_URI: the normalized date of the first day to look for */
+        public static final String PARAM_FROM = "from";
+
+        /* In the single row from EXISTS_URI, 1 if there is weather and 0 if there isn't */
+        public static final String COLUMN_EXISTS = "exists";
+
+        /**
+         * Returns the selection arguments for {@link #SQL_SELECT_FROM_DATE} that select the
+         * weather forecast from today's date. To use the selection in a compound selection, add
+         * these arguments in the same position as the selection's "?".
+         *
+         * @return The selection arguments for the weather query for today onwards
+         */
+        public static String[] getSelectionArgsForTodayOnwards() {
+            return new String[]{Long.toString(getNormalizedToday())};
+        }
+
+        /**
+         * Builds a URI that answers whether there is weather from a date onwards, see
+         * {@link #EXISTS_URI}.
+         *
+         * @param fromDate Normalized date of the first day to look for
+         * @return Uri to query for a single row holding {@link #COLUMN_EXISTS}
+         */
+        public static Uri buildExistsUri(long fromDate) {
+            return EXISTS_URI.buildUpon()
+                    .appendQueryParameter(PARAM_FROM, Long.toString(fromDate))
+                    .build();
+        }
+
+        /**
+         * @return Uri to query whether there is weather from today onwards
+         */
+        public static Uri buildExistsUriForTodayOnwards() {
+            return buildExistsUri(getNormalizedToday());
+        }
+
+        private static long getNormalizedToday() {
+            return SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Past days of weather. The weather table only holds the forecast, so that queries for today
+     * onwards stay small however long the app has been installed. Days that drop out of the
+     * forecast are moved here instead, into one table per month named after {@link #TABLE_PREFIX}
+     * and the month, e.g. weather_archive_201610. Each table has the weather table's columns plus
+     * {@link #COLUMN_SAMPLE_DAYS}.
+     * <p>
+     * Recent months keep a row per day. Older months are down-sampled to a row per week, and
+     * months older than the retention period are dropped altogether. Both happen when the
+     * compaction URI from {@link #buildCompactionUri(int, int)} is deleted.
+     */
+    public static final class ArchiveEntry implements BaseColumns {
+
+        /* Queries the archive, oldest first unless a sort order is given */
+        public static final Uri CONTENT_URI = WeatherEntry.CONTENT_URI.buildUpon()
+                .appendPath(PATH_ARCHIVE)
+                .build();
+
+        /* Used internally as the start of the name of every monthly archive table */
+        public static final String TABLE_PREFIX = "weather_archive_";
+
+        /*
+         * How many days the row stands for: 1 for a day as it was forecast, more for a row that
+         * was down-sampled from several days. Its date is the first of those days, its
+         * temperatures are the lowest low and highest high, and the rest are averages.
+         */
+        public static final String COLUMN_SAMPLE_DAYS = "sample_days";
+
+        /* Query parameters limiting a query to a range of dates, both inclusive */
+        public static final String PARAM_FROM = "from";
+        public static final String PARAM_TO = "to";
+
+        /* Query parameters of the compaction URI */
+        public static final String PARAM_RETENTION_MONTHS = "retention_months";
+        public static final String PARAM_FULL_RESOLUTION_MONTHS = "full_resolution_months";
+
+        /**
+         * Builds a URI to query the archive between two dates. Only the monthly tables that
+         * overlap the range are read.
+         *
+         * @param fromDate Normalized date of the first day to include
+         * @param toDate   Normalized date of the last day to include
+         * @return Uri to query the archive for a range of days
+         */
+        public static Uri buildArchiveUriForRange(long fromDate, long toDate) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PARAM_FROM, Long.toString(fromDate))
+                    .appendQueryParameter(PARAM_TO, Long.toString(toDate))
+                    .build();
+        }
+
+        /**
+         * Builds a URI that compacts the archive when deleted: months older than the retention
+         * period are dropped and months older than the full resolution period are down-sampled
+         * to a row per week. The space freed is given back later, through
+         * {@link DiagnosticsEntry#MAINTENANCE_URI}. The delete returns how many rows were removed.
+         *
+         * @param retentionMonths      Months of history to keep, not counting this one
+         * @param fullResolutionMonths Months, not counting this one, that keep a row per day
+         * @return Uri to delete to compact the archive
+         */
+        public static Uri buildCompactionUri(int retentionMonths, int fullResolutionMonths) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PARAM_RETENTION_MONTHS, Integer.toString(retentionMonths))
+                    .appendQueryParameter(PARAM_FULL_RESOLUTION_MONTHS,
+                            Integer.toString(fullResolutionMonths))
+                    .build();
+        }
+    }
+
+    /**
+     * Statistics over a range of days, computed by the database rather than by reading every day
+     * into a Cursor. Days come from both the forecast and the archive, and a down-sampled archive
+     * row counts for as many days as it stands for.
+     * <p>
+     * {@link #CONTENT_URI} returns a single row with {@link #COLUMN_DAYS}, the lowest and highest
+     * temperatures, {@link #COLUMN_AVERAGE_TEMP} and {@link #COLUMN_PRECIPITATION_DAYS}.
+     * {@link #CONDITIONS_URI} returns the condition histogram: a row per weather id with the
+     * number of days it was seen, most frequent first. Both ignore projections, selections and
+     * sort orders; the range is given with {@link #PARAM_FROM} and {@link #PARAM_TO}.
+     */
+    public static final class StatsEntry {
+
+        public static final Uri CONTENT_URI = WeatherEntry.CONTENT_URI.buildUpon()
+                .appendPath(PATH_STATS)
+                .build();
+
+        public static final Uri CONDITIONS_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_CONDITIONS)
+                .build();
+
+        /* Query parameters limiting the statistics to a range of dates, both inclusive */
+        public static final String PARAM_FROM = "from";
+        public static final String PARAM_TO = "to";
+
+        /* The number of days with weather in the range */
+        public static final String COLUMN_DAYS = "days";
+
+        /* The lowest low and highest high in °C, or null if there were no days */
+        public static final String COLUMN_MIN_TEMP = WeatherEntry.COLUMN_MIN_TEMP;
+        public static final String COLUMN_MAX_TEMP = WeatherEntry.COLUMN_MAX_TEMP;
+
+        /* The average of each day's midpoint between low and high, in °C */
+        public static final String COLUMN_AVERAGE_TEMP = "average";
+
+        /* Days with thunderstorms, drizzle, rain or snow: condition ids 200 to 699 */
+        public static final String COLUMN_PRECIPITATION_DAYS = "precipitation_days";
+
+        /* In the condition histogram, the weather id each row counts days for */
+        public static final String COLUMN_WEATHER_ID = WeatherEntry.COLUMN_WEATHER_ID;
+
+        /* Condition ids from the thunderstorm group up to the end of the snow group */
+        public static final int MIN_PRECIPITATION_ID = 200;
+        public static final int MAX_PRECIPITATION_ID = 699;
+
+        /**
+         * @param fromDate Normalized date of the first day to include
+         * @param toDate   Normalized date of the last day to include
+         * @return Uri to query the summary statistics for a range of days
+         */
+        public static Uri buildStatsUri(long fromDate, long toDate) {
+            return withRange(CONTENT_URI, fromDate, toDate);
+        }
+
+        /**
+         * @param fromDate Normalized date of the first day to include
+         * @param toDate   Normalized date of the last day to include
+         * @return Uri to query the condition histogram for a range of days
+         */
+        public static Uri buildConditionsUri(long fromDate, long toDate) {
+            return withRange(CONDITIONS_URI, fromDate, toDate);
+        }
+
+        private static Uri withRange(Uri uri, long fromDate, long toDate) {
+            return uri.buildUpon()
+                    .appendQueryParameter(PARAM_FROM, Long.toString(fromDate))
+                    .appendQueryParameter(PARAM_TO, Long.toString(toDate))
+                    .build();
+        }
+    }
+
+    /**
+     * The log of days that changed in the weather table, for consumers that keep something of
+     * their own up to date, like the wearable, and only want what changed since they last looked.
+     * <p>
+     * Every insert that changes a day, and every delete, gives the day a {@link #COLUMN_SEQUENCE}
+     * higher than any before it. The log keeps only a day's latest change, so a consumer that
+     * remembers the highest sequence it has seen reads every day that changed since with
+     * {@link #buildChangesUri(long)}, once each, in sequence order. Re-inserting a day exactly as
+     * it was is not a change.
+     * <p>
+     * Each row has the sequence, the date, {@link #COLUMN_CHANGE} and, for an updated day, the
+     * weather columns asked for in the projection, read like the weather table's. A removed day
+     * has nulls there. Only the projection applies, not selections or sort orders.
+     */
+    public static final class ChangeEntry {
+
+        public static final Uri CONTENT_URI = WeatherEntry.CONTENT_URI.buildUpon()
+                .appendPath(PATH_CHANGES)
+                .build();
+
+        /* Used internally as the name of the change log table */
+        public static final String TABLE_NAME = "weather_changes";
+
+        /* Increases with every change, across all days */
+        public static final String COLUMN_SEQUENCE = "sequence";
+
+        /* The normalized date of the day that changed */
+        public static final String COLUMN_DATE = WeatherEntry.COLUMN_DATE;
+
+        /* Whether the day was inserted or updated, or removed, see CHANGE_UPDATED */
+        public static final String COLUMN_CHANGE = "change";
+
+        /* The day is in the weather table, with the values in the row */
+        public static final int CHANGE_UPDATED = 1;
+
+        /* The day is no longer in the weather table: it was archived or deleted */
+        public static final int CHANGE_REMOVED = 2;
+
+        /* Query parameter: only changes with a higher sequence are returned */
+        public static final String PARAM_SINCE = "since";
+
+        /**
+         * @param sequence The highest sequence the consumer has seen, or 0 for the whole log
+         * @return Uri to query for the days that changed after it
+         */
+        public static Uri buildChangesUri(long sequence) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PARAM_SINCE, Long.toString(sequence))
+                    .build();
+        }
+    }
+
+    /**
+     * How large the weather database is and how well it is kept. {@link #CONTENT_URI} returns a
+     * row per figure, with its {@link #COLUMN_NAME} and {@link #COLUMN_VALUE}: the page size and
+     * count, the free pages, the size of the write-ahead log, the rows in each table, the hit
+     * rate of the statement cache and the slowest recent queries. Projections, selections and
+     * sort orders don't apply.
+     * <p>
+     * Updating {@link #MAINTENANCE_URI} tidies the database up where it's worth it: it gives free
+     * pages back to the file system, checkpoints a large write-ahead log and refreshes the query
+     * planner's statistics when the number of days has changed a lot. The update returns how many
+     * of those were done. It can take a while, so it belongs in a background job.
+     */
+    public static final class DiagnosticsEntry {
+
+        public static final Uri CONTENT_URI = WeatherEntry.CONTENT_URI.buildUpon()
+                .appendPath(PATH_DIAGNOSTICS)
+                .build();
+
+        public static final Uri MAINTENANCE_URI = CONTENT_URI.buildUpon()
+                .appendPath(PATH_MAINTENANCE)
+                .build();
+
+        /* The name of the figure, one of those below */
+        public static final String COLUMN_NAME = "name";
+
+        /* The figure, as text */
+        public static final String COLUMN_VALUE = "value";
+
+        /* Bytes in a page of the database file, and pages in the file */
+        public static final String PAGE_SIZE = "page_size";
+        public static final String PAGE_COUNT = "page_count";
+
+        /* Pages of the file that hold nothing, left behind by deleted rows */
+        public static final String FREELIST_COUNT = "freelist_count";
+
+        /*
+         * 0 if free pages stay in the file until it is rebuilt with VACUUM, 2 if they can be
+         * given back a few at a time
+         */
+        public static final String AUTO_VACUUM = "auto_vacuum";
+
+        /* Bytes in the write-ahead log, 0 if there is none */
+        public static final String WAL_BYTES = "wal_bytes";
+
+        /* Followed by a table's name, the rows in that table */
+        public static final String ROWS_PREFIX = "rows:";
+
+        /* Percentage of queries whose SQL was already compiled */
+        public static final String STATEMENT_CACHE_HIT_RATE = "statement_cache_hit_rate";
+
+        /* Followed by a number, one of the slowest recent queries: its time and URI */
+        public static final String SLOW_QUERY_PREFIX = "slow_query:";
     }
-}
\ No newline at end of file
+}
@@ -15,9 +15,11 @@
  */
 package com.example.android.sunshine.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 
@@ -32,6 +34,19 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     public static final String DATABASE_NAME = "weather.db";
 
+    /*
+     * Where the database is kept. The app always uses STORAGE_DISK. Tests and benchmarks can use
+     * a file of their own, emptied each time a helper is created, or a database that only lives
+     * in memory until the helper is closed. Either way weather.db is left alone, and each run
+     * starts from the same empty schema.
+     */
+    public static final int STORAGE_DISK = 0;
+    public static final int STORAGE_TEMPORARY_FILE = 1;
+    public static final int STORAGE_MEMORY = 2;
+
+    /* The file used for STORAGE_TEMPORARY_FILE, next to DATABASE_NAME */
+    static final String TEMPORARY_DATABASE_NAME = "weather-temporary.db";
+
     /*
      * If you change the database schema, you must increment the database version or the onUpgrade
      * method will not be called.
@@ -42,11 +57,69 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      * versions of Sunshine could cause everything to break. Although that is certainly a rare
      * use-case, we wanted to watch out for it and warn you what could happen if you mistakenly
      * version your databases.
+     *
+     * Each version after 3 is reached through a step in WeatherMigrations, so the two must be
+     * incremented together.
      */
-    private static final int DATABASE_VERSION = 3;
+    private static final int DATABASE_VERSION = 6;
+
+    /*
+     * Covers the columns of MAIN_FORECAST_PROJECTION and WEATHER_NOTIFICATION_PROJECTION, in date
+     * order. Lists of days, pages included, are read from this index alone and come out sorted,
+     * without a lookup into the table for each row or a sort. Single days are found through the
+     * UNIQUE date index, which SQLite prefers for an equality, and cost one row read either way.
+     */
+    static final String FORECAST_INDEX_NAME = "weather_forecast_idx";
 
     public WeatherDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, STORAGE_DISK);
+    }
+
+    /**
+     * @param context Used to find, or to delete, the database file
+     * @param storage One of STORAGE_DISK, STORAGE_TEMPORARY_FILE or STORAGE_MEMORY
+     */
+    public WeatherDbHelper(Context context, int storage) {
+        super(context, getDatabaseName(context, storage), null, DATABASE_VERSION);
+        /* SQLite keeps an in-memory database on a single connection, with no log to write ahead */
+        if (storage != STORAGE_MEMORY
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            enableConcurrentReads();
+        }
+    }
+
+    /*
+     * The name to open the database by for the given storage. A null name is how SQLiteOpenHelper
+     * is told to create the database in memory.
+     */
+    private static String getDatabaseName(Context context, int storage) {
+        switch (storage) {
+            case STORAGE_DISK:
+                return DATABASE_NAME;
+
+            case STORAGE_TEMPORARY_FILE:
+                context.deleteDatabase(TEMPORARY_DATABASE_NAME);
+                return TEMPORARY_DATABASE_NAME;
+
+            case STORAGE_MEMORY:
+                return null;
+
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + storage);
+        }
+    }
+
+    /*
+     * Switches the database to write-ahead logging. A write then no longer locks readers out:
+     * they keep reading the last committed state while a sync writes, and SQLiteDatabase gives
+     * each reading thread a connection of its own from a pool, instead of every query and write
+     * taking turns on a single connection. The list, detail screen, notification and sync can
+     * all read at once. Before Jelly Bean the helper can't be configured this way, and the
+     * database keeps its single connection.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void enableConcurrentReads() {
+        setWriteAheadLoggingEnabled(true);
     }
 
     /**
@@ -57,6 +130,18 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
+        createSchema(sqLiteDatabase, DATABASE_VERSION);
+    }
+
+    /**
+     * Creates the version {@link WeatherMigrations#BASE_VERSION} schema and migrates it to the
+     * given version. Building new databases through the migrations means they can never differ
+     * from upgraded ones.
+     *
+     * @param sqLiteDatabase An empty database
+     * @param version        The version to create
+     */
+    static void createSchema(SQLiteDatabase sqLiteDatabase, int version) {
 
         /*
          * This String will contain a simple SQL statement that will create a table that will
@@ -99,15 +184,21 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
          * that SQL with the execSQL method of our SQLite database object.
          */
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+
+        /* Everything since, such as FORECAST_INDEX_NAME, is added by the migration steps */
+        WeatherMigrations.migrate(sqLiteDatabase, WeatherMigrations.BASE_VERSION, version);
     }
 
     /**
-     * This database is only a cache for online data, so its upgrade policy is simply to discard
-     * the data and call through to onCreate to recreate the table. Note that this only fires if
-     * you change the version number for your database (in our case, DATABASE_VERSION). It does NOT
-     * depend on the version number for your application found in your app/build.gradle file. If
-     * you want to update the schema without wiping data, commenting out the current body of this
-     * method should be your top priority before modifying this method.
+     * Brings the database up to date through the steps in {@link WeatherMigrations}, keeping the
+     * days it holds, archive included. The app can then show the cached forecast as soon as it
+     * starts after an update, rather than an empty list until the next sync. Note that this only
+     * fires if you change the version number for your database (in our case, DATABASE_VERSION).
+     * It does NOT depend on the version number for your application found in your
+     * app/build.gradle file.
+     * <p>
+     * A database from before {@link WeatherMigrations#BASE_VERSION}, or from a version this code
+     * has no steps to, is only a cache for online data, so it is discarded and created again.
      *
      * @param sqLiteDatabase Database that is being upgraded
      * @param oldVersion     The old database version
@@ -115,7 +206,34 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        if (WeatherMigrations.canMigrate(oldVersion, newVersion)) {
+            WeatherMigrations.migrate(sqLiteDatabase, oldVersion, newVersion);
+            return;
+        }
+        recreate(sqLiteDatabase, newVersion);
+    }
+
+    /**
+     * Called when an older version of the app finds a database from a newer one. There are no
+     * steps back down, so the cache is discarded and created again in the older schema.
+     *
+     * @param sqLiteDatabase Database that is being downgraded
+     * @param oldVersion     The old database version
+     * @param newVersion     The new database version
+     */
+    @Override
+    public void onDowngrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        recreate(sqLiteDatabase, newVersion);
+    }
+
+    /*
+     * Drops the weather table, its indexes and triggers, the change log and the archive, and
+     * creates the schema again
+     */
+    private static void recreate(SQLiteDatabase sqLiteDatabase, int version) {
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherContract.ChangeEntry.TABLE_NAME);
+        WeatherArchive.dropTables(sqLiteDatabase);
+        createSchema(sqLiteDatabase, Math.min(version, WeatherMigrations.getLatestVersion()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.ChangeEntry;
+import com.example.android.sunshine.data.WeatherContract.DiagnosticsEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The figures behind {@link DiagnosticsEntry}, and the maintenance its MAINTENANCE_URI runs.
+ * Each maintenance task only runs past a threshold, so a daily job costs a few PRAGMA reads on
+ * most days.
+ */
+final class WeatherDiagnostics {
+
+    private static final String TAG = WeatherDiagnostics.class.getSimpleName();
+
+    /* auto_vacuum mode in which free pages can be given back with PRAGMA incremental_vacuum */
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /* Give free pages back once there are this many, and they are this much of the file */
+    private static final long VACUUM_MIN_FREE_PAGES = 64;
+    private static final double VACUUM_FREE_FRACTION = 0.1;
+
+    /* Checkpoint the write-ahead log once it is this large */
+    private static final long WAL_CHECKPOINT_BYTES = 1024 * 1024;
+
+    /*
+     * Refresh the planner's statistics once the weather table has this many more or fewer rows
+     * than when they were gathered, and at least half as many again
+     */
+    private static final long ANALYZE_MIN_ROW_CHANGE = 50;
+    private static final double ANALYZE_ROW_CHANGE_FRACTION = 0.5;
+
+    private WeatherDiagnostics() {
+    }
+
+    /**
+     * @param db          The weather database
+     * @param statements  The provider's statement registry
+     * @param slowQueries The provider's slow queries
+     * @return A row per figure, see {@link DiagnosticsEntry}
+     */
+    static Cursor query(SQLiteDatabase db, StatementRegistry statements,
+                        SlowQueryLog slowQueries) {
+        MatrixCursor cursor = new MatrixCursor(
+                new String[]{DiagnosticsEntry.COLUMN_NAME, DiagnosticsEntry.COLUMN_VALUE});
+
+        cursor.addRow(new Object[]{DiagnosticsEntry.PAGE_SIZE, pragma(db, "page_size")});
+        cursor.addRow(new Object[]{DiagnosticsEntry.PAGE_COUNT, pragma(db, "page_count")});
+        cursor.addRow(new Object[]{DiagnosticsEntry.FREELIST_COUNT,
+                pragma(db, "freelist_count")});
+        cursor.addRow(new Object[]{DiagnosticsEntry.AUTO_VACUUM, pragma(db, "auto_vacuum")});
+        cursor.addRow(new Object[]{DiagnosticsEntry.WAL_BYTES, getWalBytes(db)});
+
+        for (String tableName : getTableNames(db)) {
+            cursor.addRow(new Object[]{DiagnosticsEntry.ROWS_PREFIX + tableName,
+                    countRows(db, tableName)});
+        }
+
+        cursor.addRow(new Object[]{DiagnosticsEntry.STATEMENT_CACHE_HIT_RATE,
+                String.format(Locale.US, "%.1f", statements.getHitRate() * 100)});
+
+        List<String> samples = slowQueries.getSamples();
+        for (int i = 0; i < samples.size(); i++) {
+            cursor.addRow(new Object[]{DiagnosticsEntry.SLOW_QUERY_PREFIX + i, samples.get(i)});
+        }
+        return cursor;
+    }
+
+    /**
+     * Refreshes the planner's statistics, gives free pages back to the file system and
+     * checkpoints the write-ahead log, each only if it's past its threshold. The first time,
+     * the file is rebuilt so that free pages can from then on be given back a few at a time,
+     * rather than by rebuilding it again.
+     * <p>
+     * Must not be called in a transaction, as the file can't be rebuilt or vacuumed in one.
+     *
+     * @param db The weather database
+     * @return How many of the tasks were run
+     */
+    static int maintain(SQLiteDatabase db) {
+        if (db.inTransaction()) {
+            throw new IllegalStateException("Can't maintain the database in a transaction");
+        }
+
+        int tasks = 0;
+        try {
+            if (needsAnalyze(db)) {
+                Log.d(TAG, "Refreshing query planner statistics");
+                db.execSQL("ANALYZE");
+                tasks++;
+            }
+
+            long pageCount = pragma(db, "page_count");
+            long freePages = pragma(db, "freelist_count");
+            if (pragma(db, "auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                /* Only takes effect when the file is rebuilt */
+                Log.d(TAG, "Rebuilding for incremental vacuum, " + freePages + " of "
+                        + pageCount + " pages are free");
+                db.execSQL("PRAGMA auto_vacuum = " + AUTO_VACUUM_INCREMENTAL);
+                db.execSQL("VACUUM");
+                tasks++;
+            } else if (freePages >= VACUUM_MIN_FREE_PAGES
+                    && freePages >= pageCount * VACUUM_FREE_FRACTION) {
+                Log.d(TAG, "Vacuuming, " + freePages + " of " + pageCount + " pages are free");
+                db.execSQL("PRAGMA incremental_vacuum");
+                tasks++;
+            }
+
+            long walBytes = getWalBytes(db);
+            if (walBytes >= WAL_CHECKPOINT_BYTES) {
+                Log.d(TAG, "Checkpointing a write-ahead log of " + walBytes + " bytes");
+                /* SQLite before 3.8.8 doesn't know TRUNCATE, and runs a passive checkpoint */
+                Cursor checkpoint = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+                checkpoint.moveToFirst();
+                checkpoint.close();
+                tasks++;
+            }
+        } catch (SQLiteException e) {
+            /* Most likely busy with a long read; the next run will try again */
+            Log.w(TAG, "Database maintenance stopped early", e);
+        }
+        return tasks;
+    }
+
+    /*
+     * Whether the weather table's size has changed enough since ANALYZE last ran. The first
+     * number of a table's rows in sqlite_stat1 is its row count when the statistics were taken.
+     */
+    private static boolean needsAnalyze(SQLiteDatabase db) {
+        long rows = countRows(db, WeatherEntry.TABLE_NAME);
+        long analyzedRows = 0;
+        if (DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master"
+                + " WHERE type = 'table' AND name = 'sqlite_stat1'", null) > 0) {
+            Cursor stats = db.rawQuery("SELECT stat FROM sqlite_stat1 WHERE tbl = ? LIMIT 1",
+                    new String[]{WeatherEntry.TABLE_NAME});
+            if (stats.moveToFirst()) {
+                String stat = stats.getString(0);
+                int space = stat.indexOf(' ');
+                analyzedRows = Long.parseLong(space == -1 ? stat : stat.substring(0, space));
+            }
+            stats.close();
+        }
+
+        long change = Math.abs(rows - analyzedRows);
+        return change >= ANALYZE_MIN_ROW_CHANGE
+                && change >= analyzedRows * ANALYZE_ROW_CHANGE_FRACTION;
+    }
+
+    private static long pragma(SQLiteDatabase db, String name) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA " + name, null);
+    }
+
+    /* The write-ahead log sits next to the database file, with -wal on the end of its name */
+    private static long getWalBytes(SQLiteDatabase db) {
+        return new File(db.getPath() + "-wal").length();
+    }
+
+    private static List<String> getTableNames(SQLiteDatabase db) {
+        List<String> tableNames = new ArrayList<>();
+        tableNames.add(WeatherEntry.TABLE_NAME);
+        tableNames.add(ChangeEntry.TABLE_NAME);
+        tableNames.addAll(WeatherArchive.getTableNames(db));
+        return tableNames;
+    }
+
+    private static long countRows(SQLiteDatabase db, String tableName) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + tableName, null);
+    }
+}
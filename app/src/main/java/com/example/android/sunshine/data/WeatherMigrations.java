@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.ChangeEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.Locale;
+
+/**
+ * The steps that bring a weather database from one version to the next without losing the days
+ * it holds. {@link WeatherDbHelper} creates the version {@link #BASE_VERSION} schema and runs
+ * every step after it, so a new install and an upgraded one always end up with the same schema.
+ * <p>
+ * To change the schema, append a step to {@link #STEPS} and increment the database version.
+ * Never change a step that has shipped: some database out there has already run it. Archive
+ * tables are created from the current schema as days are archived, so a step that changes the
+ * weather table's columns must change the existing archive tables to match, in
+ * {@link #ARCHIVE_STEPS}.
+ */
+final class WeatherMigrations {
+
+    private static final String TAG = WeatherMigrations.class.getSimpleName();
+
+    /* The oldest version that can be migrated. Anything older is rebuilt empty. */
+    static final int BASE_VERSION = 3;
+
+    /* Step 3 to 4 creates this index, and step 4 to 5 again, after rebuilding the table */
+    private static final String CREATE_FORECAST_INDEX =
+            "CREATE INDEX " + WeatherDbHelper.FORECAST_INDEX_NAME
+                    + " ON " + WeatherEntry.TABLE_NAME + " ("
+                    + WeatherEntry.COLUMN_DATE + ", "
+                    + WeatherEntry.COLUMN_WEATHER_ID + ", "
+                    + WeatherEntry.COLUMN_MIN_TEMP + ", "
+                    + WeatherEntry.COLUMN_MAX_TEMP + ")";
+
+    /*
+     * STEPS[i] is the SQL that takes a database from version BASE_VERSION + i to the next one.
+     * Each step runs inside the transaction SQLiteOpenHelper opens around onCreate and onUpgrade,
+     * so an upgrade is either complete or not applied at all.
+     */
+    private static final String[][] STEPS = {
+            /* 3 to 4: the covering index for lists of days */
+            {
+                    CREATE_FORECAST_INDEX
+            },
+            /* 4 to 5: metrics as scaled whole numbers, see CompactWeather */
+            {
+                    "ALTER TABLE " + WeatherEntry.TABLE_NAME
+                            + " RENAME TO " + WeatherEntry.TABLE_NAME + "_real",
+                    createCompactTable(WeatherEntry.TABLE_NAME, ""),
+                    copyCompact(WeatherEntry.TABLE_NAME + "_real", WeatherEntry.TABLE_NAME, ""),
+                    "DROP TABLE " + WeatherEntry.TABLE_NAME + "_real",
+                    CREATE_FORECAST_INDEX
+            },
+            /* 5 to 6: the change log, see WeatherChanges */
+            {
+                    "CREATE TABLE " + ChangeEntry.TABLE_NAME + " ("
+                            + ChangeEntry.COLUMN_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + ChangeEntry.COLUMN_DATE + " INTEGER NOT NULL, "
+                            + ChangeEntry.COLUMN_CHANGE + " INTEGER NOT NULL, "
+                            + "UNIQUE (" + ChangeEntry.COLUMN_DATE + ") ON CONFLICT REPLACE)",
+                    /* The days already there are news to every consumer */
+                    "INSERT INTO " + ChangeEntry.TABLE_NAME
+                            + " (" + ChangeEntry.COLUMN_DATE + ", " + ChangeEntry.COLUMN_CHANGE + ")"
+                            + " SELECT " + WeatherEntry.COLUMN_DATE + ", "
+                            + ChangeEntry.CHANGE_UPDATED + " FROM " + WeatherEntry.TABLE_NAME
+                            + " ORDER BY " + WeatherEntry.COLUMN_DATE,
+                    /*
+                     * Before the insert, so that the day it replaces can still be compared with.
+                     * Deleting the replaced row doesn't fire the delete trigger.
+                     */
+                    "CREATE TRIGGER " + ChangeEntry.TABLE_NAME + "_insert"
+                            + " BEFORE INSERT ON " + WeatherEntry.TABLE_NAME
+                            + " WHEN NOT EXISTS (SELECT 1 FROM " + WeatherEntry.TABLE_NAME
+                            + " WHERE " + matchesNew(CompactWeather.WEATHER_COLUMNS) + ")"
+                            + " BEGIN " + logChange("NEW", ChangeEntry.CHANGE_UPDATED) + " END",
+                    "CREATE TRIGGER " + ChangeEntry.TABLE_NAME + "_update"
+                            + " AFTER UPDATE ON " + WeatherEntry.TABLE_NAME
+                            + " BEGIN "
+                            + logChange("OLD", ChangeEntry.CHANGE_REMOVED)
+                            + logChange("NEW", ChangeEntry.CHANGE_UPDATED)
+                            + " END",
+                    "CREATE TRIGGER " + ChangeEntry.TABLE_NAME + "_delete"
+                            + " AFTER DELETE ON " + WeatherEntry.TABLE_NAME
+                            + " BEGIN " + logChange("OLD", ChangeEntry.CHANGE_REMOVED) + " END"
+            },
+    };
+
+    /*
+     * ARCHIVE_STEPS[i] is run on every archive table alongside STEPS[i], with %1$s standing for
+     * the table's name. Archive tables are created from the current schema, so there is no
+     * archive schema to start from: these only keep existing ones in line with the weather table.
+     */
+    private static final String[][] ARCHIVE_STEPS = {
+            /* 3 to 4: nothing, archives are read by month rather than through an index */
+            {
+            },
+            /* 4 to 5: metrics as scaled whole numbers */
+            {
+                    "ALTER TABLE %1$s RENAME TO %1$s_real",
+                    createCompactTable("%1$s", WeatherContract.ArchiveEntry.COLUMN_SAMPLE_DAYS
+                            + " INTEGER NOT NULL DEFAULT 1, "),
+                    copyCompact("%1$s_real", "%1$s",
+                            ", " + WeatherContract.ArchiveEntry.COLUMN_SAMPLE_DAYS),
+                    "DROP TABLE %1$s_real"
+            },
+            /* 5 to 6: nothing, archived days are not logged */
+            {
+            },
+    };
+
+    /* The weather table with INTEGER metrics, plus any extra column definitions */
+    private static String createCompactTable(String tableName, String extraColumns) {
+        return "CREATE TABLE " + tableName + " (" +
+                WeatherEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_MIN_TEMP + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_MAX_TEMP + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_HUMIDITY + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_PRESSURE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_WIND_SPEED + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_DEGREES + " INTEGER NOT NULL, " +
+                extraColumns +
+                "UNIQUE (" + WeatherEntry.COLUMN_DATE + ") ON CONFLICT REPLACE)";
+    }
+
+    /* Copies every row, scaling the metrics, plus any extra columns as they are */
+    private static String copyCompact(String from, String to, String extraColumns) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (String column : CompactWeather.WEATHER_COLUMNS) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+                values.append(", ");
+            }
+            columns.append(column);
+            values.append(CompactWeather.toStoredSql(column));
+        }
+        return "INSERT INTO " + to + " (" + columns + extraColumns + ")"
+                + " SELECT " + values + extraColumns + " FROM " + from;
+    }
+
+    /* "column = NEW.column AND ..." for every column but _id */
+    private static String matchesNew(String[] columns) {
+        StringBuilder matches = new StringBuilder();
+        for (String column : columns) {
+            if (WeatherEntry._ID.equals(column)) {
+                continue;
+            }
+            if (matches.length() > 0) {
+                matches.append(" AND ");
+            }
+            matches.append(column).append(" = NEW.").append(column);
+        }
+        return matches.toString();
+    }
+
+    /*
+     * A trigger statement logging a change to the OLD or NEW row's date. The date is unique in
+     * the log, so this replaces the day's previous change and takes a higher sequence. When the
+     * row's date hasn't changed, an update logs OLD as removed and then NEW as updated, and only
+     * the second is left.
+     */
+    private static String logChange(String row, int change) {
+        return "INSERT OR REPLACE INTO " + ChangeEntry.TABLE_NAME
+                + " (" + ChangeEntry.COLUMN_DATE + ", " + ChangeEntry.COLUMN_CHANGE + ")"
+                + " VALUES (" + row + "." + WeatherEntry.COLUMN_DATE + ", " + change + ");";
+    }
+
+    private WeatherMigrations() {
+    }
+
+    /**
+     * @return The version the last step brings a database to
+     */
+    static int getLatestVersion() {
+        return BASE_VERSION + STEPS.length;
+    }
+
+    /**
+     * @param oldVersion The version of the database on disk
+     * @param newVersion The version wanted
+     * @return Whether there are steps from one to the other
+     */
+    static boolean canMigrate(int oldVersion, int newVersion) {
+        return oldVersion >= BASE_VERSION
+                && oldVersion <= newVersion
+                && newVersion <= getLatestVersion();
+    }
+
+    /**
+     * Runs every step from the old version to the new one, in order.
+     *
+     * @param db         The database, at the old version
+     * @param oldVersion The version of the database
+     * @param newVersion The version to bring it to
+     * @throws IllegalArgumentException if {@link #canMigrate(int, int)} is false
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (!canMigrate(oldVersion, newVersion)) {
+            throw new IllegalArgumentException(
+                    "No migration from version " + oldVersion + " to " + newVersion);
+        }
+
+        for (int version = oldVersion; version < newVersion; version++) {
+            for (String sql : STEPS[version - BASE_VERSION]) {
+                db.execSQL(sql);
+            }
+            for (String tableName : WeatherArchive.getTableNames(db)) {
+                for (String sql : ARCHIVE_STEPS[version - BASE_VERSION]) {
+                    db.execSQL(String.format(Locale.US, sql, tableName));
+                }
+            }
+            Log.d(TAG, "Migrated weather database to version " + (version + 1));
+        }
+    }
+}
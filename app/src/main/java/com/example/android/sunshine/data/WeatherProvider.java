@@ -17,24 +17,36 @@ package com.example.android.sunshine.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * This class serves as the ContentProvider for all of Sunshine's data. This class allows us to
- * bulkInsert data, query data, and delete data.
+ * bulkInsert data, query data, and delete data, and to insert and update days one at a time as
+ * part of {@link #applyBatch(ArrayList)}.
  * <p>
- * Although ContentProvider implementation requires the implementation of additional methods to
- * perform single inserts, updates, and the ability to get the type of the data from a URI.
- * However, here, they are not implemented for the sake of brevity and simplicity. If you would
- * like, you may implement them on your own. However, we are not going to be teaching how to do
- * so in this course.
+ * Although ContentProvider implementation requires the implementation of additional methods,
+ * such as the ability to get the type of the data from a URI, here it is not implemented for
+ * the sake of brevity and simplicity.
  */
 public class WeatherProvider extends ContentProvider {
 
@@ -45,6 +57,13 @@ public class WeatherProvider extends ContentProvider {
      */
     public static final int CODE_WEATHER = 100;
     public static final int CODE_WEATHER_WITH_DATE = 101;
+    public static final int CODE_ARCHIVE = 102;
+    public static final int CODE_STATS = 103;
+    public static final int CODE_STATS_CONDITIONS = 104;
+    public static final int CODE_CHANGES = 105;
+    public static final int CODE_EXISTS = 106;
+    public static final int CODE_DIAGNOSTICS = 107;
+    public static final int CODE_MAINTENANCE = 108;
 
     /*
      * The URI Matcher used by this content provider. The leading "s" in this variable name
@@ -52,7 +71,39 @@ public class WeatherProvider extends ContentProvider {
      * common convention in Android programming.
      */
     private static final UriMatcher sUriMatcher = buildUriMatcher();
-    private WeatherDbHelper mOpenHelper;
+
+    /* Replaced by setStorage, so read afresh for each request */
+    private volatile WeatherDbHelper mOpenHelper;
+
+    /*
+     * The weather table is queried through here, so that we know how often a query's SQL is
+     * found already compiled. The hit rate is logged now and then, and printed with the hits and
+     * misses of each shape by adb shell dumpsys activity provider com.example.android.sunshine
+     */
+    private final StatementRegistry mStatements = new StatementRegistry();
+
+    /* The shapes of query the weather table gets: a single day, a list of days, and a page */
+    private static final String SHAPE_DAY = "day";
+    private static final String SHAPE_DAYS = "days";
+    private static final String SHAPE_PAGE = "page";
+    private static final String SHAPE_EXISTS = "exists";
+
+    /* The slowest recent queries, timed until their rows are read, for DiagnosticsEntry */
+    private final SlowQueryLog mSlowQueries = new SlowQueryLog();
+
+    /*
+     * Whether there is a day from a date onwards. SQLite finds the first such day in the date
+     * index and stops there, without reading the table or stepping through the other days.
+     */
+    static final String SQL_EXISTS_FROM_DATE = "SELECT EXISTS (SELECT 1 FROM "
+            + WeatherContract.WeatherEntry.TABLE_NAME
+            + " WHERE " + WeatherContract.WeatherEntry.SQL_SELECT_FROM_DATE + ")";
+
+    /*
+     * While applyBatch runs on a thread, the URIs its operations changed, to notify once it has
+     * committed. Null on threads that aren't applying a batch.
+     */
+    private final ThreadLocal<Set<Uri>> mBatchNotifications = new ThreadLocal<>();
 
     /**
      * Creates the UriMatcher that will match each URI to the CODE_WEATHER and
@@ -96,6 +147,41 @@ public class WeatherProvider extends ContentProvider {
          */
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/#", CODE_WEATHER_WITH_DATE);
 
+        /* This URI is content://com.example.android.sunshine/weather/archive */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_ARCHIVE,
+                CODE_ARCHIVE);
+
+        /* These URIs are content://com.example.android.sunshine/weather/stats[/conditions] */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_STATS,
+                CODE_STATS);
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_STATS
+                        + "/" + WeatherContract.PATH_CONDITIONS,
+                CODE_STATS_CONDITIONS);
+
+        /* This URI is content://com.example.android.sunshine/weather/changes */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_CHANGES,
+                CODE_CHANGES);
+
+        /* This URI is content://com.example.android.sunshine/weather/exists */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_EXISTS,
+                CODE_EXISTS);
+
+        /* This URI is content://com.example.android.sunshine/weather/diagnostics */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_DIAGNOSTICS,
+                CODE_DIAGNOSTICS);
+
+        /* This URI is content://com.example.android.sunshine/weather/diagnostics/maintenance */
+        matcher.addURI(authority,
+                WeatherContract.PATH_WEATHER + "/" + WeatherContract.PATH_DIAGNOSTICS
+                        + "/" + WeatherContract.PATH_MAINTENANCE,
+                CODE_MAINTENANCE);
+
         return matcher;
     }
 
@@ -155,7 +241,8 @@ public class WeatherProvider extends ContentProvider {
                             throw new IllegalArgumentException("Date must be normalized to insert");
                         }
 
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null,
+                                CompactWeather.toStored(value));
                         if (_id != -1) {
                             rowsInserted++;
                         }
@@ -166,7 +253,7 @@ public class WeatherProvider extends ContentProvider {
                 }
 
                 if (rowsInserted > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    notifyChange(uri);
                 }
 
                 return rowsInserted;
@@ -195,9 +282,15 @@ public class WeatherProvider extends ContentProvider {
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
 
+        long startMillis = SystemClock.uptimeMillis();
         Cursor cursor;
 
         /*
+         * getReadableDatabase returns the same database object for every query, but with
+         * write-ahead logging on (see WeatherDbHelper) each thread reads on a connection of its
+         * own from the database's pool, so queries from different loaders run side by side and
+         * aren't held up by a sync writing.
+         *
          * Here's the switch statement that, given a URI, will determine what kind of request is
          * being made and query the database accordingly.
          */
@@ -233,7 +326,9 @@ public class WeatherProvider extends ContentProvider {
                  */
                 String[] selectionArguments = new String[]{normalizedUtcDateString};
 
-                cursor = mOpenHelper.getReadableDatabase().query(
+                cursor = mStatements.query(
+                        SHAPE_DAY,
+                        mOpenHelper.getReadableDatabase(),
                         /* Table we are going to query */
                         WeatherContract.WeatherEntry.TABLE_NAME,
                         /*
@@ -241,8 +336,10 @@ public class WeatherProvider extends ContentProvider {
                          * Passing null will return all columns of data within the Cursor.
                          * However, if you don't need all the data from the table, it's best
                          * practice to limit the columns returned in the Cursor with a projection.
+                         * The metrics are stored scaled, so unless a compact cursor was asked
+                         * for, the projection converts them back into their units.
                          */
-                        projection,
+                        getReadProjection(uri, projection, CompactWeather.WEATHER_COLUMNS),
                         /*
                          * The URI that matches CODE_WEATHER_WITH_DATE contains a date at the end
                          * of it. We extract that date and use it with these next two lines to
@@ -254,9 +351,8 @@ public class WeatherProvider extends ContentProvider {
                          */
                         WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ",
                         selectionArguments,
-                        null,
-                        null,
-                        sortOrder);
+                        sortOrder,
+                        null);
 
                 break;
             }
@@ -273,22 +369,140 @@ public class WeatherProvider extends ContentProvider {
              * in our weather table.
              */
             case CODE_WEATHER: {
-                cursor = mOpenHelper.getReadableDatabase().query(
+                /*
+                 * A page is the first "limit" days after the "after" date. Both go straight to
+                 * SQLite, so the date index finds the page without stepping over earlier days.
+                 */
+                Long afterDate = getLongQueryParameter(uri, WeatherContract.PARAM_AFTER);
+                String limit = getLimitQueryParameter(uri);
+                if (afterDate != null) {
+                    selection = appendDateAfter(selection);
+                    selectionArgs = appendArg(selectionArgs, Long.toString(afterDate));
+                }
+                if (afterDate != null || limit != null) {
+                    sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+                }
+
+                cursor = mStatements.query(
+                        limit == null ? SHAPE_DAYS : SHAPE_PAGE,
+                        mOpenHelper.getReadableDatabase(),
                         WeatherContract.WeatherEntry.TABLE_NAME,
+                        getReadProjection(uri, projection, CompactWeather.WEATHER_COLUMNS),
+                        selection,
+                        selectionArgs,
+                        sortOrder,
+                        limit);
+
+                break;
+            }
+
+            /*
+             * Past days, spread over a table per month. The from and to query parameters limit
+             * which of those tables are read at all.
+             */
+            case CODE_ARCHIVE: {
+                projection = getReadProjection(uri, projection, WeatherArchive.ARCHIVE_COLUMNS);
+                String limit = getLimitQueryParameter(uri);
+                if (limit != null) {
+                    cursor = WeatherArchive.queryPage(
+                            mOpenHelper.getReadableDatabase(),
+                            projection,
+                            selection,
+                            selectionArgs,
+                            getLongQueryParameter(uri, WeatherContract.PARAM_AFTER),
+                            Integer.parseInt(limit));
+                    break;
+                }
+
+                cursor = WeatherArchive.query(
+                        mOpenHelper.getReadableDatabase(),
                         projection,
                         selection,
                         selectionArgs,
-                        null,
-                        null,
-                        sortOrder);
+                        sortOrder,
+                        getLongQueryParameter(uri, WeatherContract.ArchiveEntry.PARAM_FROM),
+                        getLongQueryParameter(uri, WeatherContract.ArchiveEntry.PARAM_TO));
+
+                break;
+            }
+
+            /*
+             * Aggregates over a range of days, computed in SQL so that only the result is copied
+             * into the Cursor. Projection, selection and sort order don't apply.
+             */
+            case CODE_STATS: {
+                cursor = WeatherStatistics.querySummary(
+                        mOpenHelper.getReadableDatabase(),
+                        getLongQueryParameter(uri, WeatherContract.StatsEntry.PARAM_FROM),
+                        getLongQueryParameter(uri, WeatherContract.StatsEntry.PARAM_TO));
 
                 break;
             }
 
+            case CODE_STATS_CONDITIONS: {
+                cursor = WeatherStatistics.queryConditions(
+                        mOpenHelper.getReadableDatabase(),
+                        getLongQueryParameter(uri, WeatherContract.StatsEntry.PARAM_FROM),
+                        getLongQueryParameter(uri, WeatherContract.StatsEntry.PARAM_TO));
+
+                break;
+            }
+
+            /*
+             * The days that changed since the sequence in the URI, with their weather. Writes to
+             * the weather table notify its URI, which reaches observers of this one too.
+             */
+            case CODE_CHANGES: {
+                Long since = getLongQueryParameter(uri, WeatherContract.ChangeEntry.PARAM_SINCE);
+                cursor = WeatherChanges.query(
+                        mOpenHelper.getReadableDatabase(),
+                        projection,
+                        since == null ? 0 : since,
+                        "true".equals(uri.getQueryParameter(WeatherContract.PARAM_COMPACT)));
+
+                break;
+            }
+
+            /*
+             * A single row saying whether there is any weather from a date onwards. Projection,
+             * selection and sort order don't apply.
+             */
+            case CODE_EXISTS: {
+                Long fromDate = getLongQueryParameter(uri,
+                        WeatherContract.WeatherEntry.PARAM_FROM);
+                String[] args = new String[]{Long.toString(fromDate == null ? 0 : fromDate)};
+                mStatements.record(SHAPE_EXISTS, SQL_EXISTS_FROM_DATE);
+                long exists = DatabaseUtils.longForQuery(
+                        mOpenHelper.getReadableDatabase(), SQL_EXISTS_FROM_DATE, args);
+
+                MatrixCursor existsCursor = new MatrixCursor(
+                        new String[]{WeatherContract.WeatherEntry.COLUMN_EXISTS}, 1);
+                existsCursor.addRow(new Object[]{exists});
+                cursor = existsCursor;
+
+                break;
+            }
+
+            /*
+             * A row for each figure about the database, see DiagnosticsEntry. Projection,
+             * selection and sort order don't apply, and it isn't timed itself.
+             */
+            case CODE_DIAGNOSTICS: {
+                return WeatherDiagnostics.query(
+                        mOpenHelper.getReadableDatabase(), mStatements, mSlowQueries);
+            }
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
+        /*
+         * A database cursor doesn't run its query until it's first asked for its rows, so we
+         * count them here to time the whole query. The loader would count them next anyway.
+         */
+        cursor.getCount();
+        mSlowQueries.record(uri, SystemClock.uptimeMillis() - startMillis);
+
         cursor.setNotificationUri(getContext().getContentResolver(), uri);
         return cursor;
     }
@@ -319,6 +533,24 @@ public class WeatherProvider extends ContentProvider {
         switch (sUriMatcher.match(uri)) {
 
             case CODE_WEATHER:
+                if ("true".equals(uri.getQueryParameter(
+                        WeatherContract.WeatherEntry.PARAM_ARCHIVE))) {
+                    /* Keep the deleted days in the archive, all or nothing */
+                    SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                    db.beginTransaction();
+                    try {
+                        WeatherArchive.archive(db, selection, selectionArgs);
+                        numRowsDeleted = db.delete(
+                                WeatherContract.WeatherEntry.TABLE_NAME,
+                                selection,
+                                selectionArgs);
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                    break;
+                }
+
                 numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
                         WeatherContract.WeatherEntry.TABLE_NAME,
                         selection,
@@ -326,18 +558,104 @@ public class WeatherProvider extends ContentProvider {
 
                 break;
 
+            /*
+             * Deleting from the archive means compacting it by the retention policy in the URI;
+             * see ArchiveEntry#buildCompactionUri. The selection is not used.
+             */
+            case CODE_ARCHIVE: {
+                Long retentionMonths = getLongQueryParameter(uri,
+                        WeatherContract.ArchiveEntry.PARAM_RETENTION_MONTHS);
+                Long fullResolutionMonths = getLongQueryParameter(uri,
+                        WeatherContract.ArchiveEntry.PARAM_FULL_RESOLUTION_MONTHS);
+                if (retentionMonths == null || fullResolutionMonths == null) {
+                    throw new IllegalArgumentException("Not a compaction uri: " + uri);
+                }
+
+                SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                numRowsDeleted = WeatherArchive.compact(
+                        db,
+                        retentionMonths.intValue(),
+                        fullResolutionMonths.intValue(),
+                        System.currentTimeMillis());
+                WeatherChanges.prune(db, System.currentTimeMillis());
+                /* The pages freed are given back by the maintenance job, a few at a time */
+
+                break;
+            }
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
         /* If we actually deleted any rows, notify that a change has occurred to this URI */
         if (numRowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return numRowsDeleted;
     }
 
+    /**
+     * @param uri The URI of a request
+     * @param key The name of a query parameter holding a number
+     * @return The number, or null if the URI doesn't have the parameter
+     */
+    private static Long getLongQueryParameter(Uri uri, String key) {
+        String value = uri.getQueryParameter(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Query parameter " + key + " must be a number: "
+                    + uri);
+        }
+    }
+
+    /**
+     * @param uri The URI of a request
+     * @return The page size from the URI's limit parameter, or null if it doesn't have one
+     */
+    private static String getLimitQueryParameter(Uri uri) {
+        Long limit = getLongQueryParameter(uri, WeatherContract.PARAM_LIMIT);
+        if (limit == null) {
+            return null;
+        }
+        if (limit <= 0 || limit > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Page size out of range: " + uri);
+        }
+        return Long.toString(limit);
+    }
+
+    /*
+     * Returns the projection to query the weather table or the archive with: as asked for if the
+     * URI asks for a compact cursor, otherwise with the scaled metrics converted into their units.
+     */
+    private static String[] getReadProjection(Uri uri, String[] projection, String[] allColumns) {
+        if ("true".equals(uri.getQueryParameter(WeatherContract.PARAM_COMPACT))) {
+            return projection;
+        }
+        return CompactWeather.toReadProjection(projection, allColumns);
+    }
+
+    /* Adds "date > ?" to a selection that may be null */
+    private static String appendDateAfter(String selection) {
+        String dateAfter = WeatherContract.WeatherEntry.COLUMN_DATE + " > ?";
+        return selection == null ? dateAfter : "(" + selection + ") AND " + dateAfter;
+    }
+
+    /* Adds an argument to the end of selection arguments that may be null */
+    private static String[] appendArg(String[] selectionArgs, String arg) {
+        if (selectionArgs == null) {
+            return new String[]{arg};
+        }
+        String[] args = new String[selectionArgs.length + 1];
+        System.arraycopy(selectionArgs, 0, args, 0, selectionArgs.length);
+        args[selectionArgs.length] = arg;
+        return args;
+    }
+
     /**
      * In Sunshine, we aren't going to do anything with this method. However, we are required to
      * override it as WeatherProvider extends ContentProvider and getType is an abstract method in
@@ -354,25 +672,188 @@ public class WeatherProvider extends ContentProvider {
     }
 
     /**
-     * In Sunshine, we aren't going to do anything with this method. However, we are required to
-     * override it as WeatherProvider extends ContentProvider and insert is an abstract method in
-     * ContentProvider. Rather than the single insert method, we are only going to implement
-     * {@link WeatherProvider#bulkInsert}.
+     * Inserts a single day, replacing the day with the same date if there is one. To insert a
+     * whole forecast, use {@link WeatherProvider#bulkInsert} or {@link #applyBatch(ArrayList)}
+     * rather than calling this for each day, so that it is written in one transaction.
      *
      * @param uri    The URI of the insertion request. This must not be null.
      * @param values A set of column_name/value pairs to add to the database.
      *               This must not be null
-     * @return nothing in Sunshine, but normally the URI for the newly inserted item.
+     * @return The URI of the day inserted. Its last segment is the date, so a back-reference to
+     * this insert in a batch stands for the day's date.
      */
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
-        throw new RuntimeException(
-                "We are not implementing insert in Sunshine. Use bulkInsert instead");
+        if (sUriMatcher.match(uri) != CODE_WEATHER) {
+            throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        Long weatherDate = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        if (weatherDate == null || !SunshineDateUtils.isDateNormalized(weatherDate)) {
+            throw new IllegalArgumentException("Date must be normalized to insert");
+        }
+
+        long _id = mOpenHelper.getWritableDatabase().insert(
+                WeatherContract.WeatherEntry.TABLE_NAME, null, CompactWeather.toStored(values));
+        if (_id == -1) {
+            return null;
+        }
+
+        notifyChange(uri);
+        return WeatherContract.WeatherEntry.buildWeatherUriWithDate(weatherDate);
+    }
+
+    /**
+     * Updates the days that match the selection, or the single day of a URI with a date. Values
+     * are given in the contract's units, like for an insert.
+     *
+     * @param uri           The URI of the days to update
+     * @param values        The columns to change, and their new values
+     * @param selection     An optional restriction to apply to rows when updating
+     * @param selectionArgs Used in conjunction with the selection statement
+     * @return The number of rows updated
+     */
+    @Override
+    public int update(@NonNull Uri uri, ContentValues values, String selection,
+                      String[] selectionArgs) {
+        switch (sUriMatcher.match(uri)) {
+
+            /*
+             * Updating the maintenance URI runs whichever of ANALYZE, vacuuming and
+             * checkpointing the database needs, and returns how many ran. Nothing is notified,
+             * as the weather itself hasn't changed. The values aren't used.
+             */
+            case CODE_MAINTENANCE:
+                return WeatherDiagnostics.maintain(mOpenHelper.getWritableDatabase());
+
+            case CODE_WEATHER_WITH_DATE:
+                selection = WeatherContract.WeatherEntry.COLUMN_DATE + " = ?";
+                selectionArgs = new String[]{uri.getLastPathSegment()};
+                break;
+
+            case CODE_WEATHER:
+                break;
+
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        Long weatherDate = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        if (weatherDate != null && !SunshineDateUtils.isDateNormalized(weatherDate)) {
+            throw new IllegalArgumentException("Date must be normalized to update");
+        }
+
+        int numRowsUpdated = mOpenHelper.getWritableDatabase().update(
+                WeatherContract.WeatherEntry.TABLE_NAME,
+                CompactWeather.toStored(values),
+                selection,
+                selectionArgs);
+
+        if (numRowsUpdated != 0) {
+            notifyChange(uri);
+        }
+        return numRowsUpdated;
+    }
+
+    /**
+     * Applies a list of inserts, updates and deletes in a single transaction: either every
+     * operation is applied or, if one throws, none are. Back-references to earlier results work
+     * as usual; an insert's result stands for the date of the day inserted.
+     * <p>
+     * Observers are notified once the transaction has committed, once for each URI changed
+     * rather than once for each operation, so that they never re-query halfway through a sync.
+     * Nothing is notified if the batch fails.
+     *
+     * @param operations The operations to apply, in order
+     * @return The result of each operation
+     * @throws OperationApplicationException if an operation's expectations aren't met
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Set<Uri> notifications = new LinkedHashSet<>();
+
+        ContentProviderResult[] results;
+        mBatchNotifications.set(notifications);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchNotifications.remove();
+        }
+
+        for (Uri uri : notifications) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return results;
+    }
+
+    /*
+     * Notifies observers of a URI that its data changed, or, inside applyBatch, saves the URI to
+     * notify once the batch has committed. Observers are matched on the URI's path alone, so the
+     * query is dropped and, for instance, archiving days and inserting them make one notification.
+     */
+    private void notifyChange(Uri uri) {
+        Set<Uri> batchNotifications = mBatchNotifications.get();
+        if (batchNotifications == null) {
+            getContext().getContentResolver().notifyChange(uri, null);
+            return;
+        }
+        batchNotifications.add(uri.buildUpon().clearQuery().build());
     }
 
+    /**
+     * Prints how often the weather table's queries found their SQL already compiled, and the
+     * figures from DiagnosticsEntry, for adb shell dumpsys activity provider.
+     */
     @Override
-    public int update(@NonNull Uri uri, ContentValues values, String selection, String[] selectionArgs) {
-        throw new RuntimeException("We are not implementing update in Sunshine");
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mStatements.dump(writer);
+
+        Cursor diagnostics = WeatherDiagnostics.query(
+                mOpenHelper.getReadableDatabase(), mStatements, mSlowQueries);
+        while (diagnostics.moveToNext()) {
+            writer.println("  " + diagnostics.getString(0) + ": " + diagnostics.getString(1));
+        }
+        diagnostics.close();
+    }
+
+    /**
+     * @return How often the weather table's queries found their SQL already compiled, see
+     * {@link StatementRegistry}
+     */
+    @VisibleForTesting
+    StatementRegistry getStatementRegistry() {
+        return mStatements;
+    }
+
+    /**
+     * Closes the database and moves the provider to a new, empty one in the given storage, so
+     * that tests and benchmarks can run through the provider without touching weather.db. Must
+     * not be called while a request is running or a cursor from the provider is still open.
+     *
+     * @param storage One of the WeatherDbHelper STORAGE_ constants. STORAGE_DISK goes back to
+     *                weather.db, as it was left.
+     */
+    @VisibleForTesting
+    void setStorage(int storage) {
+        WeatherDbHelper previousHelper = mOpenHelper;
+        mOpenHelper = new WeatherDbHelper(getContext(), storage);
+        previousHelper.close();
+    }
+
+    /**
+     * @return The helper for the database the provider is using, for tests to read and write it
+     * directly. Its database must not be closed, as an in-memory one would be lost.
+     */
+    @VisibleForTesting
+    WeatherDbHelper getDbHelper() {
+        return mOpenHelper;
     }
 
     /**
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.data.WeatherContract.ArchiveEntry;
+import com.example.android.sunshine.data.WeatherContract.StatsEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The aggregate queries behind {@link StatsEntry}. Each is a single SQL statement over the
+ * weather table and the archive tables of the months in range, so every table is read once,
+ * through its date index, and only the result crosses into Java.
+ */
+final class WeatherStatistics {
+
+    private WeatherStatistics() {
+    }
+
+    /**
+     * @param db       The weather database
+     * @param fromDate Normalized date of the first day to include, or null for no limit
+     * @param toDate   Normalized date of the last day to include, or null for no limit
+     * @return A single row of summary statistics, see {@link StatsEntry}
+     */
+    static Cursor querySummary(SQLiteDatabase db, Long fromDate, Long toDate) {
+        List<String> args = new ArrayList<>();
+        String days = ArchiveEntry.COLUMN_SAMPLE_DAYS;
+        String min = WeatherEntry.COLUMN_MIN_TEMP;
+        String max = WeatherEntry.COLUMN_MAX_TEMP;
+
+        /* Temperatures are stored scaled, see CompactWeather, and reported in °C */
+        String scale = " / " + WeatherEntry.TEMPERATURE_SCALE + ".0";
+
+        String sql = "SELECT "
+                + "IFNULL(SUM(" + days + "), 0) AS " + StatsEntry.COLUMN_DAYS + ", "
+                + "MIN(" + min + ")" + scale + " AS " + StatsEntry.COLUMN_MIN_TEMP + ", "
+                + "MAX(" + max + ")" + scale + " AS " + StatsEntry.COLUMN_MAX_TEMP + ", "
+                + "SUM((" + min + " + " + max + ") / 2.0 * " + days + ") / SUM(" + days + ")"
+                + scale + " AS " + StatsEntry.COLUMN_AVERAGE_TEMP + ", "
+                + "IFNULL(SUM(CASE WHEN " + WeatherEntry.COLUMN_WEATHER_ID
+                + " BETWEEN " + StatsEntry.MIN_PRECIPITATION_ID
+                + " AND " + StatsEntry.MAX_PRECIPITATION_ID
+                + " THEN " + days + " ELSE 0 END), 0)"
+                + " AS " + StatsEntry.COLUMN_PRECIPITATION_DAYS
+                + " FROM (" + buildDays(db, fromDate, toDate, args) + ")";
+
+        return db.rawQuery(sql, args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * @param db       The weather database
+     * @param fromDate Normalized date of the first day to include, or null for no limit
+     * @param toDate   Normalized date of the last day to include, or null for no limit
+     * @return A row per weather id with the days it was seen, most frequent first
+     */
+    static Cursor queryConditions(SQLiteDatabase db, Long fromDate, Long toDate) {
+        List<String> args = new ArrayList<>();
+
+        String sql = "SELECT "
+                + WeatherEntry.COLUMN_WEATHER_ID + " AS " + StatsEntry.COLUMN_WEATHER_ID + ", "
+                + "SUM(" + ArchiveEntry.COLUMN_SAMPLE_DAYS + ") AS " + StatsEntry.COLUMN_DAYS
+                + " FROM (" + buildDays(db, fromDate, toDate, args) + ")"
+                + " GROUP BY " + WeatherEntry.COLUMN_WEATHER_ID
+                + " ORDER BY " + StatsEntry.COLUMN_DAYS + " DESC, "
+                + WeatherEntry.COLUMN_WEATHER_ID;
+
+        return db.rawQuery(sql, args.toArray(new String[args.size()]));
+    }
+
+    /*
+     * Builds a query for the days in range from the weather table and the archive, as date,
+     * weather id, low, high and the number of days each row stands for. Its arguments are added
+     * to args.
+     */
+    private static String buildDays(SQLiteDatabase db, Long fromDate, Long toDate,
+                                    List<String> args) {
+        StringBuilder where = new StringBuilder("1");
+        List<String> rangeArgs = new ArrayList<>();
+        if (fromDate != null) {
+            where.append(" AND ").append(WeatherEntry.COLUMN_DATE).append(" >= ?");
+            rangeArgs.add(Long.toString(fromDate));
+        }
+        if (toDate != null) {
+            where.append(" AND ").append(WeatherEntry.COLUMN_DATE).append(" <= ?");
+            rangeArgs.add(Long.toString(toDate));
+        }
+
+        String columns = WeatherEntry.COLUMN_DATE + ", "
+                + WeatherEntry.COLUMN_WEATHER_ID + ", "
+                + WeatherEntry.COLUMN_MIN_TEMP + ", "
+                + WeatherEntry.COLUMN_MAX_TEMP + ", ";
+
+        /* Rows of the weather table are always a single day */
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(columns).append("1 AS ").append(ArchiveEntry.COLUMN_SAMPLE_DAYS)
+                .append(" FROM ").append(WeatherEntry.TABLE_NAME)
+                .append(" WHERE ").append(where);
+        args.addAll(rangeArgs);
+
+        for (String tableName : WeatherArchive.getTableNames(db, fromDate, toDate)) {
+            sql.append(" UNION ALL SELECT ")
+                    .append(columns).append(ArchiveEntry.COLUMN_SAMPLE_DAYS)
+                    .append(" FROM ").append(tableName)
+                    .append(" WHERE ").append(where);
+            args.addAll(rangeArgs);
+        }
+        return sql.toString();
+    }
+}
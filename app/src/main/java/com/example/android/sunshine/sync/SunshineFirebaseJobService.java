@@ -45,7 +45,16 @@ public class SunshineFirebaseJobService extends JobService {
             @Override
             protected Void doInBackground(Void... voids) {
                 Context context = getApplicationContext();
-                SunshineSyncTask.syncWeather(context);
+                String tag = jobParameters.getTag();
+                if (SunshineSyncUtils.SUNSHINE_SYNC_TODAY_TAG.equals(tag)) {
+                    SunshineSyncTask.syncToday(context);
+                } else if (SunshineSyncUtils.SUNSHINE_COMPACT_ARCHIVE_TAG.equals(tag)) {
+                    SunshineSyncTask.compactArchive(context);
+                } else if (SunshineSyncUtils.SUNSHINE_MAINTENANCE_TAG.equals(tag)) {
+                    SunshineSyncTask.maintainDatabase(context);
+                } else {
+                    SunshineSyncTask.syncWeather(context);
+                }
                 jobFinished(jobParameters, false);
                 return null;
             }
@@ -16,6 +16,7 @@
 package com.example.android.sunshine.sync;
 
 import android.app.IntentService;
+import android.content.Context;
 import android.content.Intent;
 
 /**
@@ -24,12 +25,31 @@ import android.content.Intent;
  */
 public class SunshineSyncIntentService extends IntentService {
 
+    /*
+     * Set when the user is waiting for the weather, such as after picking a new location, so that
+     * the sync goes ahead even if the circuit breaker is open. Syncs started for the watch or at
+     * startup leave it unset, and are kept off the network while the breaker is open.
+     */
+    static final String EXTRA_USER_REQUESTED = "user_requested";
+
     public SunshineSyncIntentService() {
         super("SunshineSyncIntentService");
     }
 
     @Override
     protected void onHandleIntent(Intent intent) {
-        SunshineSyncTask.syncWeather(this);
+        syncWeather(this, intent);
+    }
+
+    /**
+     * Performs the sync an intent from {@link SunshineSyncUtils#startImmediateSync} asks for.
+     *
+     * @param context Used to access utility methods and the ContentResolver
+     * @param intent  The intent the service was started with
+     */
+    static void syncWeather(Context context, Intent intent) {
+        boolean userRequested = intent != null
+                && intent.getBooleanExtra(EXTRA_USER_REQUESTED, false);
+        SunshineSyncTask.syncWeather(context, userRequested);
     }
 }
\ No newline at end of file
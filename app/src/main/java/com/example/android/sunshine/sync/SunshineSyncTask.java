@@ -15,44 +15,124 @@
  */
 package com.example.android.sunshine.sync;
 
-import android.content.ContentResolver;
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
 import android.text.format.DateUtils;
 import android.util.Log;
 
+import com.example.android.sunshine.core.CircuitBreaker;
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.utilities.NetworkUtils;
 import com.example.android.sunshine.utilities.NotificationUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
 import com.google.android.gms.wearable.PutDataMapRequest;
 
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class SunshineSyncTask {
 
+    private static final String TAG = SunshineSyncTask.class.getSimpleName();
+
+    /*
+     * After this many failed syncs in a row, stop asking the weather server for a while. The first
+     * time, we wait 15 minutes before trying again; each further failure doubles that, up to half a
+     * day. Until then, syncs return straight away and the app shows the weather it already has.
+     */
+    private static final int BREAKER_FAILURE_THRESHOLD = 3;
+    private static final long BREAKER_BASE_OPEN_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long BREAKER_MAX_OPEN_MILLIS = TimeUnit.HOURS.toMillis(12);
+
+    /* The wearable's name as a consumer of the change log, see WeatherContract.ChangeEntry */
+    private static final String WEARABLE_CONSUMER = "wearable";
+
+    /*
+     * The weather columns the wearable shows. The change log's sequence, date and change columns
+     * always come first.
+     */
+    private static final String[] WEARABLE_PROJECTION = {
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    private static final int INDEX_CHANGE_SEQUENCE = 0;
+    private static final int INDEX_CHANGE_DATE = 1;
+    private static final int INDEX_CHANGE_TYPE = 2;
+    private static final int INDEX_WEATHER_ID = 3;
+    private static final int INDEX_MAX_TEMP = 4;
+    private static final int INDEX_MIN_TEMP = 5;
+
+    /* Indices into WEARABLE_PROJECTION when today is read from the weather table itself */
+    private static final int INDEX_TODAY_WEATHER_ID = 0;
+    private static final int INDEX_TODAY_MAX_TEMP = 1;
+    private static final int INDEX_TODAY_MIN_TEMP = 2;
 
     /**
      * Performs the network request for updated weather, parses the JSON from that request, and
      * inserts the new weather information into our ContentProvider. Will notify the user that new
      * weather has been loaded if the user hasn't been notified of the weather within the last day
      * AND they haven't disabled notifications in the preferences screen.
+     * <p>
+     * If the weather server has been failing, the circuit breaker may skip the request entirely,
+     * leaving the weather we already have in place without turning on the radio.
      *
      * @param context Used to access utility methods and the ContentResolver
      */
-    synchronized public static void syncWeather(Context context) {
+    public static void syncWeather(Context context) {
+        syncWeather(context, false);
+    }
+
+    /**
+     * Like {@link #syncWeather(Context)}, but when the user is waiting for the weather, such as
+     * after picking a new location, the request is made even if the circuit breaker is open. Its
+     * outcome still counts: a success closes the breaker, a failure leaves it open.
+     * <p>
+     * Without a network, no request is made whoever asked, and the breaker is left alone.
+     *
+     * @param context       Used to access utility methods and the ContentResolver
+     * @param userRequested Whether the user is waiting for this sync
+     */
+    synchronized public static void syncWeather(Context context, boolean userRequested) {
+
+        if (!NetworkUtils.isConnected(context)) {
+            Log.d(TAG, "No network, keeping cached weather");
+            return;
+        }
 
+        CircuitBreaker breaker = loadCircuitBreaker(context);
+        if (!breaker.allowRequest(System.currentTimeMillis())) {
+            if (!userRequested) {
+                Log.d(TAG, "Weather server circuit breaker is open, keeping cached weather");
+                return;
+            }
+            Log.d(TAG, "Weather server circuit breaker is open, but the user is waiting");
+        }
+
+        /*
+         * The forecast already stored belongs to this location unless the user has picked a new
+         * one since the last sync. Read it before fetching, as parsing updates the coordinates.
+         */
+        String location = SunshinePreferences.getPreferredWeatherLocation(context);
+        boolean sameLocation = location.equals(SunshinePreferences.getForecastLocation(context));
+
+        /* Fewer days on metered or roaming networks */
+        int dayCount = NetworkUtils.getForecastDayCount(context);
+
+        boolean fetched = false;
         try {
             /*
-             * The getUrl method will return the URL that we need to get the forecast JSON for the
-             * weather. It will decide whether to create a URL based off of the latitude and
-             * longitude or off of a simple location as a String.
+             * getForecastJson builds the URL for the user's location, based off of the latitude
+             * and longitude or off of a simple location as a String, and retrieves the JSON from
+             * whichever weather server answers first.
              */
-            URL weatherRequestUrl = NetworkUtils.getUrl(context);
-
-            /* Use the URL to retrieve the JSON */
-            String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
+            String jsonWeatherResponse = NetworkUtils.getForecastJson(context, dayCount);
 
             /* Parse the JSON into a list of weather values */
             ContentValues[] weatherValues = OpenWeatherJsonUtils
@@ -65,19 +145,61 @@ public class SunshineSyncTask {
              * there isn't any to insert.
              */
             if (weatherValues != null && weatherValues.length != 0) {
-                /* Get a handle on the ContentResolver to delete and insert data */
-                ContentResolver sunshineContentResolver = context.getContentResolver();
+                /* The server did its part; anything that goes wrong from here on is ours */
+                fetched = true;
 
-                /* Delete old weather data because we don't need to keep multiple days' data */
-                sunshineContentResolver.delete(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        null,
-                        null);
+                /*
+                 * The stale days go and the new ones come in as one batch, in one transaction, so
+                 * the list is re-queried once, never sees the table half updated, and keeps the
+                 * old forecast if anything fails.
+                 */
+                ArrayList<ContentProviderOperation> operations = new ArrayList<>();
 
-                /* Insert our new weather data into Sunshine's ContentProvider */
-                sunshineContentResolver.bulkInsert(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherValues);
+                if (sameLocation) {
+                    /*
+                     * Move the days before the new forecast starts into the archive, so the
+                     * weather table only holds the forecast and history is kept for trends. Days
+                     * after a short forecast ends are kept: they are older than the rest, but
+                     * better than nothing until we fetch them again.
+                     */
+                    long firstNewDay = weatherValues[0]
+                            .getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+                    operations.add(ContentProviderOperation
+                            .newDelete(WeatherContract.WeatherEntry.buildArchivingUri())
+                            .withSelection(WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                                    new String[]{Long.toString(firstNewDay)})
+                            .build());
+                } else {
+                    /*
+                     * A different place: none of the stored weather applies any more. What is
+                     * already archived stays, as a record of the weather wherever the user was.
+                     */
+                    operations.add(ContentProviderOperation
+                            .newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                            .build());
+                }
+
+                /*
+                 * Insert our new weather data into Sunshine's ContentProvider. The date column is
+                 * unique with ON CONFLICT REPLACE, so fresh days replace the ones we already have.
+                 */
+                for (ContentValues dayValues : weatherValues) {
+                    operations.add(ContentProviderOperation
+                            .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                            .withValues(dayValues)
+                            .build());
+                }
+                context.getContentResolver().applyBatch(
+                        WeatherContract.CONTENT_AUTHORITY, operations);
+                SunshinePreferences.setForecastLocation(context, location);
+
+                /* So the list can show the new forecast the moment the app is next started */
+                ForecastSnapshot.write(context);
+
+                /* Fill in the rest of the forecast once we're on Wi-Fi or similar */
+                if (dayCount < NetworkUtils.FULL_FORECAST_DAYS) {
+                    SunshineSyncUtils.scheduleForecastExtension(context);
+                }
 
                 /*
                  * Finally, after we insert data into the ContentProvider, determine whether or not
@@ -107,38 +229,254 @@ public class SunshineSyncTask {
                     NotificationUtils.notifyUserOfNewWeather(context);
                 }
 
-                //send the weather info to the wearable
+                /* Send today's weather to the wearable, if it changed */
+                sendChangesToWearable(context);
+
+            /* If the code reaches this point, we have successfully performed our sync */
+
+            }
+
+        } catch (Exception e) {
+            /* Server probably invalid */
+            e.printStackTrace();
+        }
+
+        recordOutcome(context, breaker, fetched);
+    }
 
-                //todays values
-                ContentValues currentWeather = weatherValues[0];
+    /**
+     * Refreshes only today's weather, which changes far more often than the rest of the forecast.
+     * Asks the server for a single day, parses just that day and replaces just today's row, then
+     * updates the wearable. Notifications are left to the full sync.
+     * <p>
+     * If the user has picked a new location since the last full sync, the stored forecast is for
+     * the wrong place, so this does a full sync instead.
+     *
+     * @param context Used to access utility methods and the ContentResolver
+     */
+    synchronized public static void syncToday(Context context) {
 
-                int id= (int)currentWeather.get(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID);
-                double max = (double)currentWeather.get(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
-                double min = (double)currentWeather.get(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP);
+        String location = SunshinePreferences.getPreferredWeatherLocation(context);
+        if (!location.equals(SunshinePreferences.getForecastLocation(context))) {
+            syncWeather(context);
+            return;
+        }
 
-                PutDataMapRequest putDataMapRequest=PutDataMapRequest.create(("/wearable_data"));
+        if (!NetworkUtils.isConnected(context)) {
+            Log.d(TAG, "No network, keeping cached weather");
+            return;
+        }
 
-                putDataMapRequest.getDataMap().putDouble("wearable_max", max);
-                putDataMapRequest.getDataMap().putDouble("wearable_min", min);
-                putDataMapRequest.getDataMap().putInt("wearable_id", id);
-                putDataMapRequest.getDataMap().putLong("wearable_time", System.currentTimeMillis());
+        CircuitBreaker breaker = loadCircuitBreaker(context);
+        if (!breaker.allowRequest(System.currentTimeMillis())) {
+            Log.d(TAG, "Weather server circuit breaker is open, keeping cached weather");
+            return;
+        }
 
-                Log.e("SunshineSyncTask", "max temp is " + max +
-                        "\nmin temp is " + min +
-                        "\nweather id is " + id);
+        boolean fetched = false;
+        try {
+            /* One day is all we need, and all we parse */
+            String jsonWeatherResponse = NetworkUtils.getForecastJson(context, 1);
+            ContentValues todayValues = OpenWeatherJsonUtils
+                    .getTodayContentValuesFromJson(jsonWeatherResponse);
 
-                WearableSyncSender sender = WearableSyncSender.getInstance();
-                sender.setupClient(context, putDataMapRequest);
-                sender.sendDataToWearable();
+            if (todayValues != null) {
+                fetched = true;
 
-            /* If the code reaches this point, we have successfully performed our sync */
+                /* The date column is unique with ON CONFLICT REPLACE, so this replaces today */
+                context.getContentResolver().bulkInsert(
+                        WeatherContract.WeatherEntry.CONTENT_URI,
+                        new ContentValues[]{todayValues});
 
+                ForecastSnapshot.write(context);
+                sendChangesToWearable(context);
             }
 
         } catch (Exception e) {
             /* Server probably invalid */
             e.printStackTrace();
         }
+
+        recordOutcome(context, breaker, fetched);
+    }
+
+    /**
+     * Applies the retention policy from SunshinePreferences to the weather archive: drops history
+     * older than the retention period and down-samples history older than the full resolution
+     * period to a row per week. The space freed is given back by {@link #maintainDatabase}.
+     *
+     * @param context Used to access SharedPreferences and the ContentResolver
+     */
+    public static void compactArchive(Context context) {
+        Uri compactionUri = WeatherContract.ArchiveEntry.buildCompactionUri(
+                SunshinePreferences.getArchiveRetentionMonths(context),
+                SunshinePreferences.getArchiveFullResolutionMonths(context));
+        int rowsRemoved = context.getContentResolver().delete(compactionUri, null, null);
+        Log.d(TAG, "Compacted weather archive, " + rowsRemoved + " rows removed");
+    }
+
+    /**
+     * Has the weather database refresh its query planner's statistics, give free pages back and
+     * checkpoint its write-ahead log, whichever of these are due.
+     *
+     * @param context Used to access the ContentResolver
+     */
+    public static void maintainDatabase(Context context) {
+        int tasks = context.getContentResolver().update(
+                WeatherContract.DiagnosticsEntry.MAINTENANCE_URI, new ContentValues(), null, null);
+        Log.d(TAG, "Maintained weather database, " + tasks + " tasks run");
+    }
+
+    /**
+     * Reads the days that changed since the wearable was last updated from the change log, and
+     * sends today's weather to the wearable if today is one of them. A sync that brings the same
+     * weather for today doesn't wake the wearable up.
+     * <p>
+     * After midnight the wearable still shows yesterday, and today's weather may be just what was
+     * stored for it the day before, in which case nothing is logged. So today is also sent when
+     * it isn't the day last sent, whether or not it changed.
+     *
+     * @param context Used to read the change log and connect to the wearable
+     */
+    private static void sendChangesToWearable(Context context) {
+        long checkpoint = SunshinePreferences.getChangeCheckpoint(context, WEARABLE_CONSUMER);
+        Cursor changes = context.getContentResolver().query(
+                WeatherContract.ChangeEntry.buildChangesUri(checkpoint),
+                WEARABLE_PROJECTION,
+                null,
+                null,
+                null);
+        if (changes == null) {
+            return;
+        }
+
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+        boolean todaySent = false;
+        try {
+            while (changes.moveToNext()) {
+                checkpoint = changes.getLong(INDEX_CHANGE_SEQUENCE);
+                if (changes.getLong(INDEX_CHANGE_DATE) == today
+                        && changes.getInt(INDEX_CHANGE_TYPE)
+                        == WeatherContract.ChangeEntry.CHANGE_UPDATED) {
+                    todaySent = true;
+                    sendTodayToWearable(context,
+                            changes.getInt(INDEX_WEATHER_ID),
+                            changes.getDouble(INDEX_MAX_TEMP),
+                            changes.getDouble(INDEX_MIN_TEMP));
+                }
+            }
+        } finally {
+            changes.close();
+        }
+        SunshinePreferences.setChangeCheckpoint(context, WEARABLE_CONSUMER, checkpoint);
+
+        if (!todaySent
+                && SunshinePreferences.getChangeSentDate(context, WEARABLE_CONSUMER) != today) {
+            todaySent = sendStoredTodayToWearable(context, today);
+        }
+
+        if (todaySent) {
+            SunshinePreferences.setChangeSentDate(context, WEARABLE_CONSUMER, today);
+        } else {
+            Log.d(TAG, "Today's weather is unchanged, not updating the wearable");
+        }
+    }
+
+    /*
+     * Sends today's weather as stored to the wearable, for a new day whose weather didn't change.
+     * Returns whether there was a row for today to send.
+     */
+    private static boolean sendStoredTodayToWearable(Context context, long today) {
+        Cursor todayCursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherUriWithDate(today),
+                WEARABLE_PROJECTION,
+                null,
+                null,
+                null);
+        if (todayCursor == null) {
+            return false;
+        }
+        try {
+            if (!todayCursor.moveToFirst()) {
+                return false;
+            }
+            sendTodayToWearable(context,
+                    todayCursor.getInt(INDEX_TODAY_WEATHER_ID),
+                    todayCursor.getDouble(INDEX_TODAY_MAX_TEMP),
+                    todayCursor.getDouble(INDEX_TODAY_MIN_TEMP));
+            return true;
+        } finally {
+            todayCursor.close();
+        }
+    }
+
+    /**
+     * Sends today's high, low and condition to the wearable.
+     *
+     * @param context Used to connect to the wearable
+     * @param id      Today's weather condition id
+     * @param max     Today's high
+     * @param min     Today's low
+     */
+    private static void sendTodayToWearable(Context context, int id, double max, double min) {
+
+        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(("/wearable_data"));
+
+        putDataMapRequest.getDataMap().putDouble("wearable_max", max);
+        putDataMapRequest.getDataMap().putDouble("wearable_min", min);
+        putDataMapRequest.getDataMap().putInt("wearable_id", id);
+        putDataMapRequest.getDataMap().putLong("wearable_time", System.currentTimeMillis());
+
+        Log.v(TAG, "max temp is " + max +
+                "\nmin temp is " + min +
+                "\nweather id is " + id);
+
+        WearableSyncSender sender = WearableSyncSender.getInstance();
+        sender.setupClient(context, putDataMapRequest);
+        sender.sendDataToWearable();
+    }
+
+    /*
+     * Tells the circuit breaker how the request went, and saves it. A request that failed because
+     * the network went away while it was made isn't the server's fault, so it isn't counted.
+     */
+    private static void recordOutcome(Context context, CircuitBreaker breaker, boolean fetched) {
+        if (fetched) {
+            breaker.recordSuccess(System.currentTimeMillis());
+        } else if (NetworkUtils.isConnected(context)) {
+            breaker.recordFailure(System.currentTimeMillis());
+        } else {
+            Log.d(TAG, "Lost the network during the request, not counting it against the server");
+            return;
+        }
+        SunshinePreferences.saveCircuitBreaker(context, breaker);
+    }
+
+    /**
+     * Creates the weather server's circuit breaker in the state it was last saved in, recording
+     * every change of state it goes through in SunshinePreferences.
+     *
+     * @param context Used to access SharedPreferences
+     * @return The circuit breaker
+     */
+    private static CircuitBreaker loadCircuitBreaker(final Context context) {
+        final CircuitBreaker breaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD,
+                BREAKER_BASE_OPEN_MILLIS, BREAKER_MAX_OPEN_MILLIS);
+        SunshinePreferences.restoreCircuitBreaker(context, breaker);
+
+        breaker.setListener(new CircuitBreaker.Listener() {
+            @Override
+            public void onStateChanged(int fromState, int toState, long nowMillis) {
+                String transition = nowMillis + " "
+                        + CircuitBreaker.getStateName(fromState) + " -> "
+                        + CircuitBreaker.getStateName(toState)
+                        + " after " + breaker.getConsecutiveFailures() + " failures";
+                Log.i(TAG, "Weather server circuit breaker: " + transition);
+                SunshinePreferences.addCircuitBreakerTransition(context, transition);
+                SunshinePreferences.saveCircuitBreaker(context, breaker);
+            }
+        });
+        return breaker;
     }
 
 
@@ -18,10 +18,10 @@ package com.example.android.sunshine.sync;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.net.Uri;
 import android.support.annotation.NonNull;
 
 import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineExecutors;
 import com.firebase.jobdispatcher.Constraint;
 import com.firebase.jobdispatcher.Driver;
 import com.firebase.jobdispatcher.FirebaseJobDispatcher;
@@ -42,9 +42,41 @@ public class SunshineSyncUtils {
     private static final int SYNC_INTERVAL_SECONDS = (int) TimeUnit.HOURS.toSeconds(SYNC_INTERVAL_HOURS);
     private static final int SYNC_FLEXTIME_SECONDS = SYNC_INTERVAL_SECONDS / 3;
 
+    /*
+     * Today's weather is refreshed on its own, much more often. Only one day is fetched and only
+     * one row written, so this costs a fraction of a full sync.
+     */
+    private static final int TODAY_SYNC_INTERVAL_MINUTES = 45;
+    private static final int TODAY_SYNC_INTERVAL_SECONDS =
+            (int) TimeUnit.MINUTES.toSeconds(TODAY_SYNC_INTERVAL_MINUTES);
+    private static final int TODAY_SYNC_FLEXTIME_SECONDS = TODAY_SYNC_INTERVAL_SECONDS / 3;
+
+    /* The weather archive is compacted about once a day, while the device is charging */
+    private static final int COMPACTION_INTERVAL_SECONDS = (int) TimeUnit.DAYS.toSeconds(1);
+    private static final int COMPACTION_FLEXTIME_SECONDS = (int) TimeUnit.HOURS.toSeconds(6);
+
+    /* So is the database's own maintenance, which does nothing on most days */
+    private static final int MAINTENANCE_INTERVAL_SECONDS = (int) TimeUnit.DAYS.toSeconds(1);
+    private static final int MAINTENANCE_FLEXTIME_SECONDS = (int) TimeUnit.HOURS.toSeconds(6);
+
     private static boolean sInitialized;
 
-    private static final String SUNSHINE_SYNC_TAG = "sunshine-sync";
+    static final String SUNSHINE_SYNC_TAG = "sunshine-sync";
+
+    /* Tag of the job that refreshes only today's weather */
+    static final String SUNSHINE_SYNC_TODAY_TAG = "sunshine-sync-today";
+
+    /*
+     * Tag of the one-off job that fetches the full forecast after a short one was fetched over a
+     * metered or roaming network.
+     */
+    private static final String SUNSHINE_EXTEND_TAG = "sunshine-extend";
+
+    /* Tag of the job that applies the retention policy to the weather archive */
+    static final String SUNSHINE_COMPACT_ARCHIVE_TAG = "sunshine-compact-archive";
+
+    /* Tag of the job that analyzes, vacuums and checkpoints the weather database */
+    static final String SUNSHINE_MAINTENANCE_TAG = "sunshine-maintenance";
 
     /**
      * Schedules a repeating sync of Sunshine's weather data using FirebaseJobDispatcher.
@@ -99,6 +131,119 @@ public class SunshineSyncUtils {
         /* Schedule the Job with the dispatcher */
         dispatcher.schedule(syncSunshineJob);
     }
+
+    /**
+     * Schedules a repeating refresh of just today's weather, alongside the full sync. The job
+     * service tells the two apart by their tags.
+     *
+     * @param context Context used to create the GooglePlayDriver that powers the
+     *                FirebaseJobDispatcher
+     */
+    static void scheduleTodaySync(@NonNull final Context context) {
+
+        Driver driver = new GooglePlayDriver(context);
+        FirebaseJobDispatcher dispatcher = new FirebaseJobDispatcher(driver);
+
+        Job syncTodayJob = dispatcher.newJobBuilder()
+                .setService(SunshineFirebaseJobService.class)
+                .setTag(SUNSHINE_SYNC_TODAY_TAG)
+                /* A single day is small enough to fetch over any network */
+                .setConstraints(Constraint.ON_ANY_NETWORK)
+                .setLifetime(Lifetime.FOREVER)
+                .setRecurring(true)
+                .setTrigger(Trigger.executionWindow(
+                        TODAY_SYNC_INTERVAL_SECONDS,
+                        TODAY_SYNC_INTERVAL_SECONDS + TODAY_SYNC_FLEXTIME_SECONDS))
+                .setReplaceCurrent(true)
+                .build();
+
+        dispatcher.schedule(syncTodayJob);
+    }
+
+    /**
+     * Schedules a single sync for the next time the device is on an unmetered network, to fetch
+     * the days that a short forecast left out. Scheduling again replaces the pending job, so
+     * repeated short syncs still lead to a single full one.
+     *
+     * @param context Context used to create the GooglePlayDriver that powers the
+     *                FirebaseJobDispatcher
+     */
+    static void scheduleForecastExtension(@NonNull final Context context) {
+
+        Driver driver = new GooglePlayDriver(context);
+        FirebaseJobDispatcher dispatcher = new FirebaseJobDispatcher(driver);
+
+        Job extendForecastJob = dispatcher.newJobBuilder()
+                .setService(SunshineFirebaseJobService.class)
+                .setTag(SUNSHINE_EXTEND_TAG)
+                /* The whole point is to avoid paying for the extra days */
+                .setConstraints(Constraint.ON_UNMETERED_NETWORK)
+                /* If the device restarts, the next periodic sync will schedule it again */
+                .setLifetime(Lifetime.UNTIL_NEXT_BOOT)
+                .setRecurring(false)
+                /* As soon as we're on an unmetered network */
+                .setTrigger(Trigger.executionWindow(0, SYNC_FLEXTIME_SECONDS))
+                .setReplaceCurrent(true)
+                .build();
+
+        dispatcher.schedule(extendForecastJob);
+    }
+
+    /**
+     * Schedules a daily compaction of the weather archive. It only needs the database, so it
+     * waits for the device to be charging rather than for a network.
+     *
+     * @param context Context used to create the GooglePlayDriver that powers the
+     *                FirebaseJobDispatcher
+     */
+    static void scheduleArchiveCompaction(@NonNull final Context context) {
+
+        Driver driver = new GooglePlayDriver(context);
+        FirebaseJobDispatcher dispatcher = new FirebaseJobDispatcher(driver);
+
+        Job compactArchiveJob = dispatcher.newJobBuilder()
+                .setService(SunshineFirebaseJobService.class)
+                .setTag(SUNSHINE_COMPACT_ARCHIVE_TAG)
+                .setConstraints(Constraint.DEVICE_CHARGING)
+                .setLifetime(Lifetime.FOREVER)
+                .setRecurring(true)
+                .setTrigger(Trigger.executionWindow(
+                        COMPACTION_INTERVAL_SECONDS,
+                        COMPACTION_INTERVAL_SECONDS + COMPACTION_FLEXTIME_SECONDS))
+                .setReplaceCurrent(true)
+                .build();
+
+        dispatcher.schedule(compactArchiveJob);
+    }
+
+    /**
+     * Schedules daily maintenance of the weather database. Vacuuming rewrites pages and takes
+     * the database's lock for a moment, so, like compaction, it waits for the device to be
+     * charging, when the user is least likely to be looking at the forecast.
+     *
+     * @param context Context used to create the GooglePlayDriver that powers the
+     *                FirebaseJobDispatcher
+     */
+    static void scheduleDatabaseMaintenance(@NonNull final Context context) {
+
+        Driver driver = new GooglePlayDriver(context);
+        FirebaseJobDispatcher dispatcher = new FirebaseJobDispatcher(driver);
+
+        Job maintenanceJob = dispatcher.newJobBuilder()
+                .setService(SunshineFirebaseJobService.class)
+                .setTag(SUNSHINE_MAINTENANCE_TAG)
+                .setConstraints(Constraint.DEVICE_CHARGING)
+                .setLifetime(Lifetime.FOREVER)
+                .setRecurring(true)
+                .setTrigger(Trigger.executionWindow(
+                        MAINTENANCE_INTERVAL_SECONDS,
+                        MAINTENANCE_INTERVAL_SECONDS + MAINTENANCE_FLEXTIME_SECONDS))
+                .setReplaceCurrent(true)
+                .build();
+
+        dispatcher.schedule(maintenanceJob);
+    }
+
     /**
      * Creates periodic sync tasks and checks to see if an immediate sync is required. If an
      * immediate sync is required, this method will take care of making sure that sync occurs.
@@ -121,72 +266,91 @@ public class SunshineSyncUtils {
          * periodically.
          */
         scheduleFirebaseJobDispatcherSync(context);
+        scheduleTodaySync(context);
+        scheduleArchiveCompaction(context);
+        scheduleDatabaseMaintenance(context);
 
         /*
          * We need to check to see if our ContentProvider has data to display in our forecast
          * list. However, performing a query on the main thread is a bad idea as this may
-         * cause our UI to lag. Therefore, we create a thread in which we will run the query
-         * to check the contents of our ContentProvider.
+         * cause our UI to lag. Therefore, we run the check on the background thread shared by
+         * the app's short database reads.
          */
-        Thread checkForEmpty = new Thread(new Runnable() {
+        SunshineExecutors.getDiskExecutor().execute(new Runnable() {
             @Override
             public void run() {
-
-                /* URI for every row of weather data in our weather table*/
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-
-                /*
-                 * Since this query is going to be used only as a check to see if we have any
-                 * data (rather than to display data), we just need to PROJECT the ID of each
-                 * row. In our queries where we display data, we need to PROJECT more columns
-                 * to determine what weather details need to be displayed.
-                 */
-                String[] projectionColumns = {WeatherContract.WeatherEntry._ID};
-                String selectionStatement = WeatherContract.WeatherEntry
-                        .getSqlSelectForTodayOnwards();
-
-                /* Here, we perform the query to check to see if we have any weather data */
-                Cursor cursor = context.getContentResolver().query(
-                        forecastQueryUri,
-                        projectionColumns,
-                        selectionStatement,
-                        null,
-                        null);
-                /*
-                 * A Cursor object can be null for various different reasons. A few are
-                 * listed below.
-                 *
-                 *   1) Invalid URI
-                 *   2) A certain ContentProvider's query method returns null
-                 *   3) A RemoteException was thrown.
-                 *
-                 * Bottom line, it is generally a good idea to check if a Cursor returned
-                 * from a ContentResolver is null.
-                 *
-                 * If the Cursor was null OR if it was empty, we need to sync immediately to
-                 * be able to display data to the user.
-                 */
-                if (null == cursor || cursor.getCount() == 0) {
+                if (!hasWeatherFromToday(context)) {
                     startImmediateSync(context);
                 }
-
-                /* Make sure to close the Cursor to avoid memory leaks! */
-                cursor.close();
             }
         });
+    }
 
-        /* Finally, once the thread is prepared, fire it off to perform our checks. */
-        checkForEmpty.start();
+    /**
+     * Checks whether our ContentProvider has weather from today onwards to display. Rather than
+     * querying for the days and counting them, this asks the provider's exists URI, which stops
+     * at the first day it finds.
+     *
+     * @param context Used to access the ContentResolver
+     * @return Whether there is weather from today onwards. False if the provider couldn't be
+     * asked, so that a sync fetches some.
+     */
+    private static boolean hasWeatherFromToday(Context context) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildExistsUriForTodayOnwards(),
+                null,
+                null,
+                null,
+                null);
+        /*
+         * A Cursor object can be null for various different reasons, such as an invalid URI or
+         * a RemoteException. Bottom line, it is generally a good idea to check if a Cursor
+         * returned from a ContentResolver is null.
+         */
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) != 0;
+        } finally {
+            /* Make sure to close the Cursor to avoid memory leaks! */
+            cursor.close();
+        }
     }
 
     /**
      * Helper method to perform a sync immediately using an IntentService for asynchronous
-     * execution.
+     * execution. If the weather server has been failing, the circuit breaker keeps the sync off
+     * the network.
      *
      * @param context The Context used to start the IntentService for the sync.
      */
     public static void startImmediateSync(@NonNull final Context context) {
+        startImmediateSync(context, false);
+    }
+
+    /**
+     * Like {@link #startImmediateSync(Context)}, but when the user is waiting for the weather,
+     * such as after picking a new location, the sync goes ahead even if the circuit breaker is
+     * open.
+     *
+     * @param context       The Context used to start the IntentService for the sync.
+     * @param userRequested Whether the user is waiting for this sync
+     */
+    public static void startImmediateSync(@NonNull final Context context,
+                                          boolean userRequested) {
+        context.startService(buildImmediateSyncIntent(context, userRequested));
+    }
+
+    /**
+     * @param context       The Context used to build the intent
+     * @param userRequested Whether the user is waiting for this sync
+     * @return The intent that starts {@link SunshineSyncIntentService} for an immediate sync
+     */
+    static Intent buildImmediateSyncIntent(Context context, boolean userRequested) {
         Intent intentToSyncImmediately = new Intent(context, SunshineSyncIntentService.class);
-        context.startService(intentToSyncImmediately);
+        intentToSyncImmediately.putExtra(SunshineSyncIntentService.EXTRA_USER_REQUESTED,
+                userRequested);
+        return intentToSyncImmediately;
     }
 }
\ No newline at end of file
@@ -1,44 +1,137 @@
 package com.example.android.sunshine.sync;
 
-import com.google.android.gms.wearable.DataEvent;
-import com.google.android.gms.wearable.DataEventBuffer;
-import com.google.android.gms.wearable.DataItem;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Wearable;
 import com.google.android.gms.wearable.WearableListenerService;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Created by scott on 2/11/2017.
+ *
+ * Answers data requests from the watch face. Requests arrive as messages on
+ * {@link #DATA_REQUEST_PATH} carrying a request id; we reply to the sending node only, on
+ * {@link #DATA_RESPONSE_PATH}, with today's forecast as it is cached in our ContentProvider. If
+ * there is nothing cached yet, we kick off a sync instead and let the regular /wearable_data push
+ * deliver the result.
  */
-
 public class WearableRequestForDataListenerService extends WearableListenerService {
-//    private static final String LOG_TAG = "DataListenerService";
+    private static final String LOG_TAG = "DataListenerService";
+
+    public static final String DATA_REQUEST_PATH = "/data_request";
+    public static final String DATA_RESPONSE_PATH = "/data_response";
+
+    public static final String KEY_REQUEST_ID = "data_request_id";
+
+    /* How long we are willing to block this service's worker thread talking to Play Services */
+    private static final long CONNECTION_TIMEOUT_SECONDS = 5;
+
+    /*
+     * The columns of today's weather that the watch displays. The indices below must match the
+     * order of this projection.
+     */
+    private static final String[] WEARABLE_PROJECTION = {
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+    };
 
+    private static final int INDEX_WEATHER_ID = 0;
+    private static final int INDEX_MAX_TEMP = 1;
+    private static final int INDEX_MIN_TEMP = 2;
 
     @Override
-    public void onDataChanged(DataEventBuffer dataEventBuffer) {
-        for (DataEvent event : dataEventBuffer) {
-            if (event.getType() == DataEvent.TYPE_CHANGED) {
-                DataItem item = event.getDataItem();
-                DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
-                String path = item.getUri().getPath();
-                if (path.equals("/data_request")) {
-                    for (String key : dataMap.keySet()) {
-                        if (!dataMap.containsKey(key)) {
-                            continue;
-                        }
-                        switch (key) {
-
-                            case "data_request":
-
-                                SunshineSyncUtils.startImmediateSync(getApplicationContext());
-                                break;
-
-                        }
-                    }
-
-                }
+    public void onMessageReceived(MessageEvent messageEvent) {
+        if (!DATA_REQUEST_PATH.equals(messageEvent.getPath())) {
+            return;
+        }
+
+        DataMap request = DataMap.fromByteArray(messageEvent.getData());
+        long requestId = request.getLong(KEY_REQUEST_ID);
+
+        DataMap response = readCachedForecast();
+        if (response == null) {
+            /* Nothing cached yet. The sync will push /wearable_data to the watch when it's done. */
+            SunshineSyncUtils.startImmediateSync(getApplicationContext());
+            return;
+        }
+        response.putLong(KEY_REQUEST_ID, requestId);
+
+        sendResponse(messageEvent.getSourceNodeId(), response);
+    }
+
+    /**
+     * Reads today's weather from the ContentProvider and packages it using the same keys that
+     * {@link SunshineSyncTask} uses for the /wearable_data DataItem.
+     *
+     * @return today's forecast, or null if we don't have a row for today
+     */
+    private DataMap readCachedForecast() {
+        Uri todaysWeatherUri = WeatherContract.WeatherEntry
+                .buildWeatherUriWithDate(SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
+
+        Cursor cursor = getContentResolver().query(
+                todaysWeatherUri,
+                WEARABLE_PROJECTION,
+                null,
+                null,
+                null);
+
+        if (cursor == null) {
+            return null;
+        }
+
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+
+            DataMap dataMap = new DataMap();
+            dataMap.putInt("wearable_id", cursor.getInt(INDEX_WEATHER_ID));
+            dataMap.putDouble("wearable_max", cursor.getDouble(INDEX_MAX_TEMP));
+            dataMap.putDouble("wearable_min", cursor.getDouble(INDEX_MIN_TEMP));
+            dataMap.putLong("wearable_time", System.currentTimeMillis());
+            return dataMap;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Sends the response back to the node that asked for it. WearableListenerService callbacks
+     * run on a worker thread, so it is fine to block here.
+     */
+    private void sendResponse(String nodeId, DataMap response) {
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(this)
+                .addApi(Wearable.API)
+                .build();
+
+        ConnectionResult connectionResult =
+                googleApiClient.blockingConnect(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!connectionResult.isSuccess()) {
+            Log.d(LOG_TAG, "Connection failed " + connectionResult);
+            return;
+        }
+
+        try {
+            MessageApi.SendMessageResult result = Wearable.MessageApi
+                    .sendMessage(googleApiClient, nodeId, DATA_RESPONSE_PATH, response.toByteArray())
+                    .await(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!result.getStatus().isSuccess()) {
+                Log.d(LOG_TAG, "Response failed " + result.getStatus());
             }
+        } finally {
+            googleApiClient.disconnect();
         }
     }
 }
@@ -2,37 +2,32 @@ package com.example.android.sunshine.utilities;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.os.SystemClock;
 
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.core.SyntheticForecasts;
 import com.example.android.sunshine.data.WeatherContract;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import static com.example.android.sunshine.data.WeatherContract.WeatherEntry;
-
+/**
+ * Fills Sunshine's ContentProvider with synthetic weather, for trying out the UI and for load
+ * testing the database, the provider and everything that reads from them.
+ * <p>
+ * The data comes from {@link SyntheticForecasts}, so it is deterministic: the same seed and
+ * location always produce the same rows. The weather table holds a single location, so loading
+ * another location replaces the rows for any dates both cover.
+ */
 public class FakeDataUtils {
 
-    private static int [] weatherIDs = {200,300,500,711,900,962};
+    /* Seed used by insertFakeData, so the fake week looks the same on every run */
+    private static final long DEFAULT_SEED = 2016;
 
-    /**
-     * Creates a single ContentValues object with random weather data for the provided date
-     * @param date a normalized date
-     * @return ContentValues object filled with random weather data
-     */
-    private static ContentValues createTestWeatherContentValues(long date) {
-        ContentValues testWeatherValues = new ContentValues();
-        testWeatherValues.put(WeatherEntry.COLUMN_DATE, date);
-        testWeatherValues.put(WeatherEntry.COLUMN_DEGREES, Math.random()*2);
-        testWeatherValues.put(WeatherEntry.COLUMN_HUMIDITY, Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_PRESSURE, 870 + Math.random()*100);
-        int maxTemp = (int)(Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
-        testWeatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, maxTemp - (int) (Math.random()*10));
-        testWeatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, Math.random()*10);
-        testWeatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherIDs[(int)(Math.random()*10)%5]);
-        return testWeatherValues;
-    }
+    /* Number of days insertFakeData inserts, starting today */
+    private static final int FAKE_DAYS = 7;
+
+    /* Passed as batchesPerSecond to insert as fast as the provider allows */
+    public static final int UNTHROTTLED = 0;
 
     /**
      * Creates random weather data for 7 days starting today
@@ -41,14 +36,70 @@ public class FakeDataUtils {
     public static void insertFakeData(Context context) {
         //Get today's normalized date
         long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
-        List<ContentValues> fakeValues = new ArrayList<ContentValues>();
-        //loop over 7 days starting today onwards
-        for(int i=0; i<7; i++) {
-            fakeValues.add(FakeDataUtils.createTestWeatherContentValues(today + TimeUnit.DAYS.toMillis(i)));
-        }
+        Forecast forecast = new SyntheticForecasts(DEFAULT_SEED).generate(0, today, FAKE_DAYS);
         // Bulk Insert our new weather data into Sunshine's Database
         context.getContentResolver().bulkInsert(
                 WeatherContract.WeatherEntry.CONTENT_URI,
-                fakeValues.toArray(new ContentValues[7]));
+                toContentValues(forecast.days, 0, forecast.days.length));
+    }
+
+    /**
+     * Loads days of synthetic history, ending today, through the provider's bulkInsert. Rows are
+     * inserted in batches of batchSize, at most batchesPerSecond batches per second, so tests can
+     * hold the provider at a steady write rate while they measure reads. This blocks for as long
+     * as the load takes, so never call it on the main thread.
+     *
+     * @param context          Used to access the ContentResolver
+     * @param seed             Seed for the generator; equal seeds give equal rows
+     * @param location         Which synthetic location to load, from 0
+     * @param dayCount         How many days to load, e.g. 3650 for ten years
+     * @param batchSize        Rows per bulkInsert call
+     * @param batchesPerSecond Maximum bulkInsert calls per second, or {@link #UNTHROTTLED}
+     * @return The number of rows the provider reported inserting, which is less than dayCount if
+     * the thread was interrupted
+     */
+    public static int insertSyntheticHistory(Context context, long seed, int location,
+                                             int dayCount, int batchSize, int batchesPerSecond) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        long firstDay = today - (dayCount - 1) * SunshineDateUtils.DAY_IN_MILLIS;
+        Forecast history = new SyntheticForecasts(seed).generate(location, firstDay, dayCount);
+
+        long batchIntervalMillis = batchesPerSecond == UNTHROTTLED
+                ? 0
+                : TimeUnit.SECONDS.toMillis(1) / batchesPerSecond;
+
+        int rowsInserted = 0;
+        for (int from = 0; from < dayCount; from += batchSize) {
+            long batchStart = SystemClock.elapsedRealtime();
+
+            int to = Math.min(from + batchSize, dayCount);
+            rowsInserted += context.getContentResolver().bulkInsert(
+                    WeatherContract.WeatherEntry.CONTENT_URI,
+                    toContentValues(history.days, from, to));
+
+            long remainingMillis = batchIntervalMillis
+                    - (SystemClock.elapsedRealtime() - batchStart);
+            if (remainingMillis > 0 && to < dayCount) {
+                try {
+                    Thread.sleep(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return rowsInserted;
+    }
+
+    private static ContentValues[] toContentValues(Forecast.Day[] days, int from, int to) {
+        ContentValues[] values = new ContentValues[to - from];
+        for (int i = from; i < to; i++) {
+            values[i - from] = OpenWeatherJsonUtils.toContentValues(days[i]);
+        }
+        return values;
     }
 }
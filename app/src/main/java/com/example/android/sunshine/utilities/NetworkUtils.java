@@ -16,17 +16,26 @@
 package com.example.android.sunshine.utilities;
 
 import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
 import android.net.Uri;
+import android.support.v4.net.ConnectivityManagerCompat;
 import android.util.Log;
 
+import com.example.android.sunshine.core.EndpointSelector;
 import com.example.android.sunshine.data.SunshinePreferences;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * These utilities will be used to communicate with the weather servers.
@@ -45,8 +54,9 @@ public final class NetworkUtils {
      * completely random weather data. This is incredibly useful for testing the robustness of your
      * application, as different weather JSON will provide edge cases for some of your methods.
      *
-     * If you'd prefer to test with the weather data that you will see in the videos on Udacity,
-     * you can do so by setting the FORECAST_BASE_URL to STATIC_WEATHER_URL below.
+     * Sunshine asks the dynamic server first. If it fails, or is slow compared to how it has been
+     * doing lately, the same request goes to the static server as well, which returns the weather
+     * data that you will see in the videos on Udacity. See EndpointSelector for the details.
      */
     private static final String DYNAMIC_WEATHER_URL =
             "https://andfun-weather.udacity.com/weather";
@@ -54,7 +64,31 @@ public final class NetworkUtils {
     private static final String STATIC_WEATHER_URL =
             "https://andfun-weather.udacity.com/staticweather";
 
-    private static final String FORECAST_BASE_URL = DYNAMIC_WEATHER_URL;
+    /* Send a second request once the first has taken longer than 95% of recent requests... */
+    private static final double HEDGE_PERCENTILE = 95;
+    /* ...but never sooner than half a second, and always after five seconds */
+    private static final long MIN_HEDGE_DELAY_MILLIS = 500;
+    private static final long MAX_HEDGE_DELAY_MILLIS = 5000;
+
+    /*
+     * Without timeouts, a server that accepts the connection and then never answers would hold
+     * the sync job until the system kills it.
+     */
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 20000;
+
+    private static volatile int sConnectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private static volatile int sReadTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    /* Runs the requests, hedged ones included, so they can race each other */
+    private static final ExecutorService sRequestExecutor = Executors.newCachedThreadPool();
+
+    /*
+     * Tests and benchmarks swap in their own endpoints, such as a local stand-in server, using
+     * setForecastBaseUrls. Volatile because the sync runs on a background thread.
+     */
+    private static volatile EndpointSelector sEndpointSelector =
+            newEndpointSelector(DYNAMIC_WEATHER_URL, STATIC_WEATHER_URL);
 
     /*
      * NOTE: These values only effect responses from OpenWeatherMap, NOT from the fake weather
@@ -67,8 +101,21 @@ public final class NetworkUtils {
     private static final String format = "json";
     /* The units we want our API to return */
     private static final String units = "metric";
-    /* The number of days we want our API to return */
-    private static final int numDays = 14;
+
+    /*
+     * The number of days we want our API to return. On Wi-Fi and other unmetered networks we ask
+     * for the full two weeks; on metered or roaming connections, where every byte may cost the
+     * user money, just today and the next two days. SunshineSyncTask merges the short forecast into
+     * the days we already have and fetches the rest the next time we're on an unmetered network.
+     */
+    public static final int FULL_FORECAST_DAYS = 14;
+    public static final int SHORT_FORECAST_DAYS = 3;
+
+    /* Set by tests to fix the number of days regardless of the network; 0 to decide normally */
+    private static volatile int sForecastDayCountOverride;
+
+    /* Whether setForecastBaseUrls pointed requests at servers of the tests' own */
+    private static volatile boolean sUsingOtherServers;
 
     /* The query parameter allows us to provide a location string to the API */
     private static final String QUERY_PARAM = "q";
@@ -83,9 +130,165 @@ public final class NetworkUtils {
     /* The days parameter allows us to designate how many days of weather data we want */
     private static final String DAYS_PARAM = "cnt";
 
+    /**
+     * Points every request from now on at different weather servers, such as
+     * the StandInWeatherServer of the weather-testing module. Only meant for tests and
+     * benchmarks; the app itself always talks to the real servers.
+     *
+     * @param baseUrls The forecast URLs to use, in order of preference, or none to go back to the
+     *                 real servers
+     */
+    public static void setForecastBaseUrls(String... baseUrls) {
+        sUsingOtherServers = baseUrls.length > 0;
+        sEndpointSelector = baseUrls.length > 0
+                ? newEndpointSelector(baseUrls)
+                : newEndpointSelector(DYNAMIC_WEATHER_URL, STATIC_WEATHER_URL);
+    }
+
+    /**
+     * Sets how long requests wait to connect, and then for each read, before giving up.
+     *
+     * @param connectTimeoutMillis Connect timeout in milliseconds, 0 to wait forever
+     * @param readTimeoutMillis    Read timeout in milliseconds, 0 to wait forever
+     */
+    public static void setTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        sConnectTimeoutMillis = connectTimeoutMillis;
+        sReadTimeoutMillis = readTimeoutMillis;
+    }
+
+    private static EndpointSelector newEndpointSelector(String... baseUrls) {
+        return new EndpointSelector(sRequestExecutor, HEDGE_PERCENTILE,
+                MIN_HEDGE_DELAY_MILLIS, MAX_HEDGE_DELAY_MILLIS, baseUrls);
+    }
+
+    /**
+     * Makes {@link #getForecastDayCount(Context)} return the same number of days whatever the
+     * network. Only meant for tests.
+     *
+     * @param dayCount The number of days to fetch, or 0 to decide from the network again
+     */
+    public static void setForecastDayCountOverride(int dayCount) {
+        sForecastDayCountOverride = dayCount;
+    }
+
+    /**
+     * Checks whether there is a network to reach the weather servers over. A request made without
+     * one fails whatever state the servers are in, so it tells us nothing about them.
+     *
+     * @param context Used to access the ConnectivityManager
+     * @return Whether there is a connected network, or true if requests go to servers set with
+     * {@link #setForecastBaseUrls(String...)}, which tests run on this device
+     */
+    public static boolean isConnected(Context context) {
+        if (sUsingOtherServers) {
+            return true;
+        }
+
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.isConnected();
+    }
+
+    /**
+     * Decides how many days of forecast are worth fetching over the current network.
+     *
+     * @param context Used to access the ConnectivityManager
+     * @return {@link #SHORT_FORECAST_DAYS} on metered or roaming networks, otherwise
+     * {@link #FULL_FORECAST_DAYS}
+     */
+    public static int getForecastDayCount(Context context) {
+        int dayCountOverride = sForecastDayCountOverride;
+        if (dayCountOverride > 0) {
+            return dayCountOverride;
+        }
+
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+        if (activeNetwork == null) {
+            /* No network, so no request; nothing to save */
+            return FULL_FORECAST_DAYS;
+        }
+        if (activeNetwork.isRoaming()
+                || ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager)) {
+            return SHORT_FORECAST_DAYS;
+        }
+        return FULL_FORECAST_DAYS;
+    }
+
+    /**
+     * Fetches the forecast JSON for the user's location from whichever weather server answers
+     * first, falling back from one to the other on errors.
+     *
+     * @param context  used to access other Utility methods
+     * @param dayCount How many days of forecast to ask for, starting today
+     * @return The forecast JSON
+     * @throws IOException If every server failed
+     */
+    public static String getForecastJson(final Context context, final int dayCount)
+            throws IOException {
+        EndpointSelector selector = sEndpointSelector;
+
+        /*
+         * Start from what earlier syncs, most likely in other processes, learned about the real
+         * servers. Tests' servers come and go with their ports, so they aren't saved.
+         */
+        boolean persistStats = !sUsingOtherServers;
+        if (persistStats) {
+            SunshinePreferences.restoreEndpointStats(context, selector);
+        }
+
+        try {
+            return selector.send(new EndpointSelector.Request<String>() {
+                /* The connection of each attempt in progress, by server */
+                private final Map<String, HttpURLConnection> mConnections =
+                        new ConcurrentHashMap<>();
+
+                @Override
+                public String send(String baseUrl) throws IOException {
+                    URL url = getUrl(context, baseUrl, dayCount);
+                    if (url == null) {
+                        throw new MalformedURLException(baseUrl);
+                    }
+                    HttpURLConnection connection = openConnection(url);
+                    mConnections.put(baseUrl, connection);
+                    try {
+                        /* Cancelled before the connection was there to disconnect */
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedIOException("Cancelled " + baseUrl);
+                        }
+                        String response = readResponse(connection);
+                        if (response == null) {
+                            throw new IOException("Empty response from " + baseUrl);
+                        }
+                        return response;
+                    } finally {
+                        mConnections.remove(baseUrl);
+                        connection.disconnect();
+                    }
+                }
+
+                @Override
+                public void cancel(String baseUrl) {
+                    /* Closes the socket, so a read blocked on it throws straight away */
+                    HttpURLConnection connection = mConnections.remove(baseUrl);
+                    if (connection != null) {
+                        connection.disconnect();
+                    }
+                }
+            });
+        } finally {
+            Log.v(TAG, selector.describeStats());
+            if (persistStats) {
+                SunshinePreferences.saveEndpointStats(context, selector);
+            }
+        }
+    }
+
     /**
      * Retrieves the proper URL to query for the weather data. The reason for both this method as
-     * well as {@link #buildUrlWithLocationQuery(String)} is two fold.
+     * well as {@link #buildUrlWithLocationQuery(String, String, int)} is two fold.
      * <p>
      * 1) You should be able to just use one method when you need to create the URL within the
      * app instead of calling both methods.
@@ -95,17 +298,19 @@ public final class NetworkUtils {
      * will "decide" which URL to build and return it.
      *
      * @param context used to access other Utility methods
+     * @param baseUrl The weather server to query
+     * @param dayCount How many days of forecast to ask for
      * @return URL to query weather service
      */
-    public static URL getUrl(Context context) {
+    public static URL getUrl(Context context, String baseUrl, int dayCount) {
         if (SunshinePreferences.isLocationLatLonAvailable(context)) {
             double[] preferredCoordinates = SunshinePreferences.getLocationCoordinates(context);
             double latitude = preferredCoordinates[0];
             double longitude = preferredCoordinates[1];
-            return buildUrlWithLatitudeLongitude(latitude, longitude);
+            return buildUrlWithLatitudeLongitude(baseUrl, latitude, longitude, dayCount);
         } else {
             String locationQuery = SunshinePreferences.getPreferredWeatherLocation(context);
-            return buildUrlWithLocationQuery(locationQuery);
+            return buildUrlWithLocationQuery(baseUrl, locationQuery, dayCount);
         }
     }
 
@@ -113,17 +318,20 @@ public final class NetworkUtils {
      * Builds the URL used to talk to the weather server using latitude and longitude of a
      * location.
      *
+     * @param baseUrl   The weather server to query
      * @param latitude  The latitude of the location
      * @param longitude The longitude of the location
+     * @param dayCount  How many days of forecast to ask for
      * @return The Url to use to query the weather server.
      */
-    private static URL buildUrlWithLatitudeLongitude(Double latitude, Double longitude) {
-        Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+    private static URL buildUrlWithLatitudeLongitude(String baseUrl, Double latitude,
+                                                     Double longitude, int dayCount) {
+        Uri weatherQueryUri = Uri.parse(baseUrl).buildUpon()
                 .appendQueryParameter(LAT_PARAM, String.valueOf(latitude))
                 .appendQueryParameter(LON_PARAM, String.valueOf(longitude))
                 .appendQueryParameter(FORMAT_PARAM, format)
                 .appendQueryParameter(UNITS_PARAM, units)
-                .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(dayCount))
                 .build();
 
         try {
@@ -140,15 +348,18 @@ public final class NetworkUtils {
      * Builds the URL used to talk to the weather server using a location. This location is based
      * on the query capabilities of the weather provider that we are using.
      *
+     * @param baseUrl       The weather server to query
      * @param locationQuery The location that will be queried for.
+     * @param dayCount      How many days of forecast to ask for
      * @return The URL to use to query the weather server.
      */
-    private static URL buildUrlWithLocationQuery(String locationQuery) {
-        Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+    private static URL buildUrlWithLocationQuery(String baseUrl, String locationQuery,
+                                                 int dayCount) {
+        Uri weatherQueryUri = Uri.parse(baseUrl).buildUpon()
                 .appendQueryParameter(QUERY_PARAM, locationQuery)
                 .appendQueryParameter(FORMAT_PARAM, format)
                 .appendQueryParameter(UNITS_PARAM, units)
-                .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(dayCount))
                 .build();
 
         try {
@@ -169,22 +380,35 @@ public final class NetworkUtils {
      * @throws IOException Related to network and stream reading
      */
     public static String getResponseFromHttpUrl(URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        HttpURLConnection urlConnection = openConnection(url);
         try {
-            InputStream in = urlConnection.getInputStream();
-
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
-
-            boolean hasInput = scanner.hasNext();
-            String response = null;
-            if (hasInput) {
-                response = scanner.next();
-            }
-            scanner.close();
-            return response;
+            return readResponse(urlConnection);
         } finally {
             urlConnection.disconnect();
         }
     }
+
+    /* Opens a connection with our timeouts; nothing is sent until it is read from */
+    private static HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setConnectTimeout(sConnectTimeoutMillis);
+        urlConnection.setReadTimeout(sReadTimeoutMillis);
+        return urlConnection;
+    }
+
+    /* Sends the request and reads the whole response, or returns null if it is empty */
+    private static String readResponse(HttpURLConnection urlConnection) throws IOException {
+        InputStream in = urlConnection.getInputStream();
+
+        Scanner scanner = new Scanner(in);
+        scanner.useDelimiter("\\A");
+
+        boolean hasInput = scanner.hasNext();
+        String response = null;
+        if (hasInput) {
+            response = scanner.next();
+        }
+        scanner.close();
+        return response;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Background threads shared across Sunshine, so that short pieces of work off the main thread
+ * reuse a thread rather than each starting one of their own.
+ */
+public final class SunshineExecutors {
+
+    /*
+     * A single thread for short reads from the database, such as a page of the forecast or the
+     * check for weather at startup. They run one after the other, in the order they were asked
+     * for, and away from the threads that syncs run on.
+     */
+    private static final Executor sDiskExecutor =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "sunshine-disk");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private SunshineExecutors() {
+    }
+
+    /**
+     * @return The executor for short database reads off the main thread
+     */
+    public static Executor getDiskExecutor() {
+        return sDiskExecutor;
+    }
+}
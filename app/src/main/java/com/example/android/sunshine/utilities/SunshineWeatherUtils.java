@@ -19,6 +19,8 @@ import android.content.Context;
 import android.util.Log;
 
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.core.WeatherConditions;
+import com.example.android.sunshine.core.WeatherUnits;
 import com.example.android.sunshine.data.SunshinePreferences;
 
 /**
@@ -30,6 +32,91 @@ public final class SunshineWeatherUtils {
 
     private static final String LOG_TAG = SunshineWeatherUtils.class.getSimpleName();
 
+    /*
+     * The condition id mapping itself lives in WeatherConditions, which is shared with the
+     * wearable. These arrays turn its results into our resources and must stay in the order of
+     * WeatherConditions.ART_* and WeatherConditions.DESCRIBED_CONDITION_IDS respectively. The
+     * wearable's Utilities.ART_IDS lists the same small icons in the same order.
+     */
+    static final int[] SMALL_ART_IDS = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy,
+    };
+
+    static final int[] LARGE_ART_IDS = {
+            R.drawable.art_storm,
+            R.drawable.art_light_rain,
+            R.drawable.art_rain,
+            R.drawable.art_snow,
+            R.drawable.art_fog,
+            R.drawable.art_clear,
+            R.drawable.art_light_clouds,
+            R.drawable.art_clouds,
+    };
+
+    static final int[] CONDITION_STRING_IDS = {
+            R.string.condition_2xx,
+            R.string.condition_3xx,
+            R.string.condition_500,
+            R.string.condition_501,
+            R.string.condition_502,
+            R.string.condition_503,
+            R.string.condition_504,
+            R.string.condition_511,
+            R.string.condition_520,
+            R.string.condition_531,
+            R.string.condition_600,
+            R.string.condition_601,
+            R.string.condition_602,
+            R.string.condition_611,
+            R.string.condition_612,
+            R.string.condition_615,
+            R.string.condition_616,
+            R.string.condition_620,
+            R.string.condition_621,
+            R.string.condition_622,
+            R.string.condition_701,
+            R.string.condition_711,
+            R.string.condition_721,
+            R.string.condition_731,
+            R.string.condition_741,
+            R.string.condition_751,
+            R.string.condition_761,
+            R.string.condition_762,
+            R.string.condition_771,
+            R.string.condition_781,
+            R.string.condition_800,
+            R.string.condition_801,
+            R.string.condition_802,
+            R.string.condition_803,
+            R.string.condition_804,
+            R.string.condition_900,
+            R.string.condition_901,
+            R.string.condition_902,
+            R.string.condition_903,
+            R.string.condition_904,
+            R.string.condition_905,
+            R.string.condition_906,
+            R.string.condition_951,
+            R.string.condition_952,
+            R.string.condition_953,
+            R.string.condition_954,
+            R.string.condition_955,
+            R.string.condition_956,
+            R.string.condition_957,
+            R.string.condition_958,
+            R.string.condition_959,
+            R.string.condition_960,
+            R.string.condition_961,
+            R.string.condition_962,
+    };
+
     /**
      * This method will convert a temperature from Celsius to Fahrenheit.
      *
@@ -38,8 +125,7 @@ public final class SunshineWeatherUtils {
      * @return Temperature in degrees Fahrenheit (°F)
      */
     private static double celsiusToFahrenheit(double temperatureInCelsius) {
-        double temperatureInFahrenheit = (temperatureInCelsius * 1.8) + 32;
-        return temperatureInFahrenheit;
+        return WeatherUnits.celsiusToFahrenheit(temperatureInCelsius);
     }
 
     /**
@@ -102,31 +188,10 @@ public final class SunshineWeatherUtils {
 
         if (!SunshinePreferences.isMetric(context)) {
             windFormat = R.string.format_wind_mph;
-            windSpeed = .621371192237334f * windSpeed;
+            windSpeed = WeatherUnits.kmhToMph(windSpeed);
         }
 
-        /*
-         * You know what's fun? Writing really long if/else statements with tons of possible
-         * conditions. Seriously, try it!
-         */
-        String direction = "Unknown";
-        if (degrees >= 337.5 || degrees < 22.5) {
-            direction = "N";
-        } else if (degrees >= 22.5 && degrees < 67.5) {
-            direction = "NE";
-        } else if (degrees >= 67.5 && degrees < 112.5) {
-            direction = "E";
-        } else if (degrees >= 112.5 && degrees < 157.5) {
-            direction = "SE";
-        } else if (degrees >= 157.5 && degrees < 202.5) {
-            direction = "S";
-        } else if (degrees >= 202.5 && degrees < 247.5) {
-            direction = "SW";
-        } else if (degrees >= 247.5 && degrees < 292.5) {
-            direction = "W";
-        } else if (degrees >= 292.5 && degrees < 337.5) {
-            direction = "NW";
-        }
+        String direction = WeatherUnits.getWindDirection(degrees);
 
         return String.format(context.getString(windFormat), windSpeed, direction);
     }
@@ -142,173 +207,12 @@ public final class SunshineWeatherUtils {
      * @return String for the weather condition, null if no relation is found.
      */
     public static String getStringForWeatherCondition(Context context, int weatherId) {
-        int stringId;
-        if (weatherId >= 200 && weatherId <= 232) {
-            stringId = R.string.condition_2xx;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            stringId = R.string.condition_3xx;
-        } else switch (weatherId) {
-            case 500:
-                stringId = R.string.condition_500;
-                break;
-            case 501:
-                stringId = R.string.condition_501;
-                break;
-            case 502:
-                stringId = R.string.condition_502;
-                break;
-            case 503:
-                stringId = R.string.condition_503;
-                break;
-            case 504:
-                stringId = R.string.condition_504;
-                break;
-            case 511:
-                stringId = R.string.condition_511;
-                break;
-            case 520:
-                stringId = R.string.condition_520;
-                break;
-            case 531:
-                stringId = R.string.condition_531;
-                break;
-            case 600:
-                stringId = R.string.condition_600;
-                break;
-            case 601:
-                stringId = R.string.condition_601;
-                break;
-            case 602:
-                stringId = R.string.condition_602;
-                break;
-            case 611:
-                stringId = R.string.condition_611;
-                break;
-            case 612:
-                stringId = R.string.condition_612;
-                break;
-            case 615:
-                stringId = R.string.condition_615;
-                break;
-            case 616:
-                stringId = R.string.condition_616;
-                break;
-            case 620:
-                stringId = R.string.condition_620;
-                break;
-            case 621:
-                stringId = R.string.condition_621;
-                break;
-            case 622:
-                stringId = R.string.condition_622;
-                break;
-            case 701:
-                stringId = R.string.condition_701;
-                break;
-            case 711:
-                stringId = R.string.condition_711;
-                break;
-            case 721:
-                stringId = R.string.condition_721;
-                break;
-            case 731:
-                stringId = R.string.condition_731;
-                break;
-            case 741:
-                stringId = R.string.condition_741;
-                break;
-            case 751:
-                stringId = R.string.condition_751;
-                break;
-            case 761:
-                stringId = R.string.condition_761;
-                break;
-            case 762:
-                stringId = R.string.condition_762;
-                break;
-            case 771:
-                stringId = R.string.condition_771;
-                break;
-            case 781:
-                stringId = R.string.condition_781;
-                break;
-            case 800:
-                stringId = R.string.condition_800;
-                break;
-            case 801:
-                stringId = R.string.condition_801;
-                break;
-            case 802:
-                stringId = R.string.condition_802;
-                break;
-            case 803:
-                stringId = R.string.condition_803;
-                break;
-            case 804:
-                stringId = R.string.condition_804;
-                break;
-            case 900:
-                stringId = R.string.condition_900;
-                break;
-            case 901:
-                stringId = R.string.condition_901;
-                break;
-            case 902:
-                stringId = R.string.condition_902;
-                break;
-            case 903:
-                stringId = R.string.condition_903;
-                break;
-            case 904:
-                stringId = R.string.condition_904;
-                break;
-            case 905:
-                stringId = R.string.condition_905;
-                break;
-            case 906:
-                stringId = R.string.condition_906;
-                break;
-            case 951:
-                stringId = R.string.condition_951;
-                break;
-            case 952:
-                stringId = R.string.condition_952;
-                break;
-            case 953:
-                stringId = R.string.condition_953;
-                break;
-            case 954:
-                stringId = R.string.condition_954;
-                break;
-            case 955:
-                stringId = R.string.condition_955;
-                break;
-            case 956:
-                stringId = R.string.condition_956;
-                break;
-            case 957:
-                stringId = R.string.condition_957;
-                break;
-            case 958:
-                stringId = R.string.condition_958;
-                break;
-            case 959:
-                stringId = R.string.condition_959;
-                break;
-            case 960:
-                stringId = R.string.condition_960;
-                break;
-            case 961:
-                stringId = R.string.condition_961;
-                break;
-            case 962:
-                stringId = R.string.condition_962;
-                break;
-            default:
-                return context.getString(R.string.condition_unknown, weatherId);
+        int descriptionIndex = WeatherConditions.getDescriptionIndex(weatherId);
+        if (descriptionIndex == WeatherConditions.UNKNOWN) {
+            return context.getString(R.string.condition_unknown, weatherId);
         }
 
-        return context.getString(stringId);
+        return context.getString(CONDITION_STRING_IDS[descriptionIndex]);
     }
 
     /**
@@ -327,41 +231,13 @@ public final class SunshineWeatherUtils {
      */
     public static int getSmallArtResourceIdForWeatherCondition(int weatherId) {
 
-        /*
-         * Based on weather code data for Open Weather Map.
-         */
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.ic_clear;
+        int art = WeatherConditions.getArt(weatherId);
+        if (art == WeatherConditions.UNKNOWN) {
+            Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
+            art = WeatherConditions.FALLBACK_ART;
         }
 
-        Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
-        return R.drawable.ic_storm;
+        return SMALL_ART_IDS[art];
     }
 
     /**
@@ -380,40 +256,12 @@ public final class SunshineWeatherUtils {
      */
     public static int getLargeArtResourceIdForWeatherCondition(int weatherId) {
 
-        /*
-         * Based on weather code data for Open Weather Map.
-         */
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.art_clear;
+        int art = WeatherConditions.getArt(weatherId);
+        if (art == WeatherConditions.UNKNOWN) {
+            Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
+            art = WeatherConditions.FALLBACK_ART;
         }
 
-        Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
-        return R.drawable.art_storm;
+        return LARGE_ART_IDS[art];
     }
 }
\ No newline at end of file
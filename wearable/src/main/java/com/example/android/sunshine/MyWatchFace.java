@@ -39,6 +39,7 @@ import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
 import com.example.android.sunshine.sync.DataRequestSender;
+import com.example.android.sunshine.sync.ForecastStore;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -49,7 +50,8 @@ import com.google.android.gms.wearable.DataEventBuffer;
 import com.google.android.gms.wearable.DataItem;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
-import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
 import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
@@ -72,6 +74,12 @@ public class MyWatchFace extends CanvasWatchFaceService {
      */
     private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
 
+    /**
+     * While the stored forecast is stale, ask the handheld for a new one at most this often, so
+     * an unreachable phone isn't asked every minute.
+     */
+    private static final long STALE_REQUEST_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
@@ -109,7 +117,8 @@ public class MyWatchFace extends CanvasWatchFaceService {
      *  basic understanding of how to implement a DataListener to handle data transfer from app to wearlable.
      */
 
-    private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener{
+    private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener,
+            MessageApi.MessageListener {
         public final String LOG_TAG = Engine.class.getSimpleName();
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
@@ -127,6 +136,7 @@ public class MyWatchFace extends CanvasWatchFaceService {
         private int mIconId = R.drawable.ic_clear;
         private double mHighTemp = WEATHER_NON_UPDATED_VALUE;
         private double mLowTemp = WEATHER_NON_UPDATED_VALUE;
+        private long mLastRequestMillis;
 
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
@@ -178,12 +188,14 @@ public class MyWatchFace extends CanvasWatchFaceService {
                                     Log.d(LOG_TAG, "Result status is " + status.toString());
                                 }
                             });
+                            Wearable.MessageApi.addListener(mGoogleApiClient, Engine.this);
                         }
 
                         @Override
                         public void onConnectionSuspended(int i) {
                             Log.d(LOG_TAG, "Suspended : " + i);
                             Wearable.DataApi.removeListener(mGoogleApiClient, Engine.this);
+                            Wearable.MessageApi.removeListener(mGoogleApiClient, Engine.this);
                             if (mGoogleApiClient.isConnected()){
                                 mGoogleApiClient.disconnect();
                             }
@@ -197,19 +209,30 @@ public class MyWatchFace extends CanvasWatchFaceService {
                     })
                     .build();
             mGoogleApiClient.connect();
-            //Request temperature data if it hasn't been synced yet.
-            if (mHighTemp == WEATHER_NON_UPDATED_VALUE && mLowTemp == WEATHER_NON_UPDATED_VALUE){
-                requestDataFromMobile();
+            //Start from the last forecast we received, if any.
+            if (ForecastStore.hasForecast(MyWatchFace.this)) {
+                mConditionId = ForecastStore.getWeatherId(MyWatchFace.this);
+                mIconId = Utilities.getDrawableIdForWeatherCondition(mConditionId);
+                mHighTemp = ForecastStore.getMaxTemp(MyWatchFace.this);
+                mLowTemp = ForecastStore.getMinTemp(MyWatchFace.this);
             }
+            //Request temperature data if it hasn't been synced yet, or is too old to show.
+            requestDataIfStale();
+        }
+        private void requestDataIfStale() {
+            if (!ForecastStore.isStale(MyWatchFace.this)) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now - mLastRequestMillis < STALE_REQUEST_INTERVAL_MS) {
+                return;
+            }
+            mLastRequestMillis = now;
+            requestDataFromMobile();
         }
         private void requestDataFromMobile(){
-            PutDataMapRequest putDataMapRequest=PutDataMapRequest.create(("/data_request"));
-
-            putDataMapRequest.getDataMap().putString("data_request","");
-            putDataMapRequest.getDataMap().putLong("data_request_time", System.currentTimeMillis());
-
             DataRequestSender sender = DataRequestSender.getInstance();
-            sender.setupClient(MyWatchFace.this, putDataMapRequest);
+            sender.setupClient(MyWatchFace.this);
             sender.sendRequestForDataToMobile();
         }
         @Override
@@ -237,6 +260,7 @@ public class MyWatchFace extends CanvasWatchFaceService {
                 registerReceiver();
                 // Update time zone in case it changed while we weren't visible.
                 mCalendar.setTimeZone(TimeZone.getDefault());
+                requestDataIfStale();
                 invalidate();
             } else {
                 unregisterReceiver();
@@ -292,6 +316,8 @@ public class MyWatchFace extends CanvasWatchFaceService {
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            // The face can stay up for days, so check the forecast's age as the minutes pass.
+            requestDataIfStale();
             invalidate();
         }
 
@@ -464,30 +490,48 @@ public class MyWatchFace extends CanvasWatchFaceService {
                     DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
                     String path = item.getUri().getPath();
                     if (path.equals("/wearable_data")) {
-                        for (String key : dataMap.keySet()) {
-                            if (!dataMap.containsKey(key)) {
-                                continue;
-                            }
-                            switch (key) {
-
-                                case "wearable_id":
-                                    mConditionId = dataMap.getInt(key);
-                                    mIconId = Utilities.getDrawableIdForWeatherCondition(mConditionId);;
-                                    break;
-                                case "wearable_max":
-                                    mHighTemp = dataMap.getDouble(key);
-                                    break;
-                                case "wearable_min":
-                                    mLowTemp = dataMap.getDouble(key);
-                                    break;
-                            }
-                        }
-                        invalidate();
+                        /* Fresh data was pushed, so an outstanding request is no longer needed */
+                        DataRequestSender.getInstance().cancelPendingRequest();
+                        updateWeather(dataMap);
                     }
                 }
                 }
             }
 
+        @Override
+        public void onMessageReceived(MessageEvent messageEvent) {
+            if (messageEvent.getPath().equals(DataRequestSender.DATA_RESPONSE_PATH)) {
+                DataMap dataMap = DataRequestSender.getInstance().handleResponse(messageEvent);
+                if (dataMap != null) {
+                    /* Responses don't reach ForecastListenerService, so store them here */
+                    ForecastStore.save(MyWatchFace.this, dataMap);
+                    updateWeather(dataMap);
+                }
+            }
+        }
+
+        private void updateWeather(DataMap dataMap) {
+            for (String key : dataMap.keySet()) {
+                if (!dataMap.containsKey(key)) {
+                    continue;
+                }
+                switch (key) {
+
+                    case "wearable_id":
+                        mConditionId = dataMap.getInt(key);
+                        mIconId = Utilities.getDrawableIdForWeatherCondition(mConditionId);;
+                        break;
+                    case "wearable_max":
+                        mHighTemp = dataMap.getDouble(key);
+                        break;
+                    case "wearable_min":
+                        mLowTemp = dataMap.getDouble(key);
+                        break;
+                }
+            }
+            invalidate();
+        }
+
         }
     }
 
@@ -2,12 +2,30 @@ package com.example.android.sunshine;
 
 import android.content.Context;
 
+import com.example.android.sunshine.core.WeatherConditions;
+
 /**
  * Created by scott on 2/10/2017.
  */
 
 public class Utilities {
 
+    /*
+     * Indexed by WeatherConditions.ART_*, the same icons in the same order as the handheld app's
+     * SunshineWeatherUtils.SMALL_ART_IDS. UtilitiesTest checks this against the same icon names
+     * as the app's TestWeatherConditionResources.
+     */
+    private static final int[] ART_IDS = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy,
+    };
+
     public static String formatTemperature(Context context, double temperature) {
 
         int temperatureFormatResourceId = R.string.format_temperature;
@@ -15,38 +33,17 @@ public class Utilities {
         /* For presentation, assume the user doesn't care about tenths of a degree. */
         return String.format(context.getString(temperatureFormatResourceId), temperature);
     }
-    public static int getDrawableIdForWeatherCondition(int weatherId) {
 
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.ic_clear;
+    /**
+     * Returns the icon for a weather condition. The mapping itself, including the art for
+     * conditions without any of their own, is shared with the handheld app through
+     * {@link WeatherConditions}, so the watch shows the same icon as the phone.
+     */
+    public static int getDrawableIdForWeatherCondition(int weatherId) {
+        int art = WeatherConditions.getArt(weatherId);
+        if (art == WeatherConditions.UNKNOWN) {
+            art = WeatherConditions.FALLBACK_ART;
         }
-
-        return R.drawable.ic_cloudy;
+        return ART_IDS[art];
     }
 }
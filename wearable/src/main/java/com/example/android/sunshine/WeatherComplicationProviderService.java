@@ -0,0 +1,69 @@
+package com.example.android.sunshine;
+
+import android.graphics.drawable.Icon;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationManager;
+import android.support.wearable.complications.ComplicationProviderService;
+import android.support.wearable.complications.ComplicationText;
+import android.util.Log;
+
+import com.example.android.sunshine.sync.ForecastStore;
+
+/**
+ * Serves today's condition icon and high/low temperatures to any watch face that wants to show
+ * them. Updates are pushed from {@link ForecastStore#save} whenever new data arrives from the
+ * handheld, so UPDATE_PERIOD_SECONDS is 0 in the manifest and we are never polled. Instead, the
+ * data we serve ends once the forecast becomes stale, so watch faces stop showing it without us
+ * being asked again.
+ */
+public class WeatherComplicationProviderService extends ComplicationProviderService {
+    private static final String LOG_TAG = WeatherComplicationProviderService.class.getSimpleName();
+
+    @Override
+    public void onComplicationUpdate(int complicationId, int dataType,
+                                     ComplicationManager complicationManager) {
+
+        if (ForecastStore.isStale(this)) {
+            complicationManager.updateComplicationData(complicationId,
+                    new ComplicationData.Builder(ComplicationData.TYPE_NO_DATA).build());
+            return;
+        }
+        long endTime = ForecastStore.getTime(this) + ForecastStore.MAX_AGE_MILLIS;
+
+        int weatherId = ForecastStore.getWeatherId(this);
+        String high = Utilities.formatTemperature(this, ForecastStore.getMaxTemp(this));
+        String low = Utilities.formatTemperature(this, ForecastStore.getMinTemp(this));
+        Icon icon = Icon.createWithResource(this,
+                Utilities.getDrawableIdForWeatherCondition(weatherId));
+
+        ComplicationData complicationData;
+        switch (dataType) {
+            case ComplicationData.TYPE_SHORT_TEXT:
+                complicationData = new ComplicationData.Builder(dataType)
+                        .setShortText(ComplicationText.plainText(high))
+                        .setShortTitle(ComplicationText.plainText(low))
+                        .setIcon(icon)
+                        .setEndTime(endTime)
+                        .build();
+                break;
+            case ComplicationData.TYPE_LONG_TEXT:
+                complicationData = new ComplicationData.Builder(dataType)
+                        .setLongText(ComplicationText.plainText(high + " / " + low))
+                        .setIcon(icon)
+                        .setEndTime(endTime)
+                        .build();
+                break;
+            case ComplicationData.TYPE_ICON:
+                complicationData = new ComplicationData.Builder(dataType)
+                        .setIcon(icon)
+                        .setEndTime(endTime)
+                        .build();
+                break;
+            default:
+                Log.w(LOG_TAG, "Unexpected complication type " + dataType);
+                return;
+        }
+
+        complicationManager.updateComplicationData(complicationId, complicationData);
+    }
+}
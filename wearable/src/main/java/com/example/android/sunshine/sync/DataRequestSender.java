@@ -1,7 +1,10 @@
 package com.example.android.sunshine.sync;
 
 import android.content.Context;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
@@ -9,24 +12,50 @@ import android.util.Log;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.CapabilityApi;
 import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Created by scott on 2/11/2017.
+ *
+ * Asks the handheld for the current forecast. Each request is a single message with a unique
+ * request id, sent only to the node advertising {@link #FORECAST_CAPABILITY}. The handheld answers
+ * on {@link #DATA_RESPONSE_PATH} with the same id. If no answer arrives within
+ * {@link #REQUEST_TIMEOUT_MS} the request is retried, up to {@link #MAX_ATTEMPTS} times.
  */
-
 public class DataRequestSender implements GoogleApiClient.OnConnectionFailedListener, GoogleApiClient.ConnectionCallbacks {
 
     public static final String TAG = DataRequestSender.class.getSimpleName();
 
+    public static final String DATA_REQUEST_PATH = "/data_request";
+    public static final String DATA_RESPONSE_PATH = "/data_response";
+
+    public static final String KEY_REQUEST_ID = "data_request_id";
+
+    /* Declared by the handheld app in res/values/wear.xml */
+    private static final String FORECAST_CAPABILITY = "sunshine_forecast_provider";
+
+    private static final long REQUEST_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final long NO_PENDING_REQUEST = -1;
+
     private static DataRequestSender mDataRequestSender;
-    private PutDataMapRequest mPutDataMapRequest;
     private Context mContext;
     GoogleApiClient mGoogleApiClient;
 
+    private final Handler mTimeoutHandler = new Handler(Looper.getMainLooper());
+    private long mPendingRequestId = NO_PENDING_REQUEST;
+    private int mAttempts;
+
     //private constructor to force use of getInstance()
     private DataRequestSender(){};
 
@@ -37,30 +66,148 @@ public class DataRequestSender implements GoogleApiClient.OnConnectionFailedList
         return mDataRequestSender;
     }
 
-    public void setupClient(Context context, PutDataMapRequest putDataMapRequest) {
-        mPutDataMapRequest = putDataMapRequest;
+    public void setupClient(Context context) {
         mContext = context;
 
-        mGoogleApiClient = new GoogleApiClient.Builder(mContext)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(Wearable.API)
-                .build();
+        if (mGoogleApiClient == null) {
+            mGoogleApiClient = new GoogleApiClient.Builder(mContext)
+                    .addConnectionCallbacks(this)
+                    .addOnConnectionFailedListener(this)
+                    .addApi(Wearable.API)
+                    .build();
+        }
 
         if (!mGoogleApiClient.isConnected()){
             mGoogleApiClient.connect();
         }
     }
 
+    /**
+     * Starts a new request for data, unless one is already waiting for its response.
+     */
     public void sendRequestForDataToMobile() {
-        PutDataRequest putDataRequest = mPutDataMapRequest.asPutDataRequest().setUrgent();
+        if (mPendingRequestId != NO_PENDING_REQUEST) {
+            return;
+        }
+        mPendingRequestId = System.currentTimeMillis();
+        mAttempts = 0;
+        sendPendingRequest();
+    }
+
+    /**
+     * Matches a response from the handheld against the outstanding request.
+     *
+     * @param messageEvent A message received on {@link #DATA_RESPONSE_PATH}
+     * @return The forecast carried by the response, or null if it answers a request we have
+     * already given up on or already received a response for
+     */
+    public DataMap handleResponse(MessageEvent messageEvent) {
+        DataMap response = DataMap.fromByteArray(messageEvent.getData());
+        if (mPendingRequestId == NO_PENDING_REQUEST
+                || response.getLong(KEY_REQUEST_ID) != mPendingRequestId) {
+            Log.d(TAG, "Ignoring stale response");
+            return null;
+        }
+        cancelPendingRequest();
+        return response;
+    }
+
+    /**
+     * Called when fresh data reached us some other way (e.g. the /wearable_data push), so there
+     * is no point in waiting for or retrying the outstanding request.
+     */
+    public void cancelPendingRequest() {
+        mPendingRequestId = NO_PENDING_REQUEST;
+        mTimeoutHandler.removeCallbacks(mTimeoutRunnable);
+    }
+
+    private void sendPendingRequest() {
+        mAttempts++;
+        mTimeoutHandler.removeCallbacks(mTimeoutRunnable);
+        mTimeoutHandler.postDelayed(mTimeoutRunnable, REQUEST_TIMEOUT_MS);
+
+        final long requestId = mPendingRequestId;
+        Wearable.CapabilityApi.getCapability(
+                mGoogleApiClient, FORECAST_CAPABILITY, CapabilityApi.FILTER_REACHABLE)
+                .setResultCallback(new ResultCallback<CapabilityApi.GetCapabilityResult>() {
+                    @Override
+                    public void onResult(@NonNull CapabilityApi.GetCapabilityResult result) {
+                        if (!result.getStatus().isSuccess()) {
+                            Log.d(TAG, "Capability lookup failed " + result.getStatus());
+                            return;
+                        }
+                        String nodeId = pickBestNodeId(result.getCapability().getNodes());
+                        if (nodeId == null) {
+                            Log.d(TAG, "No handheld is reachable");
+                            return;
+                        }
+                        sendRequestToNode(nodeId, requestId);
+                    }
+                });
+    }
+
+    private void sendRequestToNode(String nodeId, long requestId) {
+        DataMap request = new DataMap();
+        request.putLong(KEY_REQUEST_ID, requestId);
+
+        Wearable.MessageApi.sendMessage(
+                mGoogleApiClient, nodeId, DATA_REQUEST_PATH, request.toByteArray())
+                .setResultCallback(new ResultCallback<MessageApi.SendMessageResult>() {
+                    @Override
+                    public void onResult(@NonNull MessageApi.SendMessageResult result) {
+                        if (result.getStatus().isSuccess()) {
+                            Log.d(TAG, "Request sent to mobile");
+                        } else {
+                            Log.d(TAG, "Request failed " + result.getStatus());
+                        }
+                    }
+                });
+    }
+
+    /* Prefer a directly connected node over one that is only reachable through the cloud */
+    private static String pickBestNodeId(Iterable<Node> nodes) {
+        String bestNodeId = null;
+        for (Node node : nodes) {
+            if (node.isNearby()) {
+                return node.getId();
+            }
+            bestNodeId = node.getId();
+        }
+        return bestNodeId;
+    }
+
+    private final Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mPendingRequestId == NO_PENDING_REQUEST) {
+                return;
+            }
+            if (mAttempts >= MAX_ATTEMPTS) {
+                Log.d(TAG, "Giving up on request after " + mAttempts + " attempts");
+                mPendingRequestId = NO_PENDING_REQUEST;
+                return;
+            }
+            sendPendingRequest();
+        }
+    };
+
+    /**
+     * Older versions of this watch face requested data by writing a new /data_request DataItem
+     * every time. Those items were never removed and were synced to every node, so we delete any
+     * that are left over.
+     */
+    private void deleteStaleRequestItems() {
+        Uri requestItemsUri = new Uri.Builder()
+                .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                .path(DATA_REQUEST_PATH)
+                .build();
 
-        Wearable.DataApi.putDataItem(mGoogleApiClient, putDataRequest).
-                setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+        Wearable.DataApi.deleteDataItems(mGoogleApiClient, requestItemsUri, DataApi.FILTER_PREFIX)
+                .setResultCallback(new ResultCallback<DataApi.DeleteDataItemsResult>() {
                     @Override
-                    public void onResult(final DataApi.DataItemResult result) {
-                        if(result.getStatus().isSuccess()) {
-                            Log.e(TAG, "Request sent to mobile " + result.getDataItem().getUri());
+                    public void onResult(@NonNull DataApi.DeleteDataItemsResult result) {
+                        if (result.getNumDeleted() > 0) {
+                            Log.d(TAG, "Deleted " + result.getNumDeleted() + " stale requests");
                         }
                     }
                 });
@@ -69,6 +216,7 @@ public class DataRequestSender implements GoogleApiClient.OnConnectionFailedList
     @Override
     public void onConnected(@Nullable Bundle bundle) {
         Log.d(TAG, "Client has connected");
+        deleteStaleRequestItems();
     }
 
     @Override
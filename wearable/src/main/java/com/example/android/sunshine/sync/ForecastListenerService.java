@@ -0,0 +1,27 @@
+package com.example.android.sunshine.sync;
+
+import com.google.android.gms.wearable.DataEvent;
+import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.WearableListenerService;
+
+/**
+ * Receives the /wearable_data DataItem even when no watch face is running, keeps
+ * {@link ForecastStore} current and, through it, pushes the update to any complications.
+ */
+public class ForecastListenerService extends WearableListenerService {
+
+    @Override
+    public void onDataChanged(DataEventBuffer dataEventBuffer) {
+        for (DataEvent event : dataEventBuffer) {
+            if (event.getType() == DataEvent.TYPE_CHANGED) {
+                DataItem item = event.getDataItem();
+                if (item.getUri().getPath().equals("/wearable_data")) {
+                    ForecastStore.save(getApplicationContext(),
+                            DataMapItem.fromDataItem(item).getDataMap());
+                }
+            }
+        }
+    }
+}
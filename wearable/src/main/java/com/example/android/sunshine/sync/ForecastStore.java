@@ -0,0 +1,103 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.wearable.complications.ProviderUpdateRequester;
+
+import com.example.android.sunshine.WeatherComplicationProviderService;
+import com.google.android.gms.wearable.DataMap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watch-side copy of today's forecast, as last pushed or sent by the handheld. The watch face and
+ * the complication provider both read from here, so there is a single data stream from the phone
+ * no matter how many faces are showing Sunshine data.
+ */
+public final class ForecastStore {
+
+    private static final String PREFS_NAME = "forecast";
+
+    /* Same keys the handheld uses in the /wearable_data DataItem */
+    private static final String KEY_WEATHER_ID = "wearable_id";
+    private static final String KEY_MAX_TEMP = "wearable_max";
+    private static final String KEY_MIN_TEMP = "wearable_min";
+    private static final String KEY_TIME = "wearable_time";
+
+    /*
+     * A forecast older than this is stale: complications stop showing it and the watch face asks
+     * the handheld for a new one. The handheld sends today's weather at least once a day.
+     */
+    public static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private ForecastStore() {
+    }
+
+    /**
+     * Stores the forecast in the given DataMap and asks every complication using our provider to
+     * refresh. This is the only place complications are updated; they are never polled.
+     *
+     * @param context Used to access SharedPreferences and to reach the complication provider
+     * @param dataMap A /wearable_data DataItem's map or a /data_response message payload
+     */
+    public static void save(Context context, DataMap dataMap) {
+        SharedPreferences.Editor editor = getPreferences(context).edit();
+        if (dataMap.containsKey(KEY_WEATHER_ID)) {
+            editor.putInt(KEY_WEATHER_ID, dataMap.getInt(KEY_WEATHER_ID));
+        }
+        if (dataMap.containsKey(KEY_MAX_TEMP)) {
+            editor.putLong(KEY_MAX_TEMP, Double.doubleToRawLongBits(dataMap.getDouble(KEY_MAX_TEMP)));
+        }
+        if (dataMap.containsKey(KEY_MIN_TEMP)) {
+            editor.putLong(KEY_MIN_TEMP, Double.doubleToRawLongBits(dataMap.getDouble(KEY_MIN_TEMP)));
+        }
+        editor.putLong(KEY_TIME, dataMap.getLong(KEY_TIME, System.currentTimeMillis()));
+        editor.apply();
+
+        ComponentName provider = new ComponentName(context, WeatherComplicationProviderService.class);
+        new ProviderUpdateRequester(context, provider).requestUpdateAll();
+    }
+
+    public static boolean hasForecast(Context context) {
+        return getPreferences(context).contains(KEY_WEATHER_ID);
+    }
+
+    /**
+     * @param context Used to access SharedPreferences
+     * @return When the handheld sent the stored forecast, by its clock, or 0 if there is none
+     */
+    public static long getTime(Context context) {
+        return getPreferences(context).getLong(KEY_TIME, 0);
+    }
+
+    /**
+     * @param context Used to access SharedPreferences
+     * @return Whether there is no forecast, or the stored one is older than
+     * {@link #MAX_AGE_MILLIS}
+     */
+    public static boolean isStale(Context context) {
+        if (!hasForecast(context)) {
+            return true;
+        }
+        return System.currentTimeMillis() - getTime(context) > MAX_AGE_MILLIS;
+    }
+
+    public static int getWeatherId(Context context) {
+        return getPreferences(context).getInt(KEY_WEATHER_ID, 0);
+    }
+
+    public static double getMaxTemp(Context context) {
+        return Double.longBitsToDouble(getPreferences(context)
+                .getLong(KEY_MAX_TEMP, Double.doubleToRawLongBits(0.0)));
+    }
+
+    public static double getMinTemp(Context context) {
+        return Double.longBitsToDouble(getPreferences(context)
+                .getLong(KEY_MIN_TEMP, Double.doubleToRawLongBits(0.0)));
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
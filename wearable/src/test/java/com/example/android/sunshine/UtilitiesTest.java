@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import com.example.android.sunshine.core.WeatherConditions;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The watch and the phone turn condition ids into icons through the same
+ * {@link WeatherConditions} tables, each with its own drawables. The app's
+ * TestWeatherConditionResources walks the same ids against the same icon names, so between them
+ * the two modules are checked to resolve every id alike.
+ */
+public class UtilitiesTest {
+
+    /* The app's small art for each WeatherConditions.ART_*, in that order */
+    private static final String[] APP_ART_NAMES = {
+            "ic_storm", "ic_light_rain", "ic_rain", "ic_snow",
+            "ic_fog", "ic_clear", "ic_light_clouds", "ic_cloudy",
+    };
+
+    @Test
+    public void testEveryConditionGetsTheAppsIcon() throws IllegalAccessException {
+        assertEquals(WeatherConditions.ART_COUNT, APP_ART_NAMES.length);
+
+        for (int weatherId = 0; weatherId <= 999; weatherId++) {
+            int art = WeatherConditions.getArt(weatherId);
+            if (art == WeatherConditions.UNKNOWN) {
+                art = WeatherConditions.FALLBACK_ART;
+            }
+            assertTrue(art < WeatherConditions.ART_COUNT);
+
+            assertEquals("Wrong icon for condition " + weatherId, APP_ART_NAMES[art],
+                    getDrawableName(Utilities.getDrawableIdForWeatherCondition(weatherId)));
+        }
+    }
+
+    /* There are no Resources to ask in a local test, so look the id up in R itself */
+    private static String getDrawableName(int drawableId) throws IllegalAccessException {
+        for (Field field : R.drawable.class.getFields()) {
+            if (field.getType() == int.class && field.getInt(null) == drawableId) {
+                return field.getName();
+            }
+        }
+        fail("Not a drawable: " + drawableId);
+        return null;
+    }
+}
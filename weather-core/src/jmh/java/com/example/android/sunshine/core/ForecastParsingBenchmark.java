@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import com.example.android.sunshine.testing.ForecastJsonWriter;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing cost of a forecast response, the first step of every sync. 14 days is what the app asks
+ * for today, 40 is a generous horizon, and 1,000 shows how parsing scales with history-sized
+ * payloads.
+ * <p>
+ * Payloads are written from {@link SyntheticForecasts} by {@link ForecastJsonWriter}, the same way
+ * the tests' stand-in weather server writes them, so the benchmark parses what the tests serve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ForecastParsingBenchmark {
+
+    /* September 23rd, 2016 at midnight UTC */
+    private static final long START_DAY = 1474588800000L;
+
+    @Param({"14", "40", "1000"})
+    public int days;
+
+    private String mPayload;
+
+    @Setup
+    public void setUp() {
+        Forecast forecast = new SyntheticForecasts(42).generate(0, START_DAY, days);
+        mPayload = ForecastJsonWriter.write(forecast);
+    }
+
+    @Benchmark
+    public Forecast parse() throws JSONException {
+        return ForecastJsonParser.parse(mPayload, START_DAY);
+    }
+}
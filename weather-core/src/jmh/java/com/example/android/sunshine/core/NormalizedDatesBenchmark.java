@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date normalization, which runs for every row inserted and every "today onwards" query.
+ * getNormalizedUtcDateForDay is measured in a zone with daylight savings time, since the offset
+ * lookup is the expensive part.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NormalizedDatesBenchmark {
+
+    private long mNow;
+    private TimeZone mTimeZone;
+
+    @Setup
+    public void setUp() {
+        /* Friday, 9/16/2016, 17:45:15 GMT-4:00 DST */
+        mNow = 1474062315000L;
+        mTimeZone = TimeZone.getTimeZone("America/New_York");
+    }
+
+    @Benchmark
+    public long normalizeDate() {
+        return NormalizedDates.normalizeDate(mNow);
+    }
+
+    @Benchmark
+    public long normalizedUtcDateForDay() {
+        return NormalizedDates.getNormalizedUtcDateForDay(mNow, mTimeZone);
+    }
+
+    @Benchmark
+    public boolean isDateNormalized() {
+        return NormalizedDates.isDateNormalized(mNow);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link WeatherConditions} lookup tables with the if/else chain and switch they
+ * replaced. Each invocation resolves a batch of ids drawn from every described condition, so the
+ * branchy versions can't settle into a single predicted path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WeatherConditionsBenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+
+    private int[] mWeatherIds;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mWeatherIds = new int[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int index = random.nextInt(WeatherConditions.DESCRIPTION_COUNT);
+            mWeatherIds[i] = WeatherConditions.DESCRIBED_CONDITION_IDS[index];
+        }
+    }
+
+    @Benchmark
+    public void artTable(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(WeatherConditions.getArt(weatherId));
+        }
+    }
+
+    @Benchmark
+    public void artChain(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(legacyArt(weatherId));
+        }
+    }
+
+    @Benchmark
+    public void descriptionTable(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(WeatherConditions.getDescriptionIndex(weatherId));
+        }
+    }
+
+    @Benchmark
+    public void descriptionSwitch(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(legacyDescription(weatherId));
+        }
+    }
+
+    /* The chain formerly in SunshineWeatherUtils and the wearable's Utilities */
+    private static int legacyArt(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return WeatherConditions.ART_STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return WeatherConditions.ART_LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return WeatherConditions.ART_RAIN;
+        } else if (weatherId == 511) {
+            return WeatherConditions.ART_SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return WeatherConditions.ART_RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return WeatherConditions.ART_SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return WeatherConditions.ART_FOG;
+        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
+            return WeatherConditions.ART_STORM;
+        } else if (weatherId == 800) {
+            return WeatherConditions.ART_CLEAR;
+        } else if (weatherId == 801) {
+            return WeatherConditions.ART_LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return WeatherConditions.ART_CLOUDS;
+        } else if (weatherId >= 900 && weatherId <= 906) {
+            return WeatherConditions.ART_STORM;
+        } else if (weatherId >= 958 && weatherId <= 962) {
+            return WeatherConditions.ART_STORM;
+        } else if (weatherId >= 951 && weatherId <= 957) {
+            return WeatherConditions.ART_CLEAR;
+        }
+        return WeatherConditions.UNKNOWN;
+    }
+
+    /* The shape of the switch formerly in SunshineWeatherUtils.getStringForWeatherCondition */
+    private static int legacyDescription(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return 0;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return 1;
+        }
+        switch (weatherId) {
+            case 500: return 2;
+            case 501: return 3;
+            case 502: return 4;
+            case 503: return 5;
+            case 504: return 6;
+            case 511: return 7;
+            case 520: return 8;
+            case 531: return 9;
+            case 600: return 10;
+            case 601: return 11;
+            case 602: return 12;
+            case 611: return 13;
+            case 612: return 14;
+            case 615: return 15;
+            case 616: return 16;
+            case 620: return 17;
+            case 621: return 18;
+            case 622: return 19;
+            case 701: return 20;
+            case 711: return 21;
+            case 721: return 22;
+            case 731: return 23;
+            case 741: return 24;
+            case 751: return 25;
+            case 761: return 26;
+            case 762: return 27;
+            case 771: return 28;
+            case 781: return 29;
+            case 800: return 30;
+            case 801: return 31;
+            case 802: return 32;
+            case 803: return 33;
+            case 804: return 34;
+            case 900: return 35;
+            case 901: return 36;
+            case 902: return 37;
+            case 903: return 38;
+            case 904: return 39;
+            case 905: return 40;
+            case 906: return 41;
+            case 951: return 42;
+            case 952: return 43;
+            case 953: return 44;
+            case 954: return 45;
+            case 955: return 46;
+            case 956: return 47;
+            case 957: return 48;
+            case 958: return 49;
+            case 959: return 50;
+            case 960: return 51;
+            case 961: return 52;
+            case 962: return 53;
+            default: return WeatherConditions.UNKNOWN;
+        }
+    }
+}
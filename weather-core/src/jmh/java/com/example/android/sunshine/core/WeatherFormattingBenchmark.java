@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work done by SunshineWeatherUtils.formatTemperature and getFormattedWind for every list
+ * item bind, minus the resource lookup. The format strings are copies of format_temperature and
+ * format_wind_kmh / format_wind_mph from the app's strings.xml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WeatherFormattingBenchmark {
+
+    private static final String FORMAT_TEMPERATURE = "%1.0f°";
+    private static final String FORMAT_WIND_KMH = "%1$1.0f km/h %2$s";
+    private static final String FORMAT_WIND_MPH = "%1$1.0f mph %2$s";
+
+    public double temperature = 21.7;
+    public float windSpeed = 13.4f;
+    public float degrees = 290f;
+
+    @Benchmark
+    public String formatTemperatureMetric() {
+        return String.format(FORMAT_TEMPERATURE, temperature);
+    }
+
+    @Benchmark
+    public String formatTemperatureImperial() {
+        return String.format(FORMAT_TEMPERATURE, WeatherUnits.celsiusToFahrenheit(temperature));
+    }
+
+    @Benchmark
+    public String formattedWindMetric() {
+        return String.format(FORMAT_WIND_KMH, windSpeed, WeatherUnits.getWindDirection(degrees));
+    }
+
+    @Benchmark
+    public String formattedWindImperial() {
+        return String.format(FORMAT_WIND_MPH,
+                WeatherUnits.kmhToMph(windSpeed), WeatherUnits.getWindDirection(degrees));
+    }
+}
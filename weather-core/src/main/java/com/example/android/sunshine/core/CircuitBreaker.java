@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Stops calling a backend that keeps failing, and lets a single request through now and then to
+ * find out whether it has recovered.
+ * <p>
+ * The breaker starts {@link #STATE_CLOSED}, letting every request through. After a number of
+ * consecutive failures it opens, and turns requests away until the open period is over. It then
+ * goes half-open and lets requests through again: a success closes it, a failure opens it again
+ * for twice as long, up to a maximum.
+ * <p>
+ * Times are wall clock milliseconds passed in by the caller, so the whole state can be saved and
+ * restored across process restarts with {@link #restore(int, int, long, long)}. If the clock goes
+ * backwards while the breaker is open, the open period is treated as over.
+ */
+public final class CircuitBreaker {
+
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    /** Told about every change of state, e.g. to record it */
+    public interface Listener {
+        void onStateChanged(int fromState, int toState, long nowMillis);
+    }
+
+    private final int mFailureThreshold;
+    private final long mBaseOpenMillis;
+    private final long mMaxOpenMillis;
+
+    private int mState = STATE_CLOSED;
+    private int mConsecutiveFailures;
+    private long mOpenedAtMillis;
+    private long mOpenMillis;
+
+    private Listener mListener;
+
+    /**
+     * @param failureThreshold Consecutive failures that open the breaker
+     * @param baseOpenMillis   How long the breaker stays open the first time
+     * @param maxOpenMillis    The longest the breaker stays open after repeated failures
+     */
+    public CircuitBreaker(int failureThreshold, long baseOpenMillis, long maxOpenMillis) {
+        mFailureThreshold = failureThreshold;
+        mBaseOpenMillis = baseOpenMillis;
+        mMaxOpenMillis = maxOpenMillis;
+        mOpenMillis = baseOpenMillis;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Puts the breaker back into a previously saved state. Does not notify the listener.
+     */
+    public void restore(int state, int consecutiveFailures, long openedAtMillis, long openMillis) {
+        if (state != STATE_CLOSED && state != STATE_OPEN && state != STATE_HALF_OPEN) {
+            throw new IllegalArgumentException("Unknown state: " + state);
+        }
+        mState = state;
+        mConsecutiveFailures = consecutiveFailures;
+        mOpenedAtMillis = openedAtMillis;
+        mOpenMillis = Math.max(mBaseOpenMillis, Math.min(mMaxOpenMillis, openMillis));
+    }
+
+    /**
+     * @param nowMillis The current wall clock time
+     * @return Whether a request should be made now. Going from open to half-open happens here.
+     */
+    public boolean allowRequest(long nowMillis) {
+        if (mState == STATE_OPEN) {
+            long openFor = nowMillis - mOpenedAtMillis;
+            if (openFor >= 0 && openFor < mOpenMillis) {
+                return false;
+            }
+            setState(STATE_HALF_OPEN, nowMillis);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the breaker, or keeps it closed, and resets the failure count and open period.
+     */
+    public void recordSuccess(long nowMillis) {
+        mConsecutiveFailures = 0;
+        mOpenMillis = mBaseOpenMillis;
+        setState(STATE_CLOSED, nowMillis);
+    }
+
+    /**
+     * Counts a failure, opening the breaker if it was half-open or has now failed too often.
+     */
+    public void recordFailure(long nowMillis) {
+        mConsecutiveFailures++;
+        if (mState == STATE_HALF_OPEN) {
+            /* The trial request failed: back off for longer than last time */
+            mOpenMillis = Math.min(mMaxOpenMillis, mOpenMillis * 2);
+            open(nowMillis);
+        } else if (mState == STATE_CLOSED && mConsecutiveFailures >= mFailureThreshold) {
+            open(nowMillis);
+        }
+    }
+
+    private void open(long nowMillis) {
+        mOpenedAtMillis = nowMillis;
+        setState(STATE_OPEN, nowMillis);
+    }
+
+    private void setState(int state, long nowMillis) {
+        int previous = mState;
+        mState = state;
+        if (previous != state && mListener != null) {
+            mListener.onStateChanged(previous, state, nowMillis);
+        }
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    public int getConsecutiveFailures() {
+        return mConsecutiveFailures;
+    }
+
+    public long getOpenedAtMillis() {
+        return mOpenedAtMillis;
+    }
+
+    /**
+     * @return How long the breaker stays open when it opens, or is staying open now
+     */
+    public long getOpenMillis() {
+        return mOpenMillis;
+    }
+
+    /**
+     * @param state One of the STATE_ constants
+     * @return Its name, for logs
+     */
+    public static String getStateName(int state) {
+        switch (state) {
+            case STATE_CLOSED:
+                return "closed";
+            case STATE_OPEN:
+                return "open";
+            case STATE_HALF_OPEN:
+                return "half-open";
+            default:
+                return "unknown";
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a request to whichever of several equivalent endpoints has been doing best, and hedges
+ * against it being slow.
+ * <p>
+ * Endpoints are ranked by their recent error rate, then by median latency; until there is
+ * anything to go on they are tried in the order given. The request goes to the best one first.
+ * If it fails, the next endpoint is tried straight away. If it is merely slow, meaning it has
+ * taken longer than the chosen percentile of that endpoint's recent latencies, the same request
+ * is also sent to the next endpoint and whichever answers first wins. The hedge delay is kept
+ * between a minimum and a maximum, and is the maximum until there are enough samples.
+ * <p>
+ * Every attempt is timed and recorded in that endpoint's {@link EndpointStats}, including
+ * attempts that lose the race, so a slow endpoint's latencies are not hidden by its faster
+ * alternative. A losing attempt is cancelled before it answers, so the time it had taken by then
+ * is recorded as its latency: the endpoint was at least that slow. Outcomes are stamped with the
+ * wall clock, so the stats can be saved and restored across process restarts.
+ * <p>
+ * Attempts still running once the request is decided are cancelled, both by interrupting them
+ * and with {@link Request#cancel(String)}, since interrupting a thread doesn't stop a blocking
+ * socket read.
+ */
+public final class EndpointSelector {
+
+    /** A request that can be sent to any of the endpoints */
+    public interface Request<T> {
+        /**
+         * Sends the request to endpoint. If it gives up because its thread was interrupted, it
+         * should leave the thread interrupted, so the attempt is recorded as cancelled rather
+         * than as the endpoint failing.
+         */
+        T send(String endpoint) throws IOException;
+
+        /**
+         * Called from another thread to stop an attempt that is still sending to endpoint, e.g.
+         * by disconnecting its connection, so that send throws soon. The attempt's thread has
+         * already been interrupted. May be called for an attempt that hasn't started yet.
+         */
+        void cancel(String endpoint);
+    }
+
+    /* Outcomes remembered per endpoint */
+    private static final int WINDOW_SIZE = 32;
+
+    /* Outcomes older than this no longer count */
+    private static final long MAX_SAMPLE_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /* Fewer successful samples than this and the hedge delay is the maximum */
+    private static final int MIN_SAMPLES_FOR_HEDGING = 5;
+
+    private final ExecutorService mExecutor;
+    private final double mHedgePercentile;
+    private final long mMinHedgeDelayMillis;
+    private final long mMaxHedgeDelayMillis;
+    private final List<EndpointStats> mStats;
+
+    /**
+     * @param executor            Runs the attempts; needs a thread per concurrent attempt
+     * @param hedgePercentile     Latency percentile after which a request is hedged, e.g. 95
+     * @param minHedgeDelayMillis Never hedge sooner than this
+     * @param maxHedgeDelayMillis Always hedge once this has passed
+     * @param endpoints           The equivalent endpoints, in order of preference
+     */
+    public EndpointSelector(ExecutorService executor, double hedgePercentile,
+                            long minHedgeDelayMillis, long maxHedgeDelayMillis,
+                            String... endpoints) {
+        if (endpoints.length == 0) {
+            throw new IllegalArgumentException("At least one endpoint is needed");
+        }
+        mExecutor = executor;
+        mHedgePercentile = hedgePercentile;
+        mMinHedgeDelayMillis = minHedgeDelayMillis;
+        mMaxHedgeDelayMillis = maxHedgeDelayMillis;
+
+        List<EndpointStats> stats = new ArrayList<>(endpoints.length);
+        for (String endpoint : endpoints) {
+            stats.add(new EndpointStats(endpoint, WINDOW_SIZE, MAX_SAMPLE_AGE_MILLIS));
+        }
+        mStats = Collections.unmodifiableList(stats);
+    }
+
+    /**
+     * @return Stats for every endpoint, in the order they were given
+     */
+    public List<EndpointStats> getStats() {
+        return mStats;
+    }
+
+    /**
+     * @return One line per endpoint summarizing its stats, for logs
+     */
+    public String describeStats() {
+        long now = nowMillis();
+        StringBuilder description = new StringBuilder();
+        for (EndpointStats stats : mStats) {
+            if (description.length() > 0) {
+                description.append('\n');
+            }
+            description.append(stats.describe(now));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Sends the request, hedging and falling back as described above.
+     *
+     * @param request The request to send
+     * @return The first successful response
+     * @throws IOException The last failure, if every endpoint failed
+     */
+    public <T> T send(Request<T> request) throws IOException {
+        long now = nowMillis();
+        EndpointStats[] ranked = rank(now);
+        long hedgeDelayMillis = getHedgeDelayMillis(ranked[0], now);
+
+        CompletionService<T> completionService = new ExecutorCompletionService<>(mExecutor);
+        List<Future<T>> attempts = new ArrayList<>(ranked.length);
+        submit(completionService, attempts, ranked[0], request);
+        int next = 1;
+        int pending = 1;
+
+        IOException failure = null;
+        try {
+            while (pending > 0) {
+                Future<T> done;
+                if (next < ranked.length) {
+                    done = completionService.poll(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        /* Too slow: send the same request to the next endpoint as well */
+                        submit(completionService, attempts, ranked[next++], request);
+                        pending++;
+                        continue;
+                    }
+                } else {
+                    done = completionService.take();
+                }
+                pending--;
+
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    failure = toIOException(e.getCause());
+                    if (next < ranked.length) {
+                        /* Failed outright: no point waiting before trying the next one */
+                        submit(completionService, attempts, ranked[next++], request);
+                        pending++;
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + ranked[0].getEndpoint());
+        } finally {
+            /* Attempts were made in ranked order, one per endpoint */
+            for (int i = 0; i < attempts.size(); i++) {
+                /* Interrupted first, so the attempt knows its failure is a cancellation */
+                if (attempts.get(i).cancel(true)) {
+                    request.cancel(ranked[i].getEndpoint());
+                }
+            }
+        }
+    }
+
+    private static <T> void submit(CompletionService<T> completionService,
+                                   List<Future<T>> attempts, EndpointStats stats,
+                                   Request<T> request) {
+        attempts.add(completionService.submit(timed(stats, request)));
+    }
+
+    /* Best first: lowest recent error rate, then lowest median latency, then given order */
+    EndpointStats[] rank(final long nowMillis) {
+        EndpointStats[] ranked = mStats.toArray(new EndpointStats[mStats.size()]);
+        Arrays.sort(ranked, new Comparator<EndpointStats>() {
+            @Override
+            public int compare(EndpointStats a, EndpointStats b) {
+                int byErrors = Double.compare(a.getErrorRate(nowMillis), b.getErrorRate(nowMillis));
+                if (byErrors != 0) {
+                    return byErrors;
+                }
+                /* Endpoints without latency samples haven't been shown to be slow */
+                long aLatency = Math.max(0, a.getLatencyPercentile(50, nowMillis));
+                long bLatency = Math.max(0, b.getLatencyPercentile(50, nowMillis));
+                return aLatency < bLatency ? -1 : (aLatency == bLatency ? 0 : 1);
+            }
+        });
+        return ranked;
+    }
+
+    long getHedgeDelayMillis(EndpointStats stats, long nowMillis) {
+        if (stats.getSuccessCount(nowMillis) < MIN_SAMPLES_FOR_HEDGING) {
+            return mMaxHedgeDelayMillis;
+        }
+        long latency = stats.getLatencyPercentile(mHedgePercentile, nowMillis);
+        return Math.max(mMinHedgeDelayMillis, Math.min(mMaxHedgeDelayMillis, latency));
+    }
+
+    private static <T> Callable<T> timed(final EndpointStats stats, final Request<T> request) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws IOException {
+                /* Latency from the monotonic clock, which doesn't jump when the time is set */
+                long start = System.nanoTime();
+                try {
+                    T response = request.send(stats.getEndpoint());
+                    stats.recordSuccess(
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), nowMillis());
+                    return response;
+                } catch (IOException | RuntimeException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        /*
+                         * Being cancelled because another attempt won is not the endpoint's
+                         * fault, but it was slower than the winner
+                         */
+                        stats.recordCancelled(
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                                nowMillis());
+                    } else {
+                        stats.recordFailure(nowMillis());
+                    }
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private static IOException toIOException(Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private static long nowMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Latency and error rate of one endpoint over its most recent requests.
+ * <p>
+ * Only the last few outcomes count, and only while they are younger than a maximum age, so an
+ * endpoint that failed yesterday gets a fresh chance today. Lifetime totals are kept as well for
+ * reporting. Times are passed in rather than read from a clock so the selector and tests agree on
+ * what "now" is. Outcomes recorded after "now", as when the clock has been set back, don't count.
+ * <p>
+ * The window can be saved with {@link #saveWindow()} and restored in another process with
+ * {@link #restoreWindow(String)}, so an endpoint's record outlives the process that made it.
+ */
+public final class EndpointStats {
+
+    /* Marks a failed request in the latency window */
+    private static final long FAILED = -1;
+
+    private final String mEndpoint;
+    private final long mMaxAgeMillis;
+
+    /* Ring buffers of the most recent outcomes: latency (or FAILED) and when it was recorded */
+    private final long[] mLatencies;
+    private final long[] mTimes;
+    private int mNext;
+    private int mSize;
+
+    private long mTotalRequests;
+    private long mTotalFailures;
+
+    EndpointStats(String endpoint, int windowSize, long maxAgeMillis) {
+        mEndpoint = endpoint;
+        mMaxAgeMillis = maxAgeMillis;
+        mLatencies = new long[windowSize];
+        mTimes = new long[windowSize];
+    }
+
+    public String getEndpoint() {
+        return mEndpoint;
+    }
+
+    synchronized void recordSuccess(long latencyMillis, long nowMillis) {
+        record(latencyMillis, nowMillis);
+    }
+
+    /**
+     * Records an attempt that was cancelled before it answered. Its elapsed time is kept as a
+     * latency, as the endpoint took at least that long, so an endpoint that always loses to a
+     * faster one ranks below it rather than looking untried.
+     */
+    synchronized void recordCancelled(long elapsedMillis, long nowMillis) {
+        record(elapsedMillis, nowMillis);
+    }
+
+    synchronized void recordFailure(long nowMillis) {
+        mTotalFailures++;
+        record(FAILED, nowMillis);
+    }
+
+    private void record(long latencyMillis, long nowMillis) {
+        mTotalRequests++;
+        add(latencyMillis, nowMillis);
+    }
+
+    private void add(long latencyMillis, long nowMillis) {
+        mLatencies[mNext] = latencyMillis;
+        mTimes[mNext] = nowMillis;
+        mNext = (mNext + 1) % mLatencies.length;
+        mSize = Math.min(mSize + 1, mLatencies.length);
+    }
+
+    /**
+     * @param nowMillis The current time, on the same clock as the recorded outcomes
+     * @return The number of outcomes in the window that have not expired
+     */
+    public synchronized int getSampleCount(long nowMillis) {
+        int count = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (isCurrent(i, nowMillis)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param nowMillis The current time, on the same clock as the recorded outcomes
+     * @return The number of current outcomes that succeeded or were cancelled
+     */
+    public synchronized int getSuccessCount(long nowMillis) {
+        int count = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (isCurrent(i, nowMillis) && mLatencies[i] != FAILED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param nowMillis The current time, on the same clock as the recorded outcomes
+     * @return The fraction of current outcomes that failed, or 0 if there are none
+     */
+    public synchronized double getErrorRate(long nowMillis) {
+        int count = 0;
+        int failures = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (isCurrent(i, nowMillis)) {
+                count++;
+                if (mLatencies[i] == FAILED) {
+                    failures++;
+                }
+            }
+        }
+        return count == 0 ? 0 : (double) failures / count;
+    }
+
+    /**
+     * @param percentile Between 0 and 100, e.g. 95 for the 95th percentile
+     * @param nowMillis  The current time, on the same clock as the recorded outcomes
+     * @return The latency of successful or cancelled requests at that percentile, or -1 if
+     * there are none
+     */
+    public synchronized long getLatencyPercentile(double percentile, long nowMillis) {
+        long[] latencies = new long[mSize];
+        int count = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (isCurrent(i, nowMillis) && mLatencies[i] != FAILED) {
+                latencies[count++] = mLatencies[i];
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        Arrays.sort(latencies, 0, count);
+
+        /* Nearest rank */
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return latencies[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    public synchronized long getTotalRequests() {
+        return mTotalRequests;
+    }
+
+    public synchronized long getTotalFailures() {
+        return mTotalFailures;
+    }
+
+    /**
+     * @return The outcomes in the window, oldest first, as "latency@time" separated by commas,
+     * with a latency of -1 for a failure
+     */
+    public synchronized String saveWindow() {
+        StringBuilder saved = new StringBuilder();
+        for (int i = 0; i < mSize; i++) {
+            int index = (mNext - mSize + i + mLatencies.length) % mLatencies.length;
+            if (saved.length() > 0) {
+                saved.append(',');
+            }
+            saved.append(mLatencies[index]).append('@').append(mTimes[index]);
+        }
+        return saved.toString();
+    }
+
+    /**
+     * Replaces the window with outcomes saved by {@link #saveWindow()}. Lifetime totals are left
+     * alone, as they only cover this process. If the saved window can't be read, it's left empty.
+     *
+     * @param saved A saved window, or null for none
+     */
+    public synchronized void restoreWindow(String saved) {
+        mNext = 0;
+        mSize = 0;
+        if (saved == null || saved.isEmpty()) {
+            return;
+        }
+        try {
+            for (String outcome : saved.split(",")) {
+                int at = outcome.indexOf('@');
+                add(Long.parseLong(outcome.substring(0, at)),
+                        Long.parseLong(outcome.substring(at + 1)));
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            mNext = 0;
+            mSize = 0;
+        }
+    }
+
+    private boolean isCurrent(int index, long nowMillis) {
+        long age = nowMillis - mTimes[index];
+        return age >= 0 && age <= mMaxAgeMillis;
+    }
+
+    /**
+     * @param nowMillis The current time, on the same clock as the recorded outcomes
+     * @return A one line summary for logs
+     */
+    public String describe(long nowMillis) {
+        return String.format(Locale.US, "%s: %d requests, %d failed, recent p50 %dms, p95 %dms,"
+                        + " error rate %.0f%%",
+                mEndpoint, getTotalRequests(), getTotalFailures(),
+                getLatencyPercentile(50, nowMillis), getLatencyPercentile(95, nowMillis),
+                getErrorRate(nowMillis) * 100);
+    }
+}
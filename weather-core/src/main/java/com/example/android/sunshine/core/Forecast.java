@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * A parsed forecast response: where it is for, and one {@link Day} per forecast day in date
+ * order. Plain fields rather than getters, since these are only ever created by
+ * {@link ForecastJsonParser} or {@link SyntheticForecasts} and read once when they are turned
+ * into database rows.
+ */
+public final class Forecast {
+
+    public final double latitude;
+    public final double longitude;
+    public final Day[] days;
+
+    public Forecast(double latitude, double longitude, Day[] days) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.days = days;
+    }
+
+    /**
+     * One day of weather, with the same units as the weather table: temperatures in °C, wind in
+     * km/h and meteorological degrees, and the date as a normalized UTC date.
+     */
+    public static final class Day {
+
+        public final long date;
+        public final int weatherId;
+        public final double high;
+        public final double low;
+        public final int humidity;
+        public final double pressure;
+        public final double windSpeed;
+        public final double windDirection;
+
+        public Day(long date, int weatherId, double high, double low, int humidity,
+                   double pressure, double windSpeed, double windDirection) {
+            this.date = date;
+            this.weatherId = weatherId;
+            this.high = high;
+            this.low = low;
+            this.humidity = humidity;
+            this.pressure = pressure;
+            this.windSpeed = windSpeed;
+            this.windDirection = windDirection;
+        }
+    }
+}
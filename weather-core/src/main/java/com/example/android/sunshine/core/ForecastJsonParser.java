@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Parses OpenWeatherMap daily forecast JSON. This is the pure part of OpenWeatherJsonUtils in the
+ * app, which stores the location and converts the result to ContentValues.
+ * <p>
+ * org.json is part of the Android platform, so this module only compiles against it; JVM tests
+ * and benchmarks bring their own copy.
+ */
+public final class ForecastJsonParser {
+
+    /* Location information */
+    private static final String OWM_CITY = "city";
+    private static final String OWM_COORD = "coord";
+
+    /* Location coordinate */
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    /* Weather information. Each day's forecast info is an element of the "list" array */
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    /* All temperatures are children of the "temp" object */
+    private static final String OWM_TEMPERATURE = "temp";
+
+    /* Max temperature for the day */
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_WEATHER_ID = "id";
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+
+    private ForecastJsonParser() {
+    }
+
+    /**
+     * Parses a forecast response.
+     * <p>
+     * OWM returns daily forecasts in order, starting with the current day in the local time of
+     * the city that was asked for. We ignore the datetime values embedded in the JSON and date
+     * the days consecutively from normalizedUtcStartDay instead.
+     *
+     * @param forecastJsonStr       JSON response from server
+     * @param normalizedUtcStartDay Normalized UTC date of the first day in the response
+     * @return The parsed forecast, or null if the response carries an error code
+     * @throws JSONException If JSON data cannot be properly parsed
+     */
+    public static Forecast parse(String forecastJsonStr, long normalizedUtcStartDay)
+            throws JSONException {
+
+        JSONObject forecastJson = new JSONObject(forecastJsonStr);
+        if (isError(forecastJson)) {
+            return null;
+        }
+
+        JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
+
+        JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
+
+        JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
+        double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
+        double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
+
+        int dayCount = jsonWeatherArray.length();
+        Forecast.Day[] days = new Forecast.Day[dayCount];
+
+        for (int i = 0; i < dayCount; i++) {
+            long dateTimeMillis = normalizedUtcStartDay + NormalizedDates.DAY_IN_MILLIS * i;
+            days[i] = parseDay(jsonWeatherArray.getJSONObject(i), dateTimeMillis);
+        }
+
+        return new Forecast(cityLatitude, cityLongitude, days);
+    }
+
+    /**
+     * Parses only the first day of a forecast response, for refreshing today's weather without
+     * touching the rest. The location is not read, as it can't have changed since the last full
+     * parse.
+     *
+     * @param forecastJsonStr   JSON response from server
+     * @param normalizedUtcDate Normalized UTC date of the first day in the response
+     * @return The first day, or null if the response carries an error code or has no days
+     * @throws JSONException If JSON data cannot be properly parsed
+     */
+    public static Forecast.Day parseFirstDay(String forecastJsonStr, long normalizedUtcDate)
+            throws JSONException {
+
+        JSONObject forecastJson = new JSONObject(forecastJsonStr);
+        if (isError(forecastJson)) {
+            return null;
+        }
+
+        JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
+        if (jsonWeatherArray.length() == 0) {
+            return null;
+        }
+        return parseDay(jsonWeatherArray.getJSONObject(0), normalizedUtcDate);
+    }
+
+    /* Is there an error? */
+    private static boolean isError(JSONObject forecastJson) throws JSONException {
+        if (forecastJson.has(OWM_MESSAGE_CODE)) {
+            int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
+
+            switch (errorCode) {
+                case HttpURLConnection.HTTP_OK:
+                    break;
+                case HttpURLConnection.HTTP_NOT_FOUND:
+                    /* Location invalid */
+                    return true;
+                default:
+                    /* Server probably down */
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /* Parses the JSON object representing one day */
+    private static Forecast.Day parseDay(JSONObject dayForecast, long dateTimeMillis)
+            throws JSONException {
+
+        double pressure = dayForecast.getDouble(OWM_PRESSURE);
+        int humidity = dayForecast.getInt(OWM_HUMIDITY);
+        double windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
+        double windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
+
+        /*
+         * Description is in a child array called "weather", which is 1 element long.
+         * That element also contains a weather code.
+         */
+        JSONObject weatherObject =
+                dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
+
+        int weatherId = weatherObject.getInt(OWM_WEATHER_ID);
+
+        /* Temperatures are sent by Open Weather Map in a child object called "temp". */
+        JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
+        double high = temperatureObject.getDouble(OWM_MAX);
+        double low = temperatureObject.getDouble(OWM_MIN);
+
+        return new Forecast.Day(dateTimeMillis, weatherId, high, low, humidity,
+                pressure, windSpeed, windDirection);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The date math behind Sunshine's "normalized" dates: UTC midnight of the day a row represents.
+ * See SunshineDateUtils in the app for how these are presented to the user.
+ * <p>
+ * Everything here takes the current time and time zone as arguments where it needs them, so it
+ * can be tested and benchmarked off-device with fixed inputs.
+ */
+public final class NormalizedDates {
+
+    /* Milliseconds in a day */
+    public static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private NormalizedDates() {
+    }
+
+    /**
+     * Returns the number of milliseconds (UTC) for the given instant's date at midnight in the
+     * given time zone. In other words, the GMT date returned always represents the local date.
+     *
+     * @param utcNowMillis Milliseconds since the epoch
+     * @param timeZone     The zone whose local date we want
+     * @return UTC midnight of the local date
+     */
+    public static long getNormalizedUtcDateForDay(long utcNowMillis, TimeZone timeZone) {
+
+        /*
+         * The getOffset method returns the number of milliseconds to add to UTC time to get the
+         * elapsed time since the epoch for the time zone. We pass the UTC time into this method
+         * so it can account for daylight savings time.
+         */
+        long gmtOffsetMillis = timeZone.getOffset(utcNowMillis);
+
+        long timeSinceEpochLocalTimeMillis = utcNowMillis + gmtOffsetMillis;
+
+        /* This simply converts milliseconds to days, disregarding any fractional days */
+        long daysSinceEpochLocal = TimeUnit.MILLISECONDS.toDays(timeSinceEpochLocalTimeMillis);
+
+        return TimeUnit.DAYS.toMillis(daysSinceEpochLocal);
+    }
+
+    /**
+     * Returns the number of days since the epoch (January 1st, 1970 at midnight UTC).
+     *
+     * @param utcDate A date in milliseconds in UTC time
+     * @return The number of days from the epoch to the date argument
+     */
+    public static long elapsedDaysSinceEpoch(long utcDate) {
+        return TimeUnit.MILLISECONDS.toDays(utcDate);
+    }
+
+    /**
+     * Normalizes a date to UTC midnight of the same UTC day.
+     *
+     * @param date The UTC date to normalize
+     * @return The UTC date at 12 midnight
+     */
+    public static long normalizeDate(long date) {
+        return elapsedDaysSinceEpoch(date) * DAY_IN_MILLIS;
+    }
+
+    /**
+     * @param millisSinceEpoch Milliseconds since January 1, 1970 at midnight
+     * @return true if the date represents the beginning of a day in milliseconds since the epoch
+     */
+    public static boolean isDateNormalized(long millisSinceEpoch) {
+        return millisSinceEpoch % DAY_IN_MILLIS == 0;
+    }
+
+    /**
+     * Converts a normalized UTC date to the instant of local midnight on that date in the given
+     * time zone.
+     *
+     * @param normalizedUtcDate UTC midnight of a date
+     * @param timeZone          The zone to convert to
+     * @return Milliseconds since the epoch of local midnight on that date
+     */
+    public static long getLocalMidnightFromNormalizedUtcDate(long normalizedUtcDate,
+                                                              TimeZone timeZone) {
+        long gmtOffset = timeZone.getOffset(normalizedUtcDate);
+        return normalizedUtcDate - gmtOffset;
+    }
+}
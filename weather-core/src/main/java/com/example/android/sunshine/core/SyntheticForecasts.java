@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.Random;
+
+/**
+ * Deterministic generator of plausible weather, for load tests and benchmarks.
+ * <p>
+ * Every (seed, location, date) triple always produces the same day, no matter which range it is
+ * generated as part of, so a test can generate ten years of history in one go or a day at a time
+ * and get identical rows. Locations are numbered from 0; each gets its own climate (latitude,
+ * mean temperature, seasonal swing and wetness) derived from the seed.
+ * <p>
+ * Conditions follow a rough real-world mix: mostly clear or cloudy, some rain and drizzle, snow
+ * only when it is cold enough, and the odd storm, fog or extreme event.
+ */
+public final class SyntheticForecasts {
+
+    /* Cumulative weights (out of 1000) for the condition groups on a mild, dry day */
+    private static final int[] CONDITION_WEIGHTS = {
+            300, /* clear */
+            620, /* clouds */
+            770, /* rain */
+            830, /* drizzle */
+            870, /* thunderstorm */
+            930, /* fog, mist and haze */
+            1000, /* snow when cold, otherwise more cloud */
+    };
+
+    private static final int[] CLOUD_IDS = {801, 802, 803, 804};
+    private static final int[] RAIN_IDS = {500, 500, 500, 501, 501, 502, 520, 521};
+    private static final int[] DRIZZLE_IDS = {300, 301, 310};
+    private static final int[] STORM_IDS = {200, 201, 211};
+    private static final int[] FOG_IDS = {701, 721, 741};
+    private static final int[] SNOW_IDS = {600, 600, 601, 611, 620};
+    private static final int[] EXTREME_IDS = {900, 901, 902, 905, 906, 957, 960};
+
+    /* One day in a thousand is something extreme */
+    private static final int EXTREME_PER_THOUSAND = 1;
+
+    private final long mSeed;
+
+    public SyntheticForecasts(long seed) {
+        mSeed = seed;
+    }
+
+    /**
+     * @param location    Location number, from 0
+     * @param startDate   Normalized UTC date of the first day
+     * @param dayCount    Number of consecutive days to generate
+     * @return A forecast for the location, dated from startDate
+     */
+    public Forecast generate(int location, long startDate, int dayCount) {
+        Climate climate = new Climate(mSeed, location);
+        Forecast.Day[] days = new Forecast.Day[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            days[i] = generateDay(climate, location, startDate + i * NormalizedDates.DAY_IN_MILLIS);
+        }
+        return new Forecast(climate.latitude, climate.longitude, days);
+    }
+
+    /**
+     * @param location Location number, from 0
+     * @param date     Normalized UTC date
+     * @return The weather for that location on that date
+     */
+    public Forecast.Day generateDay(int location, long date) {
+        return generateDay(new Climate(mSeed, location), location, date);
+    }
+
+    private Forecast.Day generateDay(Climate climate, int location, long date) {
+        long epochDay = NormalizedDates.elapsedDaysSinceEpoch(date);
+        Random random = new Random(mix(mSeed, location, epochDay));
+
+        /* Warmest around mid-July in the north and mid-January in the south */
+        double season = Math.cos(2 * Math.PI * (epochDay % 365 - 196) / 365.0);
+        if (climate.latitude < 0) {
+            season = -season;
+        }
+        double mean = climate.meanTemperature + climate.seasonalSwing * season
+                + random.nextGaussian() * 3;
+        double range = 4 + random.nextDouble() * 8;
+        double high = round(mean + range / 2);
+        double low = round(mean - range / 2);
+
+        int weatherId = pickCondition(random, climate, low);
+        boolean wet = weatherId < 700;
+
+        int humidity = (int) Math.min(100, Math.max(5,
+                climate.wetness * 60 + (wet ? 30 : 0) + random.nextGaussian() * 10));
+        double pressure = round(1013 + random.nextGaussian() * 8 - (wet ? 8 : 0));
+        double windSpeed = round(Math.abs(random.nextGaussian() * 4 + (wet ? 4 : 1)));
+        double windDirection = random.nextInt(360);
+
+        return new Forecast.Day(date, weatherId, high, low, humidity, pressure,
+                windSpeed, windDirection);
+    }
+
+    private static int pickCondition(Random random, Climate climate, double low) {
+        if (random.nextInt(1000) < EXTREME_PER_THOUSAND) {
+            return pick(random, EXTREME_IDS);
+        }
+
+        /* Wetter climates shift weight from clear skies towards cloud and rain */
+        int roll = random.nextInt(1000) + (int) (climate.wetness * 150);
+        if (roll >= 1000) {
+            roll = 620 + random.nextInt(210);
+        }
+
+        if (roll < CONDITION_WEIGHTS[0]) {
+            return 800;
+        } else if (roll < CONDITION_WEIGHTS[1]) {
+            return pick(random, CLOUD_IDS);
+        } else if (roll < CONDITION_WEIGHTS[2]) {
+            return low < 0 ? pick(random, SNOW_IDS) : pick(random, RAIN_IDS);
+        } else if (roll < CONDITION_WEIGHTS[3]) {
+            return low < 0 ? pick(random, SNOW_IDS) : pick(random, DRIZZLE_IDS);
+        } else if (roll < CONDITION_WEIGHTS[4]) {
+            return low < 0 ? pick(random, CLOUD_IDS) : pick(random, STORM_IDS);
+        } else if (roll < CONDITION_WEIGHTS[5]) {
+            return pick(random, FOG_IDS);
+        }
+        return low < 0 ? pick(random, SNOW_IDS) : pick(random, CLOUD_IDS);
+    }
+
+    private static int pick(Random random, int[] ids) {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /* A 64-bit mix so that neighbouring locations and dates get unrelated random streams */
+    private static long mix(long seed, long location, long epochDay) {
+        long h = seed * 0x9E3779B97F4A7C15L + location;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL + epochDay;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** The long-run weather of one location */
+    private static final class Climate {
+        final double latitude;
+        final double longitude;
+        final double meanTemperature;
+        final double seasonalSwing;
+        final double wetness;
+
+        Climate(long seed, int location) {
+            Random random = new Random(mix(seed, location, Long.MIN_VALUE));
+            latitude = round(random.nextDouble() * 130 - 60);
+            longitude = round(random.nextDouble() * 360 - 180);
+
+            /* Colder and more seasonal away from the equator */
+            double absoluteLatitude = Math.abs(latitude);
+            meanTemperature = 28 - absoluteLatitude * 0.4 + random.nextGaussian() * 3;
+            seasonalSwing = 2 + absoluteLatitude * 0.25;
+            wetness = random.nextDouble();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Maps OpenWeatherMap condition ids to the art and description Sunshine shows for them. This is
+ * shared by the app and the wearable so that both always agree.
+ * <p>
+ * Condition ids are three digit numbers between {@link #MIN_CONDITION_ID} and
+ * {@link #MAX_CONDITION_ID}, so rather than walking a chain of range checks on every bind,
+ * notification and frame, we precompute two dense tables indexed by condition id. A lookup is a
+ * bounds check and an array read.
+ * <p>
+ * Neither table knows about Android resources. Each module keeps its own arrays of resource ids
+ * indexed by the ART_* constants and by description index, and shows {@link #FALLBACK_ART} for
+ * ids without art.
+ */
+public final class WeatherConditions {
+
+    /* Returned for ids that have no art or no description of their own */
+    public static final int UNKNOWN = -1;
+
+    /* Kinds of weather art. Each module maps these to its own drawables. */
+    public static final int ART_STORM = 0;
+    public static final int ART_LIGHT_RAIN = 1;
+    public static final int ART_RAIN = 2;
+    public static final int ART_SNOW = 3;
+    public static final int ART_FOG = 4;
+    public static final int ART_CLEAR = 5;
+    public static final int ART_LIGHT_CLOUDS = 6;
+    public static final int ART_CLOUDS = 7;
+    public static final int ART_COUNT = 8;
+
+    /*
+     * The art every module shows for ids with none of their own, such as 762, so that the phone
+     * and the watch always show the same icon for the same weather
+     */
+    public static final int FALLBACK_ART = ART_STORM;
+
+    /**
+     * Every condition that has a description of its own, in description index order. The first
+     * two entries stand for the whole 2xx and 3xx groups, which share one description each.
+     * Modules keep their description strings in an array in this same order.
+     */
+    public static final int[] DESCRIBED_CONDITION_IDS = {
+            200, 300,
+            500, 501, 502, 503, 504, 511, 520, 531,
+            600, 601, 602, 611, 612, 615, 616, 620, 621, 622,
+            701, 711, 721, 731, 741, 751, 761, 762, 771, 781,
+            800, 801, 802, 803, 804,
+            900, 901, 902, 903, 904, 905, 906,
+            951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961, 962,
+    };
+
+    public static final int DESCRIPTION_COUNT = DESCRIBED_CONDITION_IDS.length;
+
+    public static final int MIN_CONDITION_ID = 200;
+    public static final int MAX_CONDITION_ID = 962;
+
+    private static final byte[] sArt = new byte[MAX_CONDITION_ID - MIN_CONDITION_ID + 1];
+    private static final byte[] sDescription = new byte[MAX_CONDITION_ID - MIN_CONDITION_ID + 1];
+
+    static {
+        fill(sArt, MIN_CONDITION_ID, MAX_CONDITION_ID, UNKNOWN);
+
+        /*
+         * Ranges are applied in increasing precedence, so a later range wins where two overlap.
+         * This reproduces the if/else chains these tables replace; in particular 761 is fog, and
+         * 762 has no art of its own.
+         */
+        fill(sArt, 951, 957, ART_CLEAR);
+        fill(sArt, 958, 962, ART_STORM);
+        fill(sArt, 900, 906, ART_STORM);
+        fill(sArt, 802, 804, ART_CLOUDS);
+        fill(sArt, 801, 801, ART_LIGHT_CLOUDS);
+        fill(sArt, 800, 800, ART_CLEAR);
+        fill(sArt, 771, 771, ART_STORM);
+        fill(sArt, 781, 781, ART_STORM);
+        fill(sArt, 701, 761, ART_FOG);
+        fill(sArt, 600, 622, ART_SNOW);
+        fill(sArt, 520, 531, ART_RAIN);
+        fill(sArt, 511, 511, ART_SNOW);
+        fill(sArt, 500, 504, ART_RAIN);
+        fill(sArt, 300, 321, ART_LIGHT_RAIN);
+        fill(sArt, 200, 232, ART_STORM);
+
+        fill(sDescription, MIN_CONDITION_ID, MAX_CONDITION_ID, UNKNOWN);
+        for (int i = 2; i < DESCRIPTION_COUNT; i++) {
+            int weatherId = DESCRIBED_CONDITION_IDS[i];
+            fill(sDescription, weatherId, weatherId, i);
+        }
+        fill(sDescription, 200, 232, 0);
+        fill(sDescription, 300, 321, 1);
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static void fill(byte[] table, int fromId, int toId, int value) {
+        for (int weatherId = fromId; weatherId <= toId; weatherId++) {
+            table[weatherId - MIN_CONDITION_ID] = (byte) value;
+        }
+    }
+
+    /**
+     * @param weatherId OpenWeatherMap condition id
+     * @return One of the ART_* constants, or {@link #UNKNOWN}
+     */
+    public static int getArt(int weatherId) {
+        if (weatherId < MIN_CONDITION_ID || weatherId > MAX_CONDITION_ID) {
+            return UNKNOWN;
+        }
+        return sArt[weatherId - MIN_CONDITION_ID];
+    }
+
+    /**
+     * @param weatherId OpenWeatherMap condition id
+     * @return Index into {@link #DESCRIBED_CONDITION_IDS}, or {@link #UNKNOWN}
+     */
+    public static int getDescriptionIndex(int weatherId) {
+        if (weatherId < MIN_CONDITION_ID || weatherId > MAX_CONDITION_ID) {
+            return UNKNOWN;
+        }
+        return sDescription[weatherId - MIN_CONDITION_ID];
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Unit conversions used when presenting weather data. Sunshine stores temperatures in Celsius and
+ * wind speeds in km/h; SunshineWeatherUtils in the app picks the units to show and formats the
+ * results using resources.
+ */
+public final class WeatherUnits {
+
+    private static final float MILES_PER_KILOMETER = .621371192237334f;
+
+    /* Compass points, each covering 45 degrees centered on its heading, starting from north */
+    private static final String[] COMPASS_POINTS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    private WeatherUnits() {
+    }
+
+    /**
+     * @param temperatureInCelsius Temperature in degrees Celsius (°C)
+     * @return Temperature in degrees Fahrenheit (°F)
+     */
+    public static double celsiusToFahrenheit(double temperatureInCelsius) {
+        return (temperatureInCelsius * 1.8) + 32;
+    }
+
+    /**
+     * @param speedInKmh Speed in kilometers / hour
+     * @return Speed in miles / hour
+     */
+    public static float kmhToMph(float speedInKmh) {
+        return MILES_PER_KILOMETER * speedInKmh;
+    }
+
+    /**
+     * Converts meteorological degrees into a compass direction such as "NW". Anything below 22.5
+     * or from 337.5 up is north.
+     *
+     * @param degrees Degrees as measured on a compass, NOT temperature degrees!
+     * @return The compass direction, or "Unknown" if degrees is not a number
+     */
+    public static String getWindDirection(float degrees) {
+        if (degrees >= 337.5 || degrees < 22.5) {
+            return COMPASS_POINTS[0];
+        } else if (degrees >= 22.5 && degrees < 337.5) {
+            return COMPASS_POINTS[(int) ((degrees + 22.5) / 45)];
+        }
+        return "Unknown";
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.android.sunshine.core.CircuitBreaker.STATE_CLOSED;
+import static com.example.android.sunshine.core.CircuitBreaker.STATE_HALF_OPEN;
+import static com.example.android.sunshine.core.CircuitBreaker.STATE_OPEN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 1000;
+
+    private CircuitBreaker mBreaker;
+    private final List<String> mTransitions = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mBreaker = new CircuitBreaker(3, OPEN_MILLIS, 4 * OPEN_MILLIS);
+        mBreaker.setListener(new CircuitBreaker.Listener() {
+            @Override
+            public void onStateChanged(int fromState, int toState, long nowMillis) {
+                mTransitions.add(CircuitBreaker.getStateName(fromState) + ">"
+                        + CircuitBreaker.getStateName(toState) + "@" + nowMillis);
+            }
+        });
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        mBreaker.recordFailure(0);
+        mBreaker.recordFailure(1);
+        mBreaker.recordSuccess(2);
+        mBreaker.recordFailure(3);
+        mBreaker.recordFailure(4);
+        assertEquals("A success resets the count", STATE_CLOSED, mBreaker.getState());
+
+        mBreaker.recordFailure(5);
+        assertEquals(STATE_OPEN, mBreaker.getState());
+        assertFalse(mBreaker.allowRequest(5 + OPEN_MILLIS - 1));
+        assertEquals(Arrays.asList("closed>open@5"), mTransitions);
+    }
+
+    @Test
+    public void testHalfOpenTrialClosesOnSuccess() {
+        openAt(0);
+
+        assertTrue(mBreaker.allowRequest(OPEN_MILLIS));
+        assertEquals(STATE_HALF_OPEN, mBreaker.getState());
+
+        mBreaker.recordSuccess(OPEN_MILLIS + 10);
+        assertEquals(STATE_CLOSED, mBreaker.getState());
+        assertEquals(0, mBreaker.getConsecutiveFailures());
+        assertEquals(Arrays.asList("closed>open@0", "open>half-open@1000",
+                "half-open>closed@1010"), mTransitions);
+    }
+
+    @Test
+    public void testHalfOpenFailureBacksOffUpToMaximum() {
+        openAt(0);
+
+        long now = 0;
+        long[] expectedOpenMillis = {2 * OPEN_MILLIS, 4 * OPEN_MILLIS, 4 * OPEN_MILLIS};
+        for (long expected : expectedOpenMillis) {
+            now += mBreaker.getOpenMillis();
+            assertTrue(mBreaker.allowRequest(now));
+            mBreaker.recordFailure(now);
+            assertEquals(STATE_OPEN, mBreaker.getState());
+            assertEquals(expected, mBreaker.getOpenMillis());
+            assertFalse(mBreaker.allowRequest(now + expected - 1));
+        }
+
+        now += mBreaker.getOpenMillis();
+        assertTrue(mBreaker.allowRequest(now));
+        mBreaker.recordSuccess(now);
+        assertEquals("Success resets the back off", OPEN_MILLIS, mBreaker.getOpenMillis());
+    }
+
+    @Test
+    public void testRestoresSavedState() {
+        openAt(100);
+
+        CircuitBreaker restored = new CircuitBreaker(3, OPEN_MILLIS, 4 * OPEN_MILLIS);
+        restored.restore(mBreaker.getState(), mBreaker.getConsecutiveFailures(),
+                mBreaker.getOpenedAtMillis(), mBreaker.getOpenMillis());
+
+        assertEquals(STATE_OPEN, restored.getState());
+        assertFalse(restored.allowRequest(100 + OPEN_MILLIS - 1));
+        assertTrue(restored.allowRequest(100 + OPEN_MILLIS));
+    }
+
+    @Test
+    public void testClockGoingBackwardsEndsOpenPeriod() {
+        openAt(10000);
+        assertTrue(mBreaker.allowRequest(5000));
+        assertEquals(STATE_HALF_OPEN, mBreaker.getState());
+    }
+
+    private void openAt(long nowMillis) {
+        for (int i = 0; i < 3; i++) {
+            mBreaker.recordFailure(nowMillis);
+        }
+        assertEquals(STATE_OPEN, mBreaker.getState());
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EndpointSelectorTest {
+
+    private static final String DYNAMIC = "dynamic";
+    private static final String STATIC = "static";
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testUsesFirstEndpointWhenHealthy() throws IOException {
+        EndpointSelector selector = newSelector(1000);
+
+        assertEquals(DYNAMIC, selector.send(echo(0, 0)));
+        assertEquals(1, selector.getStats().get(0).getTotalRequests());
+        assertEquals(0, selector.getStats().get(1).getTotalRequests());
+    }
+
+    @Test
+    public void testFallsBackImmediatelyOnFailure() throws IOException {
+        EndpointSelector selector = newSelector(10000);
+
+        long start = System.nanoTime();
+        assertEquals(STATIC, selector.send(new EndpointSelector.Request<String>() {
+            @Override
+            public String send(String endpoint) throws IOException {
+                if (endpoint.equals(DYNAMIC)) {
+                    throw new IOException("HTTP 500");
+                }
+                return endpoint;
+            }
+
+            @Override
+            public void cancel(String endpoint) {
+            }
+        }));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, selector.getStats().get(0).getTotalFailures());
+
+        /* Now that dynamic has failed, static is tried first */
+        assertEquals(STATIC, selector.send(echo(0, 0)));
+        assertEquals(1, selector.getStats().get(0).getTotalRequests());
+    }
+
+    @Test
+    public void testHedgesSlowRequest() throws IOException {
+        EndpointSelector selector = newSelector(100);
+
+        long start = System.nanoTime();
+        assertEquals(STATIC, selector.send(echo(2000, 0)));
+        assertTrue("The hedged request should have won",
+                System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+    }
+
+    @Test
+    public void testCancelsLosingAttemptThatIgnoresInterrupts() throws Exception {
+        EndpointSelector selector = newSelector(100);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        assertEquals(STATIC, selector.send(new EndpointSelector.Request<String>() {
+            @Override
+            public String send(String endpoint) throws IOException {
+                if (endpoint.equals(STATIC)) {
+                    return endpoint;
+                }
+                /* Like a blocking socket read, only a disconnect gets it out of here */
+                boolean interrupted = false;
+                try {
+                    while (true) {
+                        try {
+                            disconnected.await();
+                            if (interrupted) {
+                                Thread.currentThread().interrupt();
+                            }
+                            throw new IOException("Socket closed");
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            }
+
+            @Override
+            public void cancel(String endpoint) {
+                if (endpoint.equals(DYNAMIC)) {
+                    disconnected.countDown();
+                }
+            }
+        }));
+
+        assertTrue("The losing attempt should have been disconnected",
+                finished.await(1, TimeUnit.SECONDS));
+        awaitRecorded(selector.getStats().get(0));
+        assertEquals("Losing the race is not a failure",
+                0, selector.getStats().get(0).getTotalFailures());
+    }
+
+    @Test
+    public void testEndpointThatAlwaysLosesIsRankedLower() throws Exception {
+        EndpointSelector selector = newSelector(100);
+        EndpointStats dynamic = selector.getStats().get(0);
+
+        assertEquals(STATIC, selector.send(echo(2000, 0)));
+        awaitRecorded(dynamic);
+
+        assertEquals("Losing the race is not a failure", 0, dynamic.getTotalFailures());
+        assertTrue("The time it took before being cancelled should count as its latency",
+                dynamic.getLatencyPercentile(50, System.currentTimeMillis()) >= 100);
+        assertEquals(STATIC, selector.rank(System.currentTimeMillis())[0].getEndpoint());
+
+        /* So the next request goes to static first, without waiting for dynamic */
+        long start = System.nanoTime();
+        assertEquals(STATIC, selector.send(echo(2000, 0)));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, dynamic.getTotalRequests());
+    }
+
+    @Test
+    public void testThrowsLastFailureWhenAllFail() {
+        EndpointSelector selector = newSelector(1000);
+        try {
+            selector.send(new EndpointSelector.Request<String>() {
+                @Override
+                public String send(String endpoint) throws IOException {
+                    throw new IOException(endpoint);
+                }
+
+                @Override
+                public void cancel(String endpoint) {
+                }
+            });
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals(STATIC, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRanksByErrorRateThenLatency() {
+        EndpointSelector selector = newSelector(1000);
+        EndpointStats dynamic = selector.getStats().get(0);
+        EndpointStats statik = selector.getStats().get(1);
+
+        assertEquals(DYNAMIC, selector.rank(0)[0].getEndpoint());
+
+        dynamic.recordSuccess(300, 0);
+        statik.recordSuccess(100, 0);
+        assertEquals(STATIC, selector.rank(0)[0].getEndpoint());
+
+        statik.recordFailure(0);
+        assertEquals(DYNAMIC, selector.rank(0)[0].getEndpoint());
+    }
+
+    @Test
+    public void testHedgeDelayFollowsPercentileWithinBounds() {
+        EndpointSelector selector = new EndpointSelector(mExecutor, 90, 50, 1000, DYNAMIC);
+        EndpointStats stats = selector.getStats().get(0);
+
+        assertEquals("Not enough samples yet", 1000, selector.getHedgeDelayMillis(stats, 0));
+
+        for (int latency = 10; latency <= 100; latency += 10) {
+            stats.recordSuccess(latency, 0);
+        }
+        assertEquals(90, selector.getHedgeDelayMillis(stats, 0));
+
+        for (int i = 0; i < 10; i++) {
+            stats.recordSuccess(5000, 0);
+        }
+        assertEquals(1000, selector.getHedgeDelayMillis(stats, 0));
+    }
+
+    @Test
+    public void testStatsWindowAndExpiry() {
+        EndpointStats stats = new EndpointStats(DYNAMIC, 4, 1000);
+        stats.recordSuccess(40, 0);
+        stats.recordSuccess(10, 0);
+        stats.recordFailure(0);
+        stats.recordSuccess(30, 500);
+        stats.recordSuccess(20, 500);
+
+        /* The first outcome has been pushed out of the window */
+        assertEquals(4, stats.getSampleCount(500));
+        assertEquals(0.25, stats.getErrorRate(500), 0);
+        assertEquals(20, stats.getLatencyPercentile(50, 500));
+        assertEquals(30, stats.getLatencyPercentile(100, 500));
+
+        /* Outcomes older than a second no longer count */
+        assertEquals(2, stats.getSampleCount(1200));
+        assertEquals(0, stats.getErrorRate(1200), 0);
+        assertEquals(-1, stats.getLatencyPercentile(50, 2000));
+
+        assertEquals(5, stats.getTotalRequests());
+        assertEquals(1, stats.getTotalFailures());
+    }
+
+    @Test
+    public void testStatsWindowSurvivesSaveAndRestore() {
+        EndpointStats stats = new EndpointStats(DYNAMIC, 3, 1000);
+        stats.recordSuccess(40, 0);
+        stats.recordSuccess(10, 100);
+        stats.recordFailure(200);
+        stats.recordSuccess(30, 300);
+
+        EndpointStats restored = new EndpointStats(DYNAMIC, 3, 1000);
+        restored.restoreWindow(stats.saveWindow());
+        assertEquals("10@100,-1@200,30@300", restored.saveWindow());
+        assertEquals(stats.getErrorRate(500), restored.getErrorRate(500), 0);
+        assertEquals(30, restored.getLatencyPercentile(100, 500));
+        assertEquals("Totals only cover this process", 0, restored.getTotalRequests());
+
+        /* Recorded later than "now", as after the clock was set back */
+        assertEquals(0, restored.getSampleCount(50));
+
+        restored.restoreWindow("10@100,garbage");
+        assertEquals(0, restored.getSampleCount(500));
+        restored.restoreWindow(null);
+        assertEquals(0, restored.getSampleCount(500));
+    }
+
+    /* The losing attempt records itself on its own thread once it has been cancelled */
+    private static void awaitRecorded(EndpointStats stats) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (stats.getTotalRequests() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, stats.getTotalRequests());
+    }
+
+    private EndpointSelector newSelector(long maxHedgeDelayMillis) {
+        return new EndpointSelector(mExecutor, 95, 10, maxHedgeDelayMillis, DYNAMIC, STATIC);
+    }
+
+    /* Answers with the endpoint's name after the given delay */
+    private static EndpointSelector.Request<String> echo(final long dynamicDelayMillis,
+                                                         final long staticDelayMillis) {
+        return new EndpointSelector.Request<String>() {
+            @Override
+            public String send(String endpoint) throws IOException {
+                try {
+                    Thread.sleep(endpoint.equals(DYNAMIC) ? dynamicDelayMillis : staticDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                return endpoint;
+            }
+
+            @Override
+            public void cancel(String endpoint) {
+            }
+        };
+    }
+}
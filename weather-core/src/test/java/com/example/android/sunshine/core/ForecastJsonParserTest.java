@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ForecastJsonParserTest {
+
+    /* September 23rd, 2016 at midnight UTC */
+    private static final long START_DAY = 1474588800000L;
+
+    private static final String TWO_DAY_RESPONSE = "{"
+            + "\"city\":{\"id\":3163858,\"name\":\"Mountain View\","
+            + "\"coord\":{\"lon\":-122.08,\"lat\":37.39},\"country\":\"US\"},"
+            + "\"cod\":\"200\",\"message\":0.0,\"cnt\":2,\"list\":["
+            + "{\"dt\":1474617600,\"temp\":{\"day\":20.1,\"min\":11.5,\"max\":24.7},"
+            + "\"pressure\":1012.3,\"humidity\":64,"
+            + "\"weather\":[{\"id\":800,\"main\":\"Clear\"}],\"speed\":3.2,\"deg\":290},"
+            + "{\"dt\":1474704000,\"temp\":{\"day\":18.0,\"min\":9.25,\"max\":21.0},"
+            + "\"pressure\":1009.9,\"humidity\":81,"
+            + "\"weather\":[{\"id\":501,\"main\":\"Rain\"}],\"speed\":7.5,\"deg\":180}"
+            + "]}";
+
+    @Test
+    public void testParsesLocationAndDays() throws JSONException {
+        Forecast forecast = ForecastJsonParser.parse(TWO_DAY_RESPONSE, START_DAY);
+
+        assertNotNull(forecast);
+        assertEquals(37.39, forecast.latitude, 0);
+        assertEquals(-122.08, forecast.longitude, 0);
+        assertEquals(2, forecast.days.length);
+
+        Forecast.Day today = forecast.days[0];
+        assertEquals(START_DAY, today.date);
+        assertEquals(800, today.weatherId);
+        assertEquals(24.7, today.high, 0);
+        assertEquals(11.5, today.low, 0);
+        assertEquals(64, today.humidity);
+        assertEquals(1012.3, today.pressure, 0);
+        assertEquals(3.2, today.windSpeed, 0);
+        assertEquals(290, today.windDirection, 0);
+
+        Forecast.Day tomorrow = forecast.days[1];
+        assertEquals(START_DAY + NormalizedDates.DAY_IN_MILLIS, tomorrow.date);
+        assertEquals(501, tomorrow.weatherId);
+    }
+
+    @Test
+    public void testErrorCodeReturnsNull() throws JSONException {
+        assertNull(ForecastJsonParser.parse("{\"cod\":\"404\",\"message\":\"city not found\"}",
+                START_DAY));
+        assertNull(ForecastJsonParser.parse("{\"cod\":500}", START_DAY));
+    }
+
+    @Test
+    public void testParseFirstDayMatchesFullParse() throws JSONException {
+        Forecast.Day today = ForecastJsonParser.parseFirstDay(TWO_DAY_RESPONSE, START_DAY);
+        Forecast.Day expected = ForecastJsonParser.parse(TWO_DAY_RESPONSE, START_DAY).days[0];
+
+        assertNotNull(today);
+        assertEquals(expected.date, today.date);
+        assertEquals(expected.weatherId, today.weatherId);
+        assertEquals(expected.high, today.high, 0);
+        assertEquals(expected.low, today.low, 0);
+        assertEquals(expected.humidity, today.humidity);
+        assertEquals(expected.pressure, today.pressure, 0);
+        assertEquals(expected.windSpeed, today.windSpeed, 0);
+        assertEquals(expected.windDirection, today.windDirection, 0);
+    }
+
+    @Test
+    public void testParseFirstDayOfErrorOrEmptyResponseIsNull() throws JSONException {
+        assertNull(ForecastJsonParser.parseFirstDay("{\"cod\":\"500\"}", START_DAY));
+        assertNull(ForecastJsonParser.parseFirstDay("{\"cod\":\"200\",\"list\":[]}",
+                START_DAY));
+    }
+
+    @Test(expected = JSONException.class)
+    public void testMalformedResponseThrows() throws JSONException {
+        ForecastJsonParser.parse("{\"cod\":\"200\",\"list\":[{}]}", START_DAY);
+    }
+}
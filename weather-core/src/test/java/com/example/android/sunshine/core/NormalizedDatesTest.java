@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NormalizedDatesTest {
+
+    /* Friday, 9/16/2016, 17:45:15 GMT-4:00 DST */
+    private static final long AFTERNOON_IN_NEW_YORK = 1474062315000L;
+    /* Friday, 9/16/2016, 00:00:00 GMT */
+    private static final long SEPTEMBER_16_UTC = 1473984000000L;
+
+    @Test
+    public void testNormalizeDate() {
+        assertEquals(SEPTEMBER_16_UTC, NormalizedDates.normalizeDate(AFTERNOON_IN_NEW_YORK));
+        assertEquals(SEPTEMBER_16_UTC, NormalizedDates.normalizeDate(SEPTEMBER_16_UTC));
+    }
+
+    @Test
+    public void testIsDateNormalized() {
+        assertTrue(NormalizedDates.isDateNormalized(SEPTEMBER_16_UTC));
+        assertFalse(NormalizedDates.isDateNormalized(AFTERNOON_IN_NEW_YORK));
+    }
+
+    @Test
+    public void testNormalizedDateFollowsLocalDate() {
+        /* 9:00 PM on the 16th in New York is already the 17th in UTC, but we want the 16th */
+        long eveningInNewYork = SEPTEMBER_16_UTC + NormalizedDates.DAY_IN_MILLIS + 3600000L;
+        assertEquals(SEPTEMBER_16_UTC, NormalizedDates.getNormalizedUtcDateForDay(
+                eveningInNewYork, TimeZone.getTimeZone("America/New_York")));
+
+        /* 6:30 AM on the 17th in Hong Kong is still the 16th in UTC, but we want the 17th */
+        long morningInHongKong = SEPTEMBER_16_UTC + 81000000L;
+        assertEquals(SEPTEMBER_16_UTC + NormalizedDates.DAY_IN_MILLIS,
+                NormalizedDates.getNormalizedUtcDateForDay(
+                        morningInHongKong, TimeZone.getTimeZone("Asia/Hong_Kong")));
+    }
+
+    @Test
+    public void testLocalMidnight() {
+        TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+        long localMidnight =
+                NormalizedDates.getLocalMidnightFromNormalizedUtcDate(SEPTEMBER_16_UTC, newYork);
+        assertEquals(SEPTEMBER_16_UTC + 4 * 3600000L, localMidnight);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticForecastsTest {
+
+    /* January 1st, 2016 at midnight UTC */
+    private static final long START_DAY = 1451606400000L;
+
+    private static final int YEARS_OF_DAYS = 10 * 365;
+
+    @Test
+    public void testDaysDoNotDependOnTheRangeTheyAreGeneratedIn() {
+        SyntheticForecasts generator = new SyntheticForecasts(7);
+        Forecast forecast = generator.generate(3, START_DAY, 30);
+
+        for (int i = 0; i < 30; i++) {
+            Forecast.Day single = generator.generateDay(3, forecast.days[i].date);
+            assertSameDay(forecast.days[i], single);
+        }
+    }
+
+    @Test
+    public void testSameSeedSameData() {
+        Forecast first = new SyntheticForecasts(99).generate(12, START_DAY, 100);
+        Forecast second = new SyntheticForecasts(99).generate(12, START_DAY, 100);
+
+        assertEquals(first.latitude, second.latitude, 0);
+        assertEquals(first.longitude, second.longitude, 0);
+        for (int i = 0; i < 100; i++) {
+            assertSameDay(first.days[i], second.days[i]);
+        }
+    }
+
+    @Test
+    public void testLocationsAndSeedsDiffer() {
+        Forecast location0 = new SyntheticForecasts(1).generate(0, START_DAY, 1);
+        Forecast location1 = new SyntheticForecasts(1).generate(1, START_DAY, 1);
+        Forecast otherSeed = new SyntheticForecasts(2).generate(0, START_DAY, 1);
+
+        assertNotEquals(location0.latitude, location1.latitude, 0);
+        assertNotEquals(location0.latitude, otherSeed.latitude, 0);
+    }
+
+    @Test
+    public void testYearsOfHistoryArePlausible() {
+        SyntheticForecasts generator = new SyntheticForecasts(42);
+        int total = 0;
+        int clear = 0;
+        int unknown = 0;
+
+        for (int location = 0; location < 20; location++) {
+            Forecast forecast = generator.generate(location, START_DAY, YEARS_OF_DAYS);
+            for (Forecast.Day day : forecast.days) {
+                total++;
+                assertTrue(NormalizedDates.isDateNormalized(day.date));
+                assertTrue(day.low <= day.high);
+                assertTrue(day.humidity >= 0 && day.humidity <= 100);
+                assertTrue(day.windDirection >= 0 && day.windDirection < 360);
+
+                int group = day.weatherId / 100;
+                if (group == 6) {
+                    assertTrue("Snow on a warm day", day.low < 0);
+                }
+                if (day.weatherId == 800) {
+                    clear++;
+                }
+                if (WeatherConditions.getArt(day.weatherId) == WeatherConditions.UNKNOWN) {
+                    unknown++;
+                }
+            }
+        }
+
+        assertEquals("Every generated condition should have art", 0, unknown);
+        double clearShare = (double) clear / total;
+        assertTrue("Clear share was " + clearShare, clearShare > 0.15 && clearShare < 0.35);
+    }
+
+    private static void assertSameDay(Forecast.Day expected, Forecast.Day actual) {
+        assertEquals(expected.date, actual.date);
+        assertEquals(expected.weatherId, actual.weatherId);
+        assertEquals(expected.high, actual.high, 0);
+        assertEquals(expected.low, actual.low, 0);
+        assertEquals(expected.humidity, actual.humidity);
+        assertEquals(expected.pressure, actual.pressure, 0);
+        assertEquals(expected.windSpeed, actual.windSpeed, 0);
+        assertEquals(expected.windDirection, actual.windDirection, 0);
+    }
+}
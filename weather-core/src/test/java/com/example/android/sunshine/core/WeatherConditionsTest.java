@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static com.example.android.sunshine.core.WeatherConditions.ART_CLEAR;
+import static com.example.android.sunshine.core.WeatherConditions.ART_CLOUDS;
+import static com.example.android.sunshine.core.WeatherConditions.ART_FOG;
+import static com.example.android.sunshine.core.WeatherConditions.ART_LIGHT_CLOUDS;
+import static com.example.android.sunshine.core.WeatherConditions.ART_LIGHT_RAIN;
+import static com.example.android.sunshine.core.WeatherConditions.ART_RAIN;
+import static com.example.android.sunshine.core.WeatherConditions.ART_SNOW;
+import static com.example.android.sunshine.core.WeatherConditions.ART_STORM;
+import static com.example.android.sunshine.core.WeatherConditions.UNKNOWN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The app (SunshineWeatherUtils) and the wearable (Utilities) used to carry their own copies of
+ * the condition id mapping. Both now read {@link WeatherConditions}, so these tests check the
+ * shared tables against those original chains for every id either module could be handed.
+ */
+public class WeatherConditionsTest {
+
+    /* Well past both ends of the table, to cover the bounds checks */
+    private static final int FIRST_ID = -1;
+    private static final int LAST_ID = 1100;
+
+    @Test
+    public void testArtMatchesHandheldAndWearableChains() {
+        for (int weatherId = FIRST_ID; weatherId <= LAST_ID; weatherId++) {
+            assertEquals("Art differs for condition " + weatherId,
+                    legacyArt(weatherId), WeatherConditions.getArt(weatherId));
+        }
+    }
+
+    @Test
+    public void testDescriptionMatchesHandheldSwitch() {
+        for (int weatherId = FIRST_ID; weatherId <= LAST_ID; weatherId++) {
+            int expected = legacyDescribedId(weatherId);
+            int index = WeatherConditions.getDescriptionIndex(weatherId);
+            int actual = index == UNKNOWN
+                    ? UNKNOWN
+                    : WeatherConditions.DESCRIBED_CONDITION_IDS[index];
+            assertEquals("Description differs for condition " + weatherId, expected, actual);
+        }
+    }
+
+    @Test
+    public void testFallbackIsArt() {
+        assertTrue(WeatherConditions.FALLBACK_ART >= 0);
+        assertTrue(WeatherConditions.FALLBACK_ART < WeatherConditions.ART_COUNT);
+    }
+
+    @Test
+    public void testDescriptionIndicesAreDense() {
+        for (int i = 0; i < WeatherConditions.DESCRIPTION_COUNT; i++) {
+            int weatherId = WeatherConditions.DESCRIBED_CONDITION_IDS[i];
+            assertEquals(i, WeatherConditions.getDescriptionIndex(weatherId));
+        }
+    }
+
+    /*
+     * getSmallArtResourceIdForWeatherCondition, getLargeArtResourceIdForWeatherCondition and the
+     * wearable's getDrawableIdForWeatherCondition, as they were. Only their fallbacks differed.
+     */
+    private static int legacyArt(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return ART_STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return ART_LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return ART_RAIN;
+        } else if (weatherId == 511) {
+            return ART_SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return ART_RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return ART_SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return ART_FOG;
+        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
+            return ART_STORM;
+        } else if (weatherId == 800) {
+            return ART_CLEAR;
+        } else if (weatherId == 801) {
+            return ART_LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return ART_CLOUDS;
+        } else if (weatherId >= 900 && weatherId <= 906) {
+            return ART_STORM;
+        } else if (weatherId >= 958 && weatherId <= 962) {
+            return ART_STORM;
+        } else if (weatherId >= 951 && weatherId <= 957) {
+            return ART_CLEAR;
+        }
+        return UNKNOWN;
+    }
+
+    /* getStringForWeatherCondition, reduced to the condition id whose string it picked */
+    private static int legacyDescribedId(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return 200;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return 300;
+        }
+        switch (weatherId) {
+            case 500: case 501: case 502: case 503: case 504:
+            case 511: case 520: case 531:
+            case 600: case 601: case 602: case 611: case 612:
+            case 615: case 616: case 620: case 621: case 622:
+            case 701: case 711: case 721: case 731: case 741:
+            case 751: case 761: case 762: case 771: case 781:
+            case 800: case 801: case 802: case 803: case 804:
+            case 900: case 901: case 902: case 903: case 904: case 905: case 906:
+            case 951: case 952: case 953: case 954: case 955: case 956:
+            case 957: case 958: case 959: case 960: case 961: case 962:
+                return weatherId;
+            default:
+                return UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WeatherUnitsTest {
+
+    @Test
+    public void testCelsiusToFahrenheit() {
+        assertEquals(32, WeatherUnits.celsiusToFahrenheit(0), 0);
+        assertEquals(212, WeatherUnits.celsiusToFahrenheit(100), 1e-9);
+        assertEquals(-40, WeatherUnits.celsiusToFahrenheit(-40), 1e-9);
+    }
+
+    @Test
+    public void testKmhToMph() {
+        assertEquals(62.137f, WeatherUnits.kmhToMph(100f), 0.001f);
+    }
+
+    @Test
+    public void testWindDirectionBoundaries() {
+        assertEquals("N", WeatherUnits.getWindDirection(0f));
+        assertEquals("N", WeatherUnits.getWindDirection(22.4f));
+        assertEquals("NE", WeatherUnits.getWindDirection(22.5f));
+        assertEquals("E", WeatherUnits.getWindDirection(90f));
+        assertEquals("SE", WeatherUnits.getWindDirection(157.4f));
+        assertEquals("S", WeatherUnits.getWindDirection(157.5f));
+        assertEquals("SW", WeatherUnits.getWindDirection(225f));
+        assertEquals("W", WeatherUnits.getWindDirection(270f));
+        assertEquals("NW", WeatherUnits.getWindDirection(337.4f));
+        assertEquals("N", WeatherUnits.getWindDirection(337.5f));
+        assertEquals("N", WeatherUnits.getWindDirection(359.9f));
+    }
+
+    @Test
+    public void testWindDirectionOutOfRange() {
+        /* The original chain treated anything outside [22.5, 337.5) as north */
+        assertEquals("N", WeatherUnits.getWindDirection(-10f));
+        assertEquals("N", WeatherUnits.getWindDirection(400f));
+        assertEquals("Unknown", WeatherUnits.getWindDirection(Float.NaN));
+    }
+}
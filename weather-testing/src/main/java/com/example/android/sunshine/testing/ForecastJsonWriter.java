@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.testing;
+
+import com.example.android.sunshine.core.Forecast;
+
+/**
+ * Writes a {@link Forecast} as OpenWeatherMap daily forecast JSON, the inverse of
+ * {@link com.example.android.sunshine.core.ForecastJsonParser}. Used by
+ * {@link StandInWeatherServer} to serve generated weather.
+ * <p>
+ * Only the fields Sunshine reads are written, plus "dt" so the output looks like a real response.
+ */
+public final class ForecastJsonWriter {
+
+    /* Roughly the length of one day in the "list" array */
+    private static final int DAY_LENGTH_ESTIMATE = 200;
+
+    private ForecastJsonWriter() {
+    }
+
+    /**
+     * @param forecast The forecast to write
+     * @return The forecast as a JSON response with a "cod" of 200
+     */
+    public static String write(Forecast forecast) {
+        StringBuilder json = new StringBuilder(150 + forecast.days.length * DAY_LENGTH_ESTIMATE);
+
+        json.append("{\"city\":{\"coord\":{\"lat\":").append(forecast.latitude)
+                .append(",\"lon\":").append(forecast.longitude)
+                .append("}},\"cod\":\"200\",\"cnt\":").append(forecast.days.length)
+                .append(",\"list\":[");
+
+        for (int i = 0; i < forecast.days.length; i++) {
+            Forecast.Day day = forecast.days[i];
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"dt\":").append(day.date / 1000)
+                    .append(",\"temp\":{\"min\":").append(day.low)
+                    .append(",\"max\":").append(day.high)
+                    .append("},\"pressure\":").append(day.pressure)
+                    .append(",\"humidity\":").append(day.humidity)
+                    .append(",\"weather\":[{\"id\":").append(day.weatherId)
+                    .append("}],\"speed\":").append(day.windSpeed)
+                    .append(",\"deg\":").append(day.windDirection)
+                    .append('}');
+        }
+
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.testing;
+
+import com.example.android.sunshine.core.NormalizedDates;
+import com.example.android.sunshine.core.SyntheticForecasts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A tiny HTTP server on the loopback interface that stands in for the weather server, so a
+ * complete sync can be run and timed without a network.
+ * <p>
+ * By default it answers every GET under {@link #FORECAST_PATH} with weather from
+ * {@link SyntheticForecasts}, for as many days as the "cnt" parameter asks for, up to
+ * {@link #MAX_DAY_COUNT}; any other "cnt" is answered with 400 Bad Request. The location
+ * parameters pick the synthetic location, so the same request always gets the same forecast.
+ * A recorded response can be replayed instead with {@link #setPayload(String)}.
+ * <p>
+ * Like a real server, it gzips responses for clients that accept it and answers a matching
+ * If-None-Match with 304 Not Modified. On top of that it can be told to respond slowly, to limit
+ * its bandwidth, and to fail with any status code. It is built on plain sockets rather than
+ * com.sun.net.httpserver so it also runs on a device, inside instrumentation tests.
+ */
+public final class StandInWeatherServer implements Closeable {
+
+    public static final String FORECAST_PATH = "/weather";
+
+    /* Days returned when the request has no "cnt" parameter */
+    private static final int DEFAULT_DAY_COUNT = 14;
+
+    /* A year, well past the 16 days OWM gives, so benchmarks can ask for large responses */
+    public static final int MAX_DAY_COUNT = 366;
+
+    /* Requests are spread over this many synthetic locations */
+    private static final int LOCATION_COUNT = 1000;
+
+    /* Connections that send no request within this long are dropped */
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    /* Bandwidth limited responses are written in chunks of this size */
+    private static final int CHUNK_SIZE = 1024;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final SyntheticForecasts mForecasts;
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    private volatile String mPayload;
+    private volatile long mLatencyMillis;
+    private volatile int mBytesPerSecond;
+    private volatile int mStatusCode = 200;
+    private final Queue<Integer> mQueuedStatusCodes = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mNotModifiedCount = new AtomicInteger();
+
+    /**
+     * Starts a server on a free port of the loopback interface.
+     *
+     * @param seed Seed for the generated weather
+     * @throws IOException If no port could be opened
+     */
+    public StandInWeatherServer(long seed) throws IOException {
+        mForecasts = new SyntheticForecasts(seed);
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "StandInWeatherServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return The URL to use in place of the weather server's, e.g. http://127.0.0.1:5678/weather
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + FORECAST_PATH;
+    }
+
+    /**
+     * @param json A recorded response body to return for every request, or null to go back to
+     *             generating weather
+     */
+    public void setPayload(String json) {
+        mPayload = json;
+    }
+
+    /**
+     * @param latencyMillis How long to wait before answering each request
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        mLatencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param bytesPerSecond Maximum rate at which response bodies are written, or 0 for no limit
+     */
+    public void setBytesPerSecond(int bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @param statusCode Status code for every request from now on, such as 500 or 503
+     */
+    public void setStatusCode(int statusCode) {
+        mStatusCode = statusCode;
+    }
+
+    /**
+     * Makes the next request fail with statusCode, before going back to the code set with
+     * {@link #setStatusCode(int)}. Queued codes are used in order, one per request.
+     *
+     * @param statusCode Status code for a single request
+     */
+    public void enqueueStatusCode(int statusCode) {
+        mQueuedStatusCodes.add(statusCode);
+    }
+
+    /**
+     * @return The number of requests answered so far, including failures and 304s
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return The number of requests answered with 304 Not Modified
+     */
+    public int getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    /**
+     * Stops accepting connections. Requests in progress are abandoned.
+     */
+    @Override
+    public void close() throws IOException {
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (SocketException e) {
+                /* The server socket was closed */
+                return;
+            } catch (IOException e) {
+                continue;
+            }
+            try {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(socket);
+                        } catch (IOException | InterruptedException e) {
+                            /* The client went away or the server is shutting down */
+                        } finally {
+                            closeQuietly(socket);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                /* Closed between accepting the connection and handing it over */
+                closeQuietly(socket);
+                return;
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void serve(Socket socket) throws IOException, InterruptedException {
+        socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+        InputStream in = socket.getInputStream();
+
+        /* e.g. "GET /weather?q=94043,USA&mode=json&units=metric&cnt=14 HTTP/1.1" */
+        String requestLine = readLine(in);
+        if (requestLine == null) {
+            return;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        String header;
+        while ((header = readLine(in)) != null && !header.isEmpty()) {
+            int colon = header.indexOf(':');
+            if (colon > 0) {
+                headers.put(header.substring(0, colon).trim().toLowerCase(Locale.US),
+                        header.substring(colon + 1).trim());
+            }
+        }
+
+        mRequestCount.incrementAndGet();
+
+        long latencyMillis = mLatencyMillis;
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+
+        OutputStream out = socket.getOutputStream();
+
+        String[] parts = requestLine.split(" ");
+        String target = parts.length > 1 ? parts[1] : "";
+        int queryStart = target.indexOf('?');
+        String path = queryStart < 0 ? target : target.substring(0, queryStart);
+
+        Integer queuedStatusCode = mQueuedStatusCodes.poll();
+        int statusCode = queuedStatusCode != null ? queuedStatusCode : mStatusCode;
+        if (statusCode == 200 && !path.equals(FORECAST_PATH)) {
+            statusCode = 404;
+        }
+
+        if (statusCode != 200) {
+            respondWithError(out, statusCode);
+            return;
+        }
+
+        String body = mPayload;
+        if (body == null) {
+            Map<String, String> query = parseQuery(
+                    queryStart < 0 ? "" : target.substring(queryStart + 1));
+            int dayCount = getDayCount(query);
+            if (dayCount < 1 || dayCount > MAX_DAY_COUNT) {
+                respondWithError(out, 400);
+                return;
+            }
+            body = generate(query, dayCount);
+        }
+        byte[] bytes = body.getBytes(UTF_8);
+
+        String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        if (etag.equals(headers.get("if-none-match"))) {
+            mNotModifiedCount.incrementAndGet();
+            respond(out, 304, new byte[0], etag, false);
+            return;
+        }
+
+        String acceptEncoding = headers.get("accept-encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+            GZIPOutputStream gzipOut = new GZIPOutputStream(compressed);
+            gzipOut.write(bytes);
+            gzipOut.close();
+            bytes = compressed.toByteArray();
+        }
+
+        respond(out, 200, bytes, etag, gzip);
+    }
+
+    /* The "cnt" parameter, the default if there is none, or -1 if it isn't a number */
+    private static int getDayCount(Map<String, String> query) {
+        String cnt = query.get("cnt");
+        if (cnt == null) {
+            return DEFAULT_DAY_COUNT;
+        }
+        try {
+            return Integer.parseInt(cnt);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String generate(Map<String, String> query, int dayCount) {
+        /* The app asks by coordinates or by name; either way, one place is one location */
+        String place = query.containsKey("q")
+                ? query.get("q")
+                : query.get("lat") + "," + query.get("lon");
+        int location = (place.hashCode() & Integer.MAX_VALUE) % LOCATION_COUNT;
+
+        long today = NormalizedDates.normalizeDate(System.currentTimeMillis());
+        return ForecastJsonWriter.write(mForecasts.generate(location, today, dayCount));
+    }
+
+    /* Errors look like OWM's, in case the client reads the body anyway */
+    private void respondWithError(OutputStream out, int statusCode)
+            throws IOException, InterruptedException {
+        String error = "{\"cod\":\"" + statusCode + "\",\"message\":\"stand-in error\"}";
+        respond(out, statusCode, error.getBytes(UTF_8), null, false);
+    }
+
+    private void respond(OutputStream out, int statusCode, byte[] body, String etag,
+                         boolean gzip) throws IOException, InterruptedException {
+        StringBuilder head = new StringBuilder()
+                .append("HTTP/1.1 ").append(statusCode).append(' ')
+                .append(reasonPhrase(statusCode)).append("\r\n")
+                .append("Content-Type: application/json; charset=utf-8\r\n")
+                .append("Content-Length: ").append(body.length).append("\r\n")
+                .append("Connection: close\r\n");
+        if (etag != null) {
+            head.append("ETag: ").append(etag).append("\r\n");
+        }
+        if (gzip) {
+            head.append("Content-Encoding: gzip\r\n");
+        }
+        out.write(head.append("\r\n").toString().getBytes(UTF_8));
+
+        int bytesPerSecond = mBytesPerSecond;
+        if (bytesPerSecond <= 0) {
+            out.write(body);
+        } else {
+            long start = System.nanoTime();
+            for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, body.length - offset);
+                out.write(body, offset, length);
+                out.flush();
+
+                /* Wait until the bytes written so far are within the allowed rate */
+                long dueNanos = TimeUnit.SECONDS.toNanos(offset + length) / bytesPerSecond;
+                long aheadMillis = TimeUnit.NANOSECONDS.toMillis(
+                        dueNanos - (System.nanoTime() - start));
+                if (aheadMillis > 0) {
+                    Thread.sleep(aheadMillis);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static String reasonPhrase(int statusCode) {
+        switch (statusCode) {
+            case 200:
+                return "OK";
+            case 304:
+                return "Not Modified";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 429:
+                return "Too Many Requests";
+            case 500:
+                return "Internal Server Error";
+            case 502:
+                return "Bad Gateway";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Error";
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query)
+            throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    /* Reads one CRLF terminated header line, or returns null at the end of the stream */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+}
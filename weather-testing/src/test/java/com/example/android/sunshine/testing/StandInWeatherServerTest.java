@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.testing;
+
+import com.example.android.sunshine.core.Forecast;
+import com.example.android.sunshine.core.ForecastJsonParser;
+import com.example.android.sunshine.core.SyntheticForecasts;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class StandInWeatherServerTest {
+
+    private static final long SEED = 32;
+
+    private StandInWeatherServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new StandInWeatherServer(SEED);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    @Test
+    public void testServesGeneratedForecastForRequestedDays() throws Exception {
+        HttpURLConnection connection = open("?q=94043,USA&cnt=16");
+
+        assertEquals(200, connection.getResponseCode());
+        Forecast forecast = ForecastJsonParser.parse(readBody(connection), 0);
+        assertNotNull(forecast);
+        assertEquals(16, forecast.days.length);
+    }
+
+    @Test
+    public void testSameLocationGetsSameForecast() throws Exception {
+        String first = readBody(open("?lat=37.39&lon=-122.08&cnt=14"));
+        String second = readBody(open("?lat=37.39&lon=-122.08&cnt=14"));
+        String elsewhere = readBody(open("?lat=51.5&lon=-0.12&cnt=14"));
+
+        assertEquals(first, second);
+        assertTrue(!first.equals(elsewhere));
+    }
+
+    @Test
+    public void testReplaysPayload() throws Exception {
+        mServer.setPayload("{\"cod\":\"404\"}");
+        assertEquals("{\"cod\":\"404\"}", readBody(open("?q=anywhere")));
+    }
+
+    @Test
+    public void testQueuedStatusCodesAreUsedOnce() throws Exception {
+        mServer.enqueueStatusCode(503);
+        mServer.enqueueStatusCode(500);
+
+        assertEquals(503, open("").getResponseCode());
+        assertEquals(500, open("").getResponseCode());
+        assertEquals(200, open("").getResponseCode());
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void testUnknownPathIsNotFound() throws Exception {
+        URL url = new URL(mServer.getBaseUrl().replace(StandInWeatherServer.FORECAST_PATH,
+                "/staticweather"));
+        assertEquals(404, ((HttpURLConnection) url.openConnection()).getResponseCode());
+    }
+
+    @Test
+    public void testDayCountOutOfRangeIsBadRequest() throws Exception {
+        assertEquals(400, open("?q=94043&cnt=-1").getResponseCode());
+        assertEquals(400, open("?q=94043&cnt=0").getResponseCode());
+        assertEquals(400, open("?q=94043&cnt=2000000000").getResponseCode());
+        assertEquals(400, open("?q=94043&cnt=many").getResponseCode());
+        assertEquals(200, open("?q=94043&cnt=" + StandInWeatherServer.MAX_DAY_COUNT)
+                .getResponseCode());
+    }
+
+    @Test
+    public void testGzipWhenAccepted() throws Exception {
+        String plain = readBody(open("?q=94043&cnt=40"));
+
+        HttpURLConnection connection = open("?q=94043&cnt=40");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+        assertTrue(connection.getContentLength() < plain.length());
+        assertEquals(plain, read(new GZIPInputStream(connection.getInputStream())));
+    }
+
+    @Test
+    public void testMatchingEtagIsNotModified() throws Exception {
+        HttpURLConnection first = open("?q=94043");
+        String etag = first.getHeaderField("ETag");
+        assertNotNull(etag);
+
+        HttpURLConnection second = open("?q=94043");
+        second.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, second.getResponseCode());
+        assertEquals(1, mServer.getNotModifiedCount());
+    }
+
+    @Test
+    public void testLatencyAndBandwidthSlowResponses() throws Exception {
+        mServer.setLatencyMillis(200);
+        long start = System.nanoTime();
+        readBody(open("?q=94043"));
+        assertTrue(System.nanoTime() - start >= 200 * 1000000L);
+
+        /* About 16kB at 32kB/s takes about half a second */
+        mServer.setLatencyMillis(0);
+        mServer.setBytesPerSecond(32 * 1024);
+        start = System.nanoTime();
+        String body = readBody(open("?q=94043&cnt=120"));
+        long expectedNanos = body.length() * 1000000000L / (32 * 1024);
+        assertTrue(System.nanoTime() - start >= expectedNanos * 3 / 4);
+    }
+
+    @Test
+    public void testWriterRoundTripsThroughParser() throws JSONException {
+        Forecast forecast = new SyntheticForecasts(SEED).generate(3, 0, 5);
+        Forecast parsed = ForecastJsonParser.parse(ForecastJsonWriter.write(forecast), 0);
+
+        assertNotNull(parsed);
+        assertEquals(forecast.latitude, parsed.latitude, 0);
+        assertEquals(forecast.longitude, parsed.longitude, 0);
+        for (int i = 0; i < forecast.days.length; i++) {
+            Forecast.Day expected = forecast.days[i];
+            Forecast.Day actual = parsed.days[i];
+            assertEquals(expected.date, actual.date);
+            assertEquals(expected.weatherId, actual.weatherId);
+            assertEquals(expected.high, actual.high, 0);
+            assertEquals(expected.low, actual.low, 0);
+            assertEquals(expected.humidity, actual.humidity);
+            assertEquals(expected.pressure, actual.pressure, 0);
+            assertEquals(expected.windSpeed, actual.windSpeed, 0);
+            assertEquals(expected.windDirection, actual.windDirection, 0);
+        }
+    }
+
+    private HttpURLConnection open(String query) throws IOException {
+        return (HttpURLConnection) new URL(mServer.getBaseUrl() + query).openConnection();
+    }
+
+    private static String readBody(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+        return read(in);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, count);
+        }
+        in.close();
+        return bytes.toString("UTF-8");
+    }
+}